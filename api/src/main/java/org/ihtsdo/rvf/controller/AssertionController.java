@@ -83,6 +83,7 @@ public class AssertionController {
 		}
 
 		assertionService.addTests(assertion, tests);
+		assertionExecutionService.evictPreparedCommands(assertion.getAssertionId());
 
 		return assertion;
 	}
@@ -108,6 +109,7 @@ public class AssertionController {
 
 		if (!toDelete.isEmpty()) {
 			assertionService.deleteTests(assertion, toDelete);
+			assertionExecutionService.evictPreparedCommands(assertion.getAssertionId());
 		}
 
 		return assertion;
@@ -151,6 +153,7 @@ public class AssertionController {
 		}
 
 		assertionService.delete(assertion);
+		assertionExecutionService.evictPreparedCommands(assertion.getAssertionId());
 
 		return new ResponseEntity<Assertion>(assertion, HttpStatus.OK);
 	}
@@ -202,8 +205,10 @@ public class AssertionController {
 		}
 
 		assertion.setAssertionId(existing.getAssertionId());
+		final Assertion updated = assertionService.update(assertion);
+		assertionExecutionService.evictPreparedCommands(existing.getAssertionId());
 
-		return assertionService.update(assertion);
+		return updated;
 	}
 
 	@RequestMapping(value = "{id}/tests", method = RequestMethod.PUT)
@@ -219,6 +224,7 @@ public class AssertionController {
 			throw new EntityNotFoundException("No assertion found with id:" + id);
 		}
 		assertionService.addTest(existing, test);
+		assertionExecutionService.evictPreparedCommands(existing.getAssertionId());
 		return existing;
 	}
 
@@ -1,9 +1,11 @@
 package org.ihtsdo.rvf.controller;
 
 import java.io.IOException;
+import java.util.Map;
 
 import org.ihtsdo.otf.rest.exception.BusinessServiceException;
 import org.ihtsdo.rvf.execution.service.ReleaseDataManager;
+import org.ihtsdo.rvf.execution.service.impl.ReleaseLoadScheduler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -38,6 +40,8 @@ public class ReleaseController {
 			.getLogger(ReleaseController.class);
 	@Autowired
 	private ReleaseDataManager releaseDataManager;
+	@Autowired
+	private ReleaseLoadScheduler releaseLoadScheduler;
 
 	@RequestMapping(value = "{product}/{version}", method = RequestMethod.POST)
 	@ResponseBody
@@ -80,4 +84,12 @@ public class ReleaseController {
 		
 		return releaseDataManager.getAllKnownReleases();
 	}
+
+	@RequestMapping(value = "loader/metrics", method = RequestMethod.GET)
+	@ResponseBody
+	@ResponseStatus(HttpStatus.OK)
+	@ApiOperation(value = "Get the release loader metrics", notes = "Gets the maximum number of concurrent loads, the loads running and queued, the bytes loaded and the load throughput in bytes per second of a single load, and the bytes left to load per release load in progress.")
+	public Map<String, Object> getLoaderMetrics() {
+		return releaseLoadScheduler.getMetrics();
+	}
 }
@@ -52,6 +52,8 @@ public class TestController {
 	public Test deleteTest(@PathVariable Long id) {
 		Test test = (Test) entityService.find(Test.class, id);
 		entityService.delete(test);
+		// the test may belong to any assertion
+		assertionExecutionService.clearPreparedCommands();
 		return test;
 	}
 
@@ -72,7 +74,9 @@ public class TestController {
 			@RequestBody(required = false) Test test) {
 		Test test1 = (Test) entityService.find(Test.class, id);
 		test.setId(test1.getId());
-		return (Test) entityService.update(test);
+		final Test updated = (Test) entityService.update(test);
+		assertionExecutionService.clearPreparedCommands();
+		return updated;
 	}
 
 	@RequestMapping(value = "count", method = RequestMethod.GET)
@@ -35,6 +35,7 @@ import org.springframework.core.task.TaskExecutor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -129,28 +130,30 @@ public class TestUploadFileController {
 			try (PrintWriter writer = response.getWriter()) {
 				// must be a zip
 				file.transferTo(tempFile);
-				final ResourceProvider resourceManager = new ZipFileResourceProvider(
-						tempFile);
+				// the provider deletes the files it extracts from the zip when closed
+				try (ZipFileResourceProvider resourceManager = new ZipFileResourceProvider(
+						tempFile)) {
 
-				TestReportable report;
+					TestReportable report;
 
-				if (manifestFile == null) {
-					report = structureTestRunner.execute(resourceManager,
-							writer, writeSucceses);
-				} else {
-					final String originalFilename = manifestFile
-							.getOriginalFilename();
-					tempManifestFile = File.createTempFile(originalFilename,
-							".xml");
-					manifestFile.transferTo(tempManifestFile);
-					final ManifestFile mf = new ManifestFile(tempManifestFile);
-					report = structureTestRunner.execute(resourceManager,
-							writer, writeSucceses, mf);
-				}
-				// store the report to disk for now with a timestamp
-				if (report.getNumErrors() > 0) {
-					LOGGER.error("No Errors expected but got "
-							+ report.getNumErrors() + " errors");
+					if (manifestFile == null) {
+						report = structureTestRunner.execute(resourceManager,
+								writer, writeSucceses);
+					} else {
+						final String originalFilename = manifestFile
+								.getOriginalFilename();
+						tempManifestFile = File.createTempFile(originalFilename,
+								".xml");
+						manifestFile.transferTo(tempManifestFile);
+						final ManifestFile mf = new ManifestFile(tempManifestFile);
+						report = structureTestRunner.execute(resourceManager,
+								writer, writeSucceses, mf);
+					}
+					// store the report to disk for now with a timestamp
+					if (report.getNumErrors() > 0) {
+						LOGGER.error("No Errors expected but got "
+								+ report.getNumErrors() + " errors");
+					}
 				}
 			}
 		} finally {
@@ -180,6 +183,8 @@ public class TestUploadFileController {
 			@ApiParam(value = "Required for extension release testing") @RequestParam(value = "extensionDependencyReleaseVersion", required = false) final String extensionDependency,
 			@ApiParam(value = "Unique number e.g Timestamp") @RequestParam(value = "runId") final Long runId,
 			@ApiParam(value = "Defaults to 10 when not set") @RequestParam(value = "failureExportMax", required = false) final Integer exportMax,
+			@ApiParam(value = "Stop each assertion once it has found more failures than failureExportMax, reporting that there are more instead of the exact count. Defaults to false.") @RequestParam(value = "stopAtFailureExportMax", required = false) final boolean stopAtFailureExportMax,
+			@ApiParam(value = "Number of structure test failures of each test type and column to report the details of, the others are only counted. Defaults to rvf.validation.failureExampleMax") @RequestParam(value = "structureFailureExampleMax", required = false) final Integer structureFailureExampleMax,
 			@ApiParam(value = "The sub folder for validaiton reports") @RequestParam(value = "storageLocation") final String storageLocation,
 			final HttpServletRequest request) throws IOException {
 
@@ -195,7 +200,8 @@ public class TestUploadFileController {
 				.addPreviousExtVersion(previousExtVersion)
 				.addExtensionDependencyVersion(extensionDependency)
 				.addRunId(runId).addStorageLocation(storageLocation)
-				.addFailureExportMax(exportMax).addUrl(urlPrefix)
+				.addFailureExportMax(exportMax).addStopAtFailureExportMax(stopAtFailureExportMax)
+				.addStructureFailureExampleMax(structureFailureExampleMax).addUrl(urlPrefix)
 				.addProspectiveFilesInS3(false);
 
 		// Before we start running, ensure that we've made our mark in the
@@ -231,6 +237,8 @@ public class TestUploadFileController {
 			@ApiParam(value = "Required for extension release testing") @RequestParam(value = "extensionDependencyReleaseVersion", required = false) final String extensionDependency,
 			@ApiParam(value = "Unique run id e.g Timestamp") @RequestParam(value = "runId") final Long runId,
 			@ApiParam(value = "Defaults to 10") @RequestParam(value = "failureExportMax", required = false) final Integer exportMax,
+			@ApiParam(value = "Stop each assertion once it has found more failures than failureExportMax, reporting that there are more instead of the exact count. Defaults to false.") @RequestParam(value = "stopAtFailureExportMax", required = false) final boolean stopAtFailureExportMax,
+			@ApiParam(value = "Number of structure test failures of each test type and column to report the details of, the others are only counted. Defaults to rvf.validation.failureExampleMax") @RequestParam(value = "structureFailureExampleMax", required = false) final Integer structureFailureExampleMax,
 			@ApiParam(value = "The sub folder for validaiton reports") @RequestParam(value = "storageLocation") final String storageLocation,
 			final HttpServletRequest request) throws IOException {
 
@@ -247,7 +255,8 @@ public class TestUploadFileController {
 				.addPreviousExtVersion(previousExtVersion)
 				.addExtensionDependencyVersion(extensionDependency)
 				.addRunId(runId).addStorageLocation(storageLocation)
-				.addFailureExportMax(exportMax).addUrl(urlPrefix)
+				.addFailureExportMax(exportMax).addStopAtFailureExportMax(stopAtFailureExportMax)
+				.addStructureFailureExampleMax(structureFailureExampleMax).addUrl(urlPrefix)
 				.addProspectiveFilesInS3(true);
 
 		// Before we start running, ensure that we've made our mark in the
@@ -268,6 +277,19 @@ public class TestUploadFileController {
 		return new ResponseEntity<>(responseMap, returnStatus);
 	}
 
+	@RequestMapping(value = "/run/{runId}/cancel", method = RequestMethod.POST)
+	@ResponseBody
+	@ResponseStatus(HttpStatus.OK)
+	@ApiOperation(position = 5, value = "Cancel a validation run", notes = "Kills the assertion queries the run is executing and fails the assertions of the run that have not started yet.")
+	public ResponseEntity<Map<String, String>> cancelRun(
+			@ApiParam(value = "Unique run id of the validation to cancel") @PathVariable final Long runId) {
+		final Map<String, String> responseMap = new HashMap<>();
+		final int killed = assertionExecutionService.cancelRun(runId);
+		responseMap.put("runId", String.valueOf(runId));
+		responseMap.put("killedQueries", String.valueOf(killed));
+		return new ResponseEntity<>(responseMap, HttpStatus.OK);
+	}
+
 	private boolean isAssertionGroupsValid(List<String> validationGroups,
 			Map<String, String> responseMap) {
 		// check assertion groups
@@ -2,6 +2,8 @@ package org.ihtsdo.rvf.execution.service;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 import org.ihtsdo.rvf.entity.Assertion;
 import org.ihtsdo.rvf.entity.AssertionTest;
@@ -27,4 +29,39 @@ public interface AssertionExecutionService {
 
 	Collection<TestRunItem> executeAssertionsConcurrently(List<Assertion> assertions, ExecutionConfig config);
 
+	/**
+	 * @return groups of two or more assertions whose single statement is a row level check on the same table
+	 */
+	List<List<Assertion>> groupSharedScans(Collection<Assertion> assertions);
+
+	/**
+	 * Executes a group returned by {@link #groupSharedScans(Collection)} with a single scan of the table. The time of
+	 * the scan is shared between the assertions in proportion to their expected run times, keyed by assertion uuid,
+	 * and equally between the assertions without one.
+	 */
+	Collection<TestRunItem> executeSharedScan(List<Assertion> assertions, ExecutionConfig config, Map<UUID, Long> expectedRuntimes);
+
+	/**
+	 * Drops the cached statements of the execution commands of the given assertion after it or its tests changed.
+	 */
+	void evictPreparedCommands(Long assertionId);
+
+	/**
+	 * Extracts the failure counts and first failures of all given run items, executed with result extraction
+	 * deferred, counting the results of the run in one query and reading only the failures exported for each assertion.
+	 */
+	void extractTestResults(Collection<Assertion> assertions, Collection<TestRunItem> runItems, ExecutionConfig config);
+
+	/**
+	 * Drops the cached statements of all execution commands, e.g. after a test changed that any assertion may use.
+	 */
+	void clearPreparedCommands();
+
+	/**
+	 * Cancels the assertions of the given run that are running and fails the assertions of the run that have not
+	 * started yet.
+	 * @return the number of running queries killed
+	 */
+	int cancelRun(Long runId);
+
 }
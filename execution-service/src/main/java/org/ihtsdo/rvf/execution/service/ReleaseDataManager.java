@@ -3,9 +3,11 @@ package org.ihtsdo.rvf.execution.service;
 import java.io.File;
 import java.io.InputStream;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.ihtsdo.otf.rest.exception.BusinessServiceException;
+import org.ihtsdo.rvf.execution.service.impl.ReleaseFileDataLoader;
 
 /**
  * Utility service that manages a repository of published SNOMED CT releases. Note that we have deliberately not
@@ -20,6 +22,8 @@ public interface ReleaseDataManager {
 
     String loadSnomedData(String productVersion,List<String> rf2FilesLoaded,File ... zipDataFile) throws BusinessServiceException;
 
+    String loadSnomedData(String productVersion,List<String> rf2FilesLoaded,ReleaseFileDataLoader.LoadListener loadListener,File ... zipDataFile) throws BusinessServiceException;
+
     boolean isKnownRelease(String releaseVersion);
 
     Set<String> getAllKnownReleases();
@@ -30,14 +34,18 @@ public interface ReleaseDataManager {
 
 	List<File> getZipFileForKnownRelease(String knownVersion);
 	
-	boolean combineKnownVersions(final String combinedVersionName, final String ... knownVersions);
+	List<TableCopyStatus> combineKnownVersions(final String combinedVersionName, final String ... knownVersions) throws BusinessServiceException;
 	
 	void dropVersion(String version);
 
-	void copyTableData(String sourceVersion,String destinationVersion, String tableNamePattern, List<String> excludeTableNames) throws BusinessServiceException;
-	void copyTableData(String sourceVersionA,String sourceVersionB,String destinationVersion, String tableNamePattern, List<String> excludeTableNames) throws BusinessServiceException;
+	Map<String, Map<String, Long>> getTableLoadStatistics(String version);
+
+	List<TableCopyStatus> copyTableData(String sourceVersion,String destinationVersion, String tableNamePattern, List<String> excludeTableNames) throws BusinessServiceException;
+	List<TableCopyStatus> copyTableData(String sourceVersionA,String sourceVersionB,String destinationVersion, String tableNamePattern, List<String> excludeTableNames) throws BusinessServiceException;
 
 	void updateSnapshotTableWithDataFromDelta(String prospectiveVersion);
+
+	void createSnapshotOverlayViews(String baselineVersion, String prospectiveVersion, List<String> overlayTableNames) throws BusinessServiceException;
 	
 	String loadSnomedDataIntoExistingDb(String productVersion,List<String> rf2FilesLoaded,File ... zipDataFile) throws BusinessServiceException;
 
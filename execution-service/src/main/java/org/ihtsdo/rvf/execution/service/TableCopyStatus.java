@@ -0,0 +1,54 @@
+package org.ihtsdo.rvf.execution.service;
+
+/**
+ * The outcome of copying or merging the data of one table into another schema.
+ */
+public class TableCopyStatus {
+
+	private final String tableName;
+	private long rowsCopied;
+	private long durationMillis;
+	private String failureMessage;
+
+	public TableCopyStatus(final String tableName) {
+		this.tableName = tableName;
+	}
+
+	public String getTableName() {
+		return tableName;
+	}
+
+	public long getRowsCopied() {
+		return rowsCopied;
+	}
+
+	public void setRowsCopied(final long rowsCopied) {
+		this.rowsCopied = rowsCopied;
+	}
+
+	public long getDurationMillis() {
+		return durationMillis;
+	}
+
+	public void setDurationMillis(final long durationMillis) {
+		this.durationMillis = durationMillis;
+	}
+
+	public String getFailureMessage() {
+		return failureMessage;
+	}
+
+	public void setFailureMessage(final String failureMessage) {
+		this.failureMessage = failureMessage;
+	}
+
+	public boolean isSuccessful() {
+		return failureMessage == null;
+	}
+
+	@Override
+	public String toString() {
+		return tableName + (isSuccessful() ? " copied " + rowsCopied + " rows in " + durationMillis + " ms"
+				: " failed after " + durationMillis + " ms: " + failureMessage);
+	}
+}
@@ -0,0 +1,118 @@
+package org.ihtsdo.rvf.execution.service.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Limits the number of assertions running at the same time and adapts the limit to how MySQL copes with the load,
+ * additive increase and multiplicative decrease. Once as many assertions as the limit allows have completed, their run
+ * times are compared with their expected run times: when they took no more than the tolerated slowdown the limit
+ * grows by one, otherwise it shrinks by a quarter. Assertions without an expected run time do not count towards the
+ * slowdown, so a window without any of them grows the limit.
+ * <p>
+ * The only signal is the run time of the assertions against their run time history; the latency and throughput of
+ * MySQL are not measured. Without any history, as on the first run against a release of a new size class, the limit
+ * grows to the maximum whatever the load.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+	private static final double DECREASE_FACTOR = 0.75;
+
+	private final int minLimit;
+	private final int maxLimit;
+	private final double slowdownTolerance;
+	private final long startTime = System.currentTimeMillis();
+	private final List<String> limitChanges = new ArrayList<>();
+	private int limit;
+	private int inFlight;
+	private int windowCompleted;
+	private long windowActualMillis;
+	private long windowExpectedMillis;
+
+	/**
+	 * @param minLimit the limit to start from and never to go below
+	 * @param maxLimit the limit never to go above
+	 * @param slowdownTolerance the ratio of actual to expected run time up to which the limit keeps growing
+	 */
+	public AdaptiveConcurrencyLimiter(final int minLimit, final int maxLimit, final double slowdownTolerance) {
+		this.maxLimit = Math.max(1, maxLimit);
+		this.minLimit = Math.max(1, Math.min(minLimit, this.maxLimit));
+		this.slowdownTolerance = slowdownTolerance;
+		limit = this.minLimit;
+		limitChanges.add(describeLimit());
+	}
+
+	/**
+	 * Waits until another assertion may start. An interrupt does not stop the wait but is kept for the caller.
+	 */
+	public synchronized void acquire() {
+		boolean interrupted = false;
+		while (inFlight >= limit) {
+			try {
+				wait();
+			} catch (final InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		inFlight++;
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Lets the next assertion start without recording a run time, when the caller did not run an assertion after all.
+	 */
+	public synchronized void cancel() {
+		inFlight--;
+		notifyAll();
+	}
+
+	/**
+	 * Records the run time of an assertion that has completed and lets the next one start.
+	 * @param expectedMillis the expected run time or null when there is no history for the assertion
+	 * @return true when the limit has changed
+	 */
+	public synchronized boolean release(final long actualMillis, final Long expectedMillis) {
+		inFlight--;
+		windowCompleted++;
+		if (expectedMillis != null && expectedMillis > 0) {
+			windowActualMillis += actualMillis;
+			windowExpectedMillis += expectedMillis;
+		}
+		boolean changed = false;
+		if (windowCompleted >= limit) {
+			final int previous = limit;
+			if (windowExpectedMillis > 0 && windowActualMillis > windowExpectedMillis * slowdownTolerance) {
+				limit = Math.max(minLimit, Math.min(limit - 1, (int) (limit * DECREASE_FACTOR)));
+			} else {
+				limit = Math.min(maxLimit, limit + 1);
+			}
+			windowCompleted = 0;
+			windowActualMillis = 0;
+			windowExpectedMillis = 0;
+			changed = limit != previous;
+			if (changed) {
+				limitChanges.add(describeLimit());
+			}
+		}
+		notifyAll();
+		return changed;
+	}
+
+	public synchronized int getLimit() {
+		return limit;
+	}
+
+	/**
+	 * @return the limit over time, one entry per change in the form "[seconds since start]s:[limit]"
+	 */
+	public synchronized List<String> getLimitChanges() {
+		return Collections.unmodifiableList(new ArrayList<>(limitChanges));
+	}
+
+	private String describeLimit() {
+		return (System.currentTimeMillis() - startTime) / 1000 + "s:" + limit;
+	}
+}
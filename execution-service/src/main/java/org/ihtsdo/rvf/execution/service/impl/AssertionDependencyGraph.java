@@ -0,0 +1,250 @@
+package org.ihtsdo.rvf.execution.service.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.ihtsdo.rvf.entity.Assertion;
+import org.ihtsdo.rvf.entity.ExecutionCommand;
+import org.ihtsdo.rvf.entity.Test;
+import org.ihtsdo.rvf.service.AssertionService;
+
+/**
+ * The order assertions have to run in given the tables, views, procedures and functions their execution commands
+ * create. Two assertions depend on each other when one of them creates or drops an object the other one creates or
+ * refers to, e.g. the v_curr_delta_gb table built by a component-centric script and read by the procedure a resource
+ * assertion defines. Those assertions keep the order they are given in, all other assertions can run at the same time.
+ */
+public class AssertionDependencyGraph {
+
+	private static final Pattern COMMENT_PATTERN = Pattern.compile("/\\*.*?\\*/", Pattern.DOTALL);
+	private static final Pattern CREATE_PATTERN = Pattern.compile("\\b(?:create|drop)\\s+(?:or\\s+replace\\s+)?(?:temporary\\s+)?"
+			+ "(?:table|view|procedure|function)\\s+(?:if\\s+(?:not\\s+)?exists\\s+)?([\\w.<>`]+)", Pattern.CASE_INSENSITIVE);
+	private static final Pattern TOKEN_PATTERN = Pattern.compile("\\w+");
+
+	private final List<Node> nodes = new ArrayList<>();
+
+	/**
+	 * @param assertions the assertions in the order they would run one after the other
+	 */
+	public AssertionDependencyGraph(final List<Assertion> assertions, final AssertionService assertionService) {
+		this(assertions, getScripts(assertions, assertionService));
+	}
+
+	AssertionDependencyGraph(final List<Assertion> assertions, final List<String> scripts) {
+		final List<Set<String>> createdObjects = new ArrayList<>();
+		final List<Set<String>> tokens = new ArrayList<>();
+		final Set<String> allCreatedObjects = new HashSet<>();
+		for (int i = 0; i < assertions.size(); i++) {
+			nodes.add(new Node(assertions.get(i), i));
+			final String script = COMMENT_PATTERN.matcher(scripts.get(i)).replaceAll("").toLowerCase();
+			createdObjects.add(getCreatedObjects(script));
+			tokens.add(getTokens(script));
+			allCreatedObjects.addAll(createdObjects.get(i));
+		}
+		// the assertions that refer to each object created by any assertion, in the order they are given in
+		final Map<String, List<Integer>> mentions = new LinkedHashMap<>();
+		for (int i = 0; i < nodes.size(); i++) {
+			for (final String token : tokens.get(i)) {
+				if (allCreatedObjects.contains(token)) {
+					if (!mentions.containsKey(token)) {
+						mentions.put(token, new ArrayList<Integer>());
+					}
+					mentions.get(token).add(i);
+				}
+			}
+		}
+		for (final Map.Entry<String, List<Integer>> mention : mentions.entrySet()) {
+			for (final int creator : mention.getValue()) {
+				if (!createdObjects.get(creator).contains(mention.getKey())) {
+					continue;
+				}
+				// edges always point to the later assertion so that the graph can not contain cycles
+				for (final int other : mention.getValue()) {
+					if (other != creator) {
+						addEdge(nodes.get(Math.min(creator, other)), nodes.get(Math.max(creator, other)));
+					}
+				}
+			}
+		}
+	}
+
+	private static List<String> getScripts(final List<Assertion> assertions, final AssertionService assertionService) {
+		final List<String> scripts = new ArrayList<>();
+		for (final Assertion assertion : assertions) {
+			final StringBuilder script = new StringBuilder();
+			for (final Test test : assertionService.getTests(assertion)) {
+				final ExecutionCommand command = test.getCommand();
+				if (command == null) {
+					continue;
+				}
+				if (command.getTemplate() != null) {
+					script.append(command.getTemplate()).append('\n');
+				}
+				for (final String statement : command.getStatements()) {
+					script.append(statement).append('\n');
+				}
+			}
+			scripts.add(script.toString());
+		}
+		return scripts;
+	}
+
+	private Set<String> getCreatedObjects(final String script) {
+		final Set<String> created = new HashSet<>();
+		final Matcher matcher = CREATE_PATTERN.matcher(script);
+		while (matcher.find()) {
+			// drop the schema placeholder or name and any quoting
+			final String name = matcher.group(1).replace("`", "");
+			created.add(name.substring(name.lastIndexOf('.') + 1));
+		}
+		return created;
+	}
+
+	private Set<String> getTokens(final String script) {
+		final Set<String> result = new HashSet<>();
+		final Matcher matcher = TOKEN_PATTERN.matcher(script);
+		while (matcher.find()) {
+			result.add(matcher.group());
+		}
+		return result;
+	}
+
+	private void addEdge(final Node from, final Node to) {
+		if (from.successors.add(to)) {
+			to.predecessorCount++;
+			to.pendingPredecessors.incrementAndGet();
+		}
+	}
+
+	public List<Node> getNodes() {
+		return Collections.unmodifiableList(nodes);
+	}
+
+	/**
+	 * @return the assertions that do not have to wait for any other assertion
+	 */
+	public List<Node> getRoots() {
+		final List<Node> roots = new ArrayList<>();
+		for (final Node node : nodes) {
+			if (node.predecessorCount == 0) {
+				roots.add(node);
+			}
+		}
+		return roots;
+	}
+
+	/**
+	 * Sets the priority of each assertion to its expected run time plus the longest expected run time of the chain of
+	 * assertions waiting for it, so that starting the assertion with the highest priority first schedules the longest
+	 * work first. Assertions without a run time are expected to take the average time of the others.
+	 * @param expectedRuntimes the expected run time in milliseconds keyed by assertion uuid
+	 */
+	public void prioritise(final Map<UUID, Long> expectedRuntimes) {
+		long knownMillis = 0;
+		int knownCount = 0;
+		for (final Node node : nodes) {
+			final Long millis = expectedRuntimes.get(node.assertion.getUuid());
+			if (millis != null) {
+				knownMillis += millis;
+				knownCount++;
+			}
+		}
+		final long defaultMillis = knownCount == 0 ? 0 : knownMillis / knownCount;
+		// successors always come later so walking backwards visits them before the nodes waiting for them
+		for (int i = nodes.size() - 1; i >= 0; i--) {
+			final Node node = nodes.get(i);
+			final Long millis = expectedRuntimes.get(node.assertion.getUuid());
+			long longestSuccessor = 0;
+			for (final Node successor : node.successors) {
+				longestSuccessor = Math.max(longestSuccessor, successor.priority);
+			}
+			node.priority = (millis == null ? defaultMillis : millis) + longestSuccessor;
+		}
+	}
+
+	/**
+	 * @return the number of assertions on the longest chain of assertions that have to run one after the other
+	 */
+	public int getCriticalPathLength() {
+		final Map<Node, Integer> lengths = new LinkedHashMap<>();
+		int longest = 0;
+		// edges only point to later nodes so every predecessor has been visited before its successors
+		for (final Node node : nodes) {
+			final int length = lengths.containsKey(node) ? lengths.get(node) : 1;
+			longest = Math.max(longest, length);
+			for (final Node successor : node.successors) {
+				if (!lengths.containsKey(successor) || lengths.get(successor) < length + 1) {
+					lengths.put(successor, length + 1);
+				}
+			}
+		}
+		return longest;
+	}
+
+	/**
+	 * An assertion together with the assertions that have to wait for it.
+	 */
+	public static class Node {
+
+		/** Orders the highest priority first and otherwise keeps the order the assertions were given in. */
+		public static final Comparator<Node> PRIORITY_ORDER = new Comparator<Node>() {
+			@Override
+			public int compare(final Node first, final Node second) {
+				if (first.priority != second.priority) {
+					return first.priority > second.priority ? -1 : 1;
+				}
+				return Integer.compare(first.index, second.index);
+			}
+		};
+
+		private final Assertion assertion;
+		private final int index;
+		private final Set<Node> successors = new LinkedHashSet<>();
+		private final AtomicInteger pendingPredecessors = new AtomicInteger();
+		private int predecessorCount;
+		private long priority;
+
+		private Node(final Assertion assertion, final int index) {
+			this.assertion = assertion;
+			this.index = index;
+		}
+
+		public Assertion getAssertion() {
+			return assertion;
+		}
+
+		public long getPriority() {
+			return priority;
+		}
+
+		/**
+		 * @return true when the assertion neither waits for nor is waited for by any other assertion
+		 */
+		public boolean isIndependent() {
+			return predecessorCount == 0 && successors.isEmpty();
+		}
+
+		public Set<Node> getSuccessors() {
+			return Collections.unmodifiableSet(successors);
+		}
+
+		/**
+		 * Called once for each predecessor that has completed.
+		 * @return true when all predecessors have completed and the assertion can run
+		 */
+		public boolean release() {
+			return pendingPredecessors.decrementAndGet() == 0;
+		}
+	}
+}
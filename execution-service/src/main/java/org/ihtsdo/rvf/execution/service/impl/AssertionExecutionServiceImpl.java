@@ -4,16 +4,31 @@ import java.sql.CallableStatement;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import javax.annotation.Resource;
@@ -50,17 +65,55 @@ public class AssertionExecutionServiceImpl implements AssertionExecutionService,
 	RvfDynamicDataSource rvfDynamicDataSource;
 	@Autowired
 	ReleaseDataManager releaseDataManager;
+	@Autowired
+	StorageProfile storageProfile;
 	private String qaResulTableName;
 	private String deltaTableSuffix = "d";
 	private String snapshotTableSuffix = "s";
 	private String fullTableSuffix = "f";
+	private int resultInsertBatchSize = 1000;
+	private boolean directResultInsert;
+	private boolean runScopedResultTables;
+	private int resultTableMaxKeepTimeInHour = 1;
+	private final Set<Long> createdResultTables = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+	// when this instance last recorded a write to the result table of each run
+	private final ConcurrentMap<Long, Long> resultTableWriteTimes = new ConcurrentHashMap<>();
 	
 	private ExecutorService executorService = Executors.newCachedThreadPool();
+	private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor();
+	private int assertionTimeoutInSeconds;
+	private final ConcurrentMap<Long, Set<RunningAssertion>> runningAssertions = new ConcurrentHashMap<>();
+	private final Set<Long> cancelledRuns = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+
+	// the parsed statements of each execution command keyed by assertion id and command id
+	private final ConcurrentMap<Long, ConcurrentMap<Long, PreparedCommand>> preparedCommands = new ConcurrentHashMap<>();
 
 	private final Logger logger = LoggerFactory.getLogger(AssertionExecutionServiceImpl.class);
+	private static final String RUN_ID_PLACEHOLDER = "<RUNID>";
+	private static final Pattern COMMENT_PATTERN = Pattern.compile("/\\*.*?\\*/", Pattern.DOTALL);
+	private static final String RESULT_TABLE_WRITES = "result_table_write";
+	private static final long RESULT_TABLE_WRITE_INTERVAL_IN_SECONDS = 60;
 
 	@Override
 	public void afterPropertiesSet() throws Exception {
+		storageProfile.applyToResultTable(dataSource, qaResulTableName);
+		if (runScopedResultTables) {
+			try (Connection connection = dataSource.getConnection();
+					Statement statement = connection.createStatement()) {
+				statement.execute("create table if not exists " + RESULT_TABLE_WRITES + "(run_id bigint not null primary key, last_write_at timestamp not null)");
+			}
+			// assertions can run for longer than the keep time, their tables must not be taken for abandoned ones
+			watchdog.scheduleAtFixedRate(new Runnable() {
+				@Override
+				public void run() {
+					for (final Map.Entry<Long, Set<RunningAssertion>> runAssertions : runningAssertions.entrySet()) {
+						if (!runAssertions.getValue().isEmpty()) {
+							recordResultTableWrite(runAssertions.getKey(), true);
+						}
+					}
+				}
+			}, RESULT_TABLE_WRITE_INTERVAL_IN_SECONDS, RESULT_TABLE_WRITE_INTERVAL_IN_SECONDS, TimeUnit.SECONDS);
+		}
 //		final String createSQLString = "CREATE TABLE IF NOT EXISTS " + qaResulTableName + "(run_id BIGINT, assertion_id BIGINT, concept_id BIGINT, " + 
 //				"details VARCHAR(500)) engine=innodb default charset=utf8";
 //		try (Connection connection = dataSource.getConnection()) {
@@ -176,10 +229,11 @@ public List<TestRunItem> executeAssertionsConcurrently(List<Assertion> assertion
 		// set prospective version as default schema to use since SQL has calls that do not specify schema name
 		final String prospectiveSchemaName = releaseDataManager.getSchemaForRelease(config.getProspectiveVersion());
 
-		final TestRunItem runItem = new TestRunItem();
-		runItem.setTestCategory(assertion.getKeywords());
-		runItem.setAssertionText(assertion.getAssertionText());
-		runItem.setAssertionUuid(assertion.getUuid());
+		final TestRunItem runItem = createRunItem(assertion);
+		if (cancelledRuns.contains(config.getExecutionId())) {
+			runItem.setFailureMessage("Run " + config.getExecutionId() + " has been cancelled");
+			return runItem;
+		}
 
 		// get command from test and validate the included command object
 		final ExecutionCommand command = test.getCommand();
@@ -187,11 +241,28 @@ public List<TestRunItem> executeAssertionsConcurrently(List<Assertion> assertion
 		{
 			// execute sql and get result
 			// create a single connection for entire test and close it after running test - avoid creating too many connections
+			RunningAssertion running = null;
 			try (Connection connection = rvfDynamicDataSource.getConnection(prospectiveSchemaName)) {
-				executeCommand(assertion, config, command, connection);
+				ensureResultTable(config.getExecutionId());
+				running = startAssertion(config.getExecutionId(), connection);
+				try {
+					executeCommand(assertion, config, command, connection, runItem, running);
+				} finally {
+					finishAssertion(running);
+				}
 				long timeEnd = System.currentTimeMillis();
 				runItem.setRunTime((timeEnd - timeStart));
 			} catch (final Exception e) {
+				if (running != null && running.timedOut) {
+					logger.warn("Assertion {} exceeded its time budget of {} seconds and has been cancelled", assertion.getUuid(), assertionTimeoutInSeconds);
+					runItem.setTimedOut(true);
+					runItem.setFailureMessage("Assertion exceeded its time budget of " + assertionTimeoutInSeconds + " seconds and has been cancelled");
+					return runItem;
+				}
+				if (running != null && running.cancelled) {
+					runItem.setFailureMessage("Run " + config.getExecutionId() + " has been cancelled");
+					return runItem;
+				}
 				e.printStackTrace();
 				logger.warn("Failed to excute command {},Nested exception is : " + e.fillInStackTrace(), command.toString());
 				runItem.setFailureMessage("Error executing SQL command object Nested exception : " + e.fillInStackTrace());
@@ -201,6 +272,9 @@ public List<TestRunItem> executeAssertionsConcurrently(List<Assertion> assertion
 			runItem.setFailureMessage("Test does not have any associated execution command:" + test);
 			return runItem;
 		}
+		if (config.isDeferResultExtraction()) {
+			return runItem;
+		}
 		
 		try {
 			long extractTimeStart = System.currentTimeMillis();
@@ -215,9 +289,400 @@ public List<TestRunItem> executeAssertionsConcurrently(List<Assertion> assertion
 		return runItem;
 	}
 
-	private void executeCommand(final Assertion assertion, final ExecutionConfig config,
-			final ExecutionCommand command, final Connection connection)
-			throws SQLException, ConfigurationException {
+	private Collection<TestRunItem> createFailedRunItems(final List<Assertion> assertions, final String failureMessage, final boolean timedOut) {
+		final Collection<TestRunItem> runItems = new ArrayList<>();
+		for (final Assertion assertion : assertions) {
+			final TestRunItem runItem = createRunItem(assertion);
+			runItem.setTimedOut(timedOut);
+			runItem.setFailureMessage(failureMessage);
+			runItems.add(runItem);
+		}
+		return runItems;
+	}
+
+	private TestRunItem createRunItem(final Assertion assertion) {
+		final TestRunItem runItem = new TestRunItem();
+		runItem.setTestCategory(assertion.getKeywords());
+		runItem.setAssertionText(assertion.getAssertionText());
+		runItem.setAssertionUuid(assertion.getUuid());
+		return runItem;
+	}
+
+	@Override
+	public List<List<Assertion>> groupSharedScans(final Collection<Assertion> assertions) {
+		final Map<String, List<Assertion>> groups = new LinkedHashMap<>();
+		for (final Assertion assertion : assertions) {
+			final List<Test> tests = assertionService.getTests(assertion);
+			if (tests.size() != 1 || tests.get(0).getCommand() == null) {
+				continue;
+			}
+			final SharedScanStatement statement = getSharedScanStatement(getStatementParts(tests.get(0).getCommand()));
+			if (statement != null) {
+				if (!groups.containsKey(statement.getScanKey())) {
+					groups.put(statement.getScanKey(), new ArrayList<Assertion>());
+				}
+				groups.get(statement.getScanKey()).add(assertion);
+			}
+		}
+		final List<List<Assertion>> result = new ArrayList<>();
+		for (final List<Assertion> group : groups.values()) {
+			if (group.size() > 1) {
+				result.add(group);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public Collection<TestRunItem> executeSharedScan(final List<Assertion> assertions, final ExecutionConfig config,
+			final Map<UUID, Long> expectedRuntimes) {
+		final List<SharedScanStatement> statements = new ArrayList<>();
+		try {
+			for (final Assertion assertion : assertions) {
+				final List<String> transformed = transformSql(assertionService.getTests(assertion).get(0).getCommand(), assertion, config);
+				statements.add(getSharedScanStatement(transformed.toArray(new String[transformed.size()])));
+			}
+		} catch (final ConfigurationException e) {
+			logger.warn("Failed to transform shared scan statements, executing assertions one by one. Nested exception is : " + e.fillInStackTrace());
+			return executeAssertions(assertions, config);
+		}
+		if (cancelledRuns.contains(config.getExecutionId())) {
+			return createFailedRunItems(assertions, "Run " + config.getExecutionId() + " has been cancelled", false);
+		}
+		final String prospectiveSchemaName = releaseDataManager.getSchemaForRelease(config.getProspectiveVersion());
+		final long timeStart = System.currentTimeMillis();
+		RunningAssertion running = null;
+		try (Connection connection = rvfDynamicDataSource.getConnection(prospectiveSchemaName)) {
+			ensureResultTable(config.getExecutionId());
+			running = startAssertion(config.getExecutionId(), connection);
+			try {
+				executeUpdateStatement(connection, SharedScanStatement.fuse(statements));
+			} finally {
+				finishAssertion(running);
+			}
+		} catch (final SQLException e) {
+			deleteResults(assertions, config);
+			// running the assertions again one by one would only multiply the time spent on them
+			if (running != null && running.timedOut) {
+				logger.warn("Shared scan of {} exceeded its time budget of {} seconds and has been cancelled", statements.get(0).getTable(), assertionTimeoutInSeconds);
+				return createFailedRunItems(assertions, "Assertion exceeded its time budget of " + assertionTimeoutInSeconds
+						+ " seconds in a shared scan and has been cancelled", true);
+			}
+			if (running != null && running.cancelled) {
+				return createFailedRunItems(assertions, "Run " + config.getExecutionId() + " has been cancelled", false);
+			}
+			logger.warn("Failed to execute shared scan of {}, executing assertions one by one. Nested exception is : " + e.fillInStackTrace(),
+					statements.get(0).getTable());
+			return executeAssertions(assertions, config);
+		}
+		final Map<Assertion, Long> runTimes = shareRunTime(assertions, System.currentTimeMillis() - timeStart, expectedRuntimes);
+		final Collection<TestRunItem> runItems = new ArrayList<>();
+		for (final Assertion assertion : assertions) {
+			final TestRunItem runItem = createRunItem(assertion);
+			runItem.setRunTime(runTimes.get(assertion));
+			if (config.isDeferResultExtraction()) {
+				runItems.add(runItem);
+				continue;
+			}
+			try {
+				final long extractTimeStart = System.currentTimeMillis();
+				extractTestResult(assertion, runItem, config);
+				runItem.setExtractResultInMillis(System.currentTimeMillis() - extractTimeStart);
+			} catch (final SQLException e) {
+				logger.warn("Failed to extract test result : " + e.fillInStackTrace());
+				runItem.setFailureMessage("Error extracting test result. Nested exception : " + e.fillInStackTrace() + runItem);
+			}
+			logger.info(runItem.toString());
+			runItems.add(runItem);
+		}
+		return runItems;
+	}
+
+	/**
+	 * Shares the time of a shared scan between its assertions in proportion to their expected run times, so that the
+	 * run time history of a slow check is not lowered and that of a fast one raised by the scan. The assertions without
+	 * an expected run time are given the average of the others, or all an equal share when none has one.
+	 */
+	static Map<Assertion, Long> shareRunTime(final List<Assertion> assertions, final long totalMillis, final Map<UUID, Long> expectedRuntimes) {
+		long expectedTotal = 0;
+		int expectedCount = 0;
+		for (final Assertion assertion : assertions) {
+			final Long expected = expectedRuntimes.get(assertion.getUuid());
+			if (expected != null) {
+				expectedTotal += Math.max(expected, 1);
+				expectedCount++;
+			}
+		}
+		final long defaultWeight = expectedCount == 0 ? 1 : Math.max(expectedTotal / expectedCount, 1);
+		final Map<Assertion, Long> weights = new IdentityHashMap<>();
+		long totalWeight = 0;
+		for (final Assertion assertion : assertions) {
+			final Long expected = expectedRuntimes.get(assertion.getUuid());
+			final long weight = expected == null ? defaultWeight : Math.max(expected, 1);
+			weights.put(assertion, weight);
+			totalWeight += weight;
+		}
+		final Map<Assertion, Long> runTimes = new IdentityHashMap<>();
+		for (final Assertion assertion : assertions) {
+			runTimes.put(assertion, Math.round(totalMillis * ((double) weights.get(assertion) / totalWeight)));
+		}
+		return runTimes;
+	}
+
+	/**
+	 * @return the statement when the parts contain a single row level check, ignoring empty parts and commits
+	 */
+	private SharedScanStatement getSharedScanStatement(final String[] parts) {
+		String statement = null;
+		for (final String part : parts) {
+			final String trimmed = COMMENT_PATTERN.matcher(part).replaceAll("").trim();
+			if (trimmed.isEmpty() || trimmed.equalsIgnoreCase("commit")) {
+				continue;
+			}
+			if (statement != null) {
+				return null;
+			}
+			statement = trimmed;
+		}
+		return statement == null ? null : SharedScanStatement.parse(statement);
+	}
+
+	/**
+	 * Registers the assertion about to run on the given connection so that it can be cancelled, and schedules its
+	 * cancellation once it has used up its time budget.
+	 */
+	private RunningAssertion startAssertion(final Long runId, final Connection connection) {
+		long connectionId = -1;
+		try (Statement statement = connection.createStatement();
+				ResultSet resultSet = statement.executeQuery("select connection_id()")) {
+			if (resultSet.next()) {
+				connectionId = resultSet.getLong(1);
+			}
+		} catch (final SQLException e) {
+			logger.debug("Assertions can not be cancelled as the connection id is not available due to " + e.fillInStackTrace());
+		}
+		final RunningAssertion running = new RunningAssertion(runId, connectionId);
+		Set<RunningAssertion> runAssertions = runningAssertions.get(runId);
+		if (runAssertions == null) {
+			final Set<RunningAssertion> created = Collections.newSetFromMap(new ConcurrentHashMap<RunningAssertion, Boolean>());
+			runAssertions = runningAssertions.putIfAbsent(runId, created);
+			if (runAssertions == null) {
+				runAssertions = created;
+			}
+		}
+		runAssertions.add(running);
+		if (assertionTimeoutInSeconds > 0) {
+			running.timeout = watchdog.schedule(new Runnable() {
+				@Override
+				public void run() {
+					running.timedOut = true;
+					killQuery(running);
+				}
+			}, assertionTimeoutInSeconds, TimeUnit.SECONDS);
+		}
+		return running;
+	}
+
+	private void finishAssertion(final RunningAssertion running) {
+		if (running.timeout != null) {
+			running.timeout.cancel(false);
+		}
+		// wait for a kill in progress so that it can not hit the next user of the pooled connection
+		synchronized (running) {
+			running.finished = true;
+		}
+		final Set<RunningAssertion> runAssertions = runningAssertions.get(running.runId);
+		if (runAssertions != null) {
+			runAssertions.remove(running);
+		}
+	}
+
+	/**
+	 * Kills the statement the assertion is executing, which makes it fail with an exception on its own connection.
+	 */
+	private boolean killQuery(final RunningAssertion running) {
+		synchronized (running) {
+			if (running.connectionId < 0 || running.finished) {
+				return false;
+			}
+			// the release schemas are on the same server as the rvf schema
+			try (Connection connection = dataSource.getConnection();
+					Statement statement = connection.createStatement()) {
+				statement.execute("KILL QUERY " + running.connectionId);
+				logger.info("Killed query on connection {} of run {}", running.connectionId, running.runId);
+				return true;
+			} catch (final SQLException e) {
+				logger.warn("Failed to kill query on connection " + running.connectionId + " due to " + e.fillInStackTrace());
+				return false;
+			}
+		}
+	}
+
+	@Override
+	public int cancelRun(final Long runId) {
+		cancelledRuns.add(runId);
+		int killed = 0;
+		final Set<RunningAssertion> runAssertions = runningAssertions.get(runId);
+		if (runAssertions != null) {
+			for (final RunningAssertion running : runAssertions) {
+				running.cancelled = true;
+				if (killQuery(running)) {
+					killed++;
+				}
+			}
+		}
+		logger.info("Cancelled run {}, killed {} running queries", runId, killed);
+		return killed;
+	}
+
+	/**
+	 * An assertion executing on a connection of the release schema.
+	 */
+	private static class RunningAssertion {
+
+		private final Long runId;
+		private final long connectionId;
+		private volatile boolean timedOut;
+		private volatile boolean cancelled;
+		private boolean finished;
+		private ScheduledFuture<?> timeout;
+
+		private RunningAssertion(final Long runId, final long connectionId) {
+			this.runId = runId;
+			this.connectionId = connectionId;
+		}
+
+		private void check() throws SQLException {
+			if (timedOut || cancelled) {
+				throw new SQLException("Assertion has been " + (timedOut ? "timed out" : "cancelled"));
+			}
+		}
+	}
+
+	/**
+	 * @return the table the results of the given run are written to, the run id may also be the run id placeholder
+	 */
+	private String getResultTableName(final Object runId) {
+		return runScopedResultTables ? qaResulTableName + "_" + runId : qaResulTableName;
+	}
+
+	/**
+	 * Creates the result table of the run when results are kept in a table per run. The tables not written to for
+	 * longer than the keep time are dropped at the same time, which takes the same time however many results they hold.
+	 * The last write to each table is recorded in {@value #RESULT_TABLE_WRITES} as the update time MySQL keeps for
+	 * InnoDB tables is lost on a restart and is not set before a transaction commits.
+	 */
+	private void ensureResultTable(final Long runId) throws SQLException {
+		if (!runScopedResultTables) {
+			return;
+		}
+		if (!createdResultTables.add(runId)) {
+			recordResultTableWrite(runId, false);
+			return;
+		}
+		// recorded before the table exists so that the table is never seen without it
+		recordResultTableWrite(runId, true);
+		try (Connection connection = dataSource.getConnection();
+				Statement statement = connection.createStatement()) {
+			// like copies the columns and indexes of the shared table but not its foreign keys
+			statement.execute("create table if not exists " + getResultTableName(runId) + " like " + qaResulTableName);
+			logger.info("Created result table {}", getResultTableName(runId));
+		} catch (final SQLException e) {
+			createdResultTables.remove(runId);
+			throw e;
+		}
+		dropExpiredResultTables();
+	}
+
+	/**
+	 * Records a write to the result table of the run, at most once a minute unless forced.
+	 */
+	private void recordResultTableWrite(final Long runId, final boolean force) {
+		final long now = System.currentTimeMillis();
+		final Long lastWrite = resultTableWriteTimes.get(runId);
+		if (!force && lastWrite != null && now - lastWrite < TimeUnit.SECONDS.toMillis(RESULT_TABLE_WRITE_INTERVAL_IN_SECONDS)) {
+			return;
+		}
+		resultTableWriteTimes.put(runId, now);
+		final String sql = "insert into " + RESULT_TABLE_WRITES + " (run_id, last_write_at) values (?, now()) on duplicate key update last_write_at = now()";
+		try (Connection connection = dataSource.getConnection();
+				PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+			preparedStatement.setLong(1, runId);
+			preparedStatement.executeUpdate();
+		} catch (final SQLException e) {
+			logger.error("Failed to record the last write to the result table of run " + runId + " due to " + e.fillInStackTrace());
+		}
+	}
+
+	/**
+	 * Drops the result tables whose last recorded write is older than the keep time. Tables without a recorded write
+	 * were created before writes were recorded and are dropped once they were created longer ago than the keep time.
+	 */
+	private void dropExpiredResultTables() {
+		final Pattern runTablePattern = Pattern.compile(Pattern.quote(qaResulTableName) + "_(\\d+)");
+		try (Connection connection = dataSource.getConnection()) {
+			final Set<Long> recordedRuns = new HashSet<>();
+			final Set<Long> expiredRuns = new HashSet<>();
+			try (PreparedStatement preparedStatement = connection.prepareStatement("select run_id, last_write_at < now() - interval ? hour from " + RESULT_TABLE_WRITES)) {
+				preparedStatement.setInt(1, resultTableMaxKeepTimeInHour);
+				try (ResultSet resultSet = preparedStatement.executeQuery()) {
+					while (resultSet.next()) {
+						recordedRuns.add(resultSet.getLong(1));
+						if (resultSet.getBoolean(2)) {
+							expiredRuns.add(resultSet.getLong(1));
+						}
+					}
+				}
+			}
+			final String sql = "select table_name from INFORMATION_SCHEMA.TABLES where table_schema = database() and table_name like ? "
+					+ "and create_time < now() - interval ? hour";
+			final Map<String, Long> expiredTables = new LinkedHashMap<>();
+			try (PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+				preparedStatement.setString(1, qaResulTableName.replace("_", "\\_") + "\\_%");
+				preparedStatement.setInt(2, resultTableMaxKeepTimeInHour);
+				try (ResultSet resultSet = preparedStatement.executeQuery()) {
+					while (resultSet.next()) {
+						final Matcher matcher = runTablePattern.matcher(resultSet.getString(1));
+						if (matcher.matches()) {
+							final Long runId = Long.valueOf(matcher.group(1));
+							if (expiredRuns.contains(runId) || !recordedRuns.contains(runId)) {
+								expiredTables.put(resultSet.getString(1), runId);
+							}
+						}
+					}
+				}
+			}
+			for (final Map.Entry<String, Long> table : expiredTables.entrySet()) {
+				executeUpdateStatement(connection, "drop table if exists " + table.getKey());
+				createdResultTables.remove(table.getValue());
+				resultTableWriteTimes.remove(table.getValue());
+			}
+			try (PreparedStatement preparedStatement = connection.prepareStatement("delete from " + RESULT_TABLE_WRITES + " where last_write_at < now() - interval ? hour")) {
+				preparedStatement.setInt(1, resultTableMaxKeepTimeInHour);
+				preparedStatement.executeUpdate();
+			}
+		} catch (final SQLException e) {
+			logger.error("Failed to drop expired result tables due to " + e.fillInStackTrace());
+		}
+	}
+
+	/** Removes the results a failed shared scan may have inserted before running the assertions one by one */
+	private void deleteResults(final List<Assertion> assertions, final ExecutionConfig config) {
+		final String deleteSQL = "delete from " + getResultTableName(config.getExecutionId()) + " where run_id = ? and assertion_id = ?";
+		try (Connection connection = dataSource.getConnection();
+				PreparedStatement statement = connection.prepareStatement(deleteSQL)) {
+			for (final Assertion assertion : assertions) {
+				statement.setLong(1, config.getExecutionId());
+				statement.setLong(2, assertion.getAssertionId());
+				statement.addBatch();
+			}
+			statement.executeBatch();
+		} catch (final SQLException e) {
+			logger.error("Failed to delete results of failed shared scan due to " + e.fillInStackTrace());
+		}
+	}
+
+	private String[] getStatementParts(final ExecutionCommand command) {
 		String[] parts = {""};
 		if (command.getStatements().size() == 0)
 		{
@@ -228,12 +693,25 @@ public List<TestRunItem> executeAssertionsConcurrently(List<Assertion> assertion
 		}else {
 			parts = command.getStatements().toArray(new String[command.getStatements().size()]);
 		}
+		return parts;
+	}
+
+	private void executeCommand(final Assertion assertion, final ExecutionConfig config,
+			final ExecutionCommand command, final Connection connection, final TestRunItem runItem, final RunningAssertion running)
+			throws SQLException, ConfigurationException {
 		// parse sql to get select statement
-		final List<String> sqlStatements = transformSql(parts,assertion, config);
+		final List<String> sqlStatements = transformSql(command, assertion, config);
+		final String qualifiedResultTable = dataSource.getDefaultCatalog() + "." + getResultTableName(config.getExecutionId());
+		// in early exit mode one failure more than is exported tells that there are more
+		final int rowLimit = config.isStopAtFailureExportMax() ? config.getFailureExportMax() + 1 : 0;
+		long resultRows = 0;
+		long resultWriteMillis = 0;
 		for (String sqlStatement: sqlStatements)
 		{
 			// remove any leading and train white space
 			sqlStatement = sqlStatement.trim();
+			// a kill arriving between two statements has nothing to cancel
+			running.check();
 			if (sqlStatement.startsWith("call")) {
 				logger.info("Start calling stored proecure {}", sqlStatement);
 				try ( CallableStatement cs = connection.prepareCall(sqlStatement)) {
@@ -242,45 +720,107 @@ public List<TestRunItem> executeAssertionsConcurrently(List<Assertion> assertion
 				logger.info("End of calling stored proecure {}", sqlStatement);
 			}
 			else if (sqlStatement.startsWith("select")){
-				//TODO need to verify this is required.
 				logger.info("Select query found:" + sqlStatement);
-				final Long executionId = config.getExecutionId();
-				try (PreparedStatement preparedStatement = connection.prepareStatement(sqlStatement)) {
-					try (ResultSet execResult = preparedStatement.executeQuery()) {
-						final String insertSQL = "insert into " + qaResulTableName + " (run_id, assertion_id, details) values (?, ?, ?)";
-						try (Connection qaDbConnecion = dataSource.getConnection()) {
-							try (PreparedStatement insertStatement = qaDbConnecion.prepareStatement(insertSQL)) {
-								while(execResult.next())
-								{
-									insertStatement.setLong(1, executionId);
-									insertStatement.setLong(2, assertion.getAssertionId());
-									insertStatement.setString(3, execResult.getString(3));
-									insertStatement.addBatch();
-								}
-								// execute insert statement
-								insertStatement.executeBatch();
-								logger.debug("batch insert completed for assertion:" + assertion.getAssertionText());
-							}
-						}
-					}
+				final long writeStart = System.currentTimeMillis();
+				Long directRows = null;
+				if (directResultInsert) {
+					directRows = insertSelectResults(sqlStatement, qualifiedResultTable, assertion, config, connection, rowLimit);
 				}
+				resultRows += directRows != null ? directRows : writeSelectResults(sqlStatement, assertion, config, connection, rowLimit);
+				resultWriteMillis += System.currentTimeMillis() - writeStart;
 			}
 			else {
 				if (sqlStatement.startsWith("create table")){
 					// only add engine if we do not create using a like statement
 					if (!(sqlStatement.contains("like") || sqlStatement.contains("as"))) {
-						sqlStatement = sqlStatement + " ENGINE = MyISAM";
+						sqlStatement = sqlStatement + " " + storageProfile.getTemporaryTableClause(sqlStatement);
 					}
 				}
-				executeUpdateStatement(connection, sqlStatement);
+				final boolean resultInsert = isResultInsert(sqlStatement, qualifiedResultTable);
+				if (resultInsert && rowLimit > 0) {
+					sqlStatement = SharedScanStatement.withRowLimit(sqlStatement, rowLimit);
+				}
+				final long writeStart = System.currentTimeMillis();
+				final int updated = executeUpdateStatement(connection, sqlStatement);
+				if (resultInsert) {
+					resultRows += updated;
+					resultWriteMillis += System.currentTimeMillis() - writeStart;
+				}
 			}
 		}
+		runItem.setResultRowCount(resultRows);
+		runItem.setResultWriteInMillis(resultWriteMillis);
 	}
 
-	private List<String> transformSql(String[] parts, Assertion assertion, ExecutionConfig config) throws ConfigurationException {
-		final List<String> result = new ArrayList<>();
-		final String defaultCatalog = dataSource.getDefaultCatalog();
-		
+	/**
+	 * @return true when the statement inserts into the given result table, whatever the case of the keywords and the
+	 * white space between them
+	 */
+	static boolean isResultInsert(final String sqlStatement, final String qualifiedResultTable) {
+		return Pattern.compile("^insert\\s+into\\s+" + Pattern.quote(qualifiedResultTable) + "(?![\\w$])", Pattern.CASE_INSENSITIVE)
+				.matcher(sqlStatement).find();
+	}
+
+	/**
+	 * Reads the failures returned by the select one row at a time and writes the details in the third column to the
+	 * QA result table in batches.
+	 * @param rowLimit the maximum number of rows to read or 0 to read all of them
+	 * @return the number of rows written
+	 */
+	private long writeSelectResults(final String sqlStatement, final Assertion assertion, final ExecutionConfig config,
+			final Connection connection, final int rowLimit) throws SQLException {
+		try (PreparedStatement preparedStatement = connection.prepareStatement(sqlStatement,
+				ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+			preparedStatement.setMaxRows(rowLimit);
+			if (connection.getMetaData().getDatabaseProductName().startsWith("MySQL")) {
+				// make the MySQL driver stream the rows instead of reading all of them before returning
+				preparedStatement.setFetchSize(Integer.MIN_VALUE);
+			}
+			try (ResultSet execResult = preparedStatement.executeQuery();
+					Connection qaDbConnecion = dataSource.getConnection();
+					QaResultWriter writer = new QaResultWriter(qaDbConnecion, getResultTableName(config.getExecutionId()), config.getExecutionId(),
+							assertion.getAssertionId(), resultInsertBatchSize)) {
+				while (execResult.next()) {
+					writer.write(execResult.getString(3));
+				}
+				writer.flush();
+				logger.debug("batch insert of {} rows completed for assertion: {}", writer.getRowCount(), assertion.getAssertionText());
+				return writer.getRowCount();
+			}
+		}
+	}
+
+	/**
+	 * Inserts the failures returned by the select into the QA result table with a single statement executed on the
+	 * release schema connection, which is possible as long as both schemas are on the same server.
+	 * @param rowLimit the maximum number of rows to insert or 0 to insert all of them
+	 * @return the number of rows written or null when the select can not be run this way
+	 */
+	private Long insertSelectResults(final String sqlStatement, final String qualifiedResultTable, final Assertion assertion,
+			final ExecutionConfig config, final Connection connection, final int rowLimit) {
+		try {
+			try (PreparedStatement preparedStatement = connection.prepareStatement(sqlStatement)) {
+				final ResultSetMetaData metaData = preparedStatement.getMetaData();
+				if (metaData == null || metaData.getColumnCount() < 3) {
+					return null;
+				}
+				final String detailsColumn = "`" + metaData.getColumnLabel(3).replace("`", "``") + "`";
+				String insertSQL = "insert into " + qualifiedResultTable + " (run_id, assertion_id, details) select "
+						+ config.getExecutionId() + ", " + assertion.getAssertionId() + ", failures." + detailsColumn
+						+ " from (" + sqlStatement + ") failures";
+				if (rowLimit > 0) {
+					insertSQL = SharedScanStatement.withRowLimit(insertSQL, rowLimit);
+				}
+				return (long) executeUpdateStatement(connection, insertSQL);
+			}
+		} catch (final SQLException e) {
+			logger.info("Can not insert results of assertion {} directly, reading them instead. Nested exception is : " + e.fillInStackTrace(),
+					assertion.getAssertionId());
+			return null;
+		}
+	}
+
+	private List<String> transformSql(final ExecutionCommand command, final Assertion assertion, final ExecutionConfig config) throws ConfigurationException {
 		final String prospectiveRelease = config.getProspectiveVersion();
 		final String previousRelease = config.getPreviousVersion();
 		final String prospectiveSchema = releaseDataManager.getSchemaForRelease(prospectiveRelease);
@@ -294,37 +834,64 @@ public List<TestRunItem> executeAssertionsConcurrently(List<Assertion> assertion
 		if (config.isReleaseValidation() && !config.isFirstTimeRelease() && previousReleaseSchema == null) {
 			throw new ConfigurationException ("Failed to determine a schema for previous release " + previousRelease);
 		}
-		for( String part : parts) {
-			logger.debug("Original sql statement: {}", part);
-			// remove all SQL comments - //TODO might throw errors for -- style comments
-			final Pattern commentPattern = Pattern.compile("/\\*.*?\\*/", Pattern.DOTALL);
-			part = commentPattern.matcher(part).replaceAll("");
-			// replace all substitutions for exec
-			part = part.replaceAll("<RUNID>", String.valueOf(config.getExecutionId()));
-			part = part.replaceAll("<ASSERTIONUUID>", String.valueOf(assertion.getAssertionId()));
-			// watch out for any 's that users might have introduced
-			part = part.replaceAll("qa_result", defaultCatalog+ "." + qaResulTableName);
-			part = part.replaceAll("<PROSPECTIVE>", prospectiveSchema);
-			part = part.replaceAll("<TEMP>", prospectiveSchema);
-			if (previousReleaseSchema != null) {
-				part = part.replaceAll("<PREVIOUS>", previousReleaseSchema);
-			}
-			part = part.replaceAll("<DELTA>", deltaTableSuffix);
-			part = part.replaceAll("<SNAPSHOT>", snapshotTableSuffix);
-			part = part.replaceAll("<FULL>", fullTableSuffix);
-			part.trim();
-			logger.debug("Transformed sql statement: {}", part);
-			result.add(part);
-		}
+		final List<String> result = getPreparedCommand(command, assertion).bind(config.getExecutionId(), prospectiveSchema, previousReleaseSchema);
+		logger.debug("Transformed sql statements: {}", result);
 		return result;
-}
+	}
+
+	/**
+	 * @return the cached form of the command, which is only prepared again after the assertion or its tests changed
+	 */
+	private PreparedCommand getPreparedCommand(final ExecutionCommand command, final Assertion assertion) {
+		if (command.getId() == null || assertion.getAssertionId() == null) {
+			return prepareCommand(command, assertion);
+		}
+		ConcurrentMap<Long, PreparedCommand> commands = preparedCommands.get(assertion.getAssertionId());
+		if (commands == null) {
+			final ConcurrentMap<Long, PreparedCommand> created = new ConcurrentHashMap<>();
+			commands = preparedCommands.putIfAbsent(assertion.getAssertionId(), created);
+			if (commands == null) {
+				commands = created;
+			}
+		}
+		PreparedCommand prepared = commands.get(command.getId());
+		if (prepared == null) {
+			prepared = prepareCommand(command, assertion);
+			commands.put(command.getId(), prepared);
+		}
+		return prepared;
+	}
+
+	private PreparedCommand prepareCommand(final ExecutionCommand command, final Assertion assertion) {
+		final Map<String, String> constants = new LinkedHashMap<>();
+		constants.put("<ASSERTIONUUID>", String.valueOf(assertion.getAssertionId()));
+		// watch out for any 's that users might have introduced
+		constants.put("qa_result", dataSource.getDefaultCatalog() + "." + getResultTableName(RUN_ID_PLACEHOLDER));
+		constants.put("<DELTA>", deltaTableSuffix);
+		constants.put("<SNAPSHOT>", snapshotTableSuffix);
+		constants.put("<FULL>", fullTableSuffix);
+		logger.debug("Preparing sql statements of command {} for assertion {}", command.getId(), assertion.getAssertionId());
+		return new PreparedCommand(getStatementParts(command), constants);
+	}
+
+	@Override
+	public void evictPreparedCommands(final Long assertionId) {
+		if (assertionId != null) {
+			preparedCommands.remove(assertionId);
+		}
+	}
+
+	@Override
+	public void clearPreparedCommands() {
+		preparedCommands.clear();
+	}
 
 	private void extractTestResult(final Assertion assertion, final TestRunItem runItem, final ExecutionConfig config)
 			throws SQLException {
 		/*
 		 create a prepared statement for retrieving matching results.
 		*/
-		String resultSQL = "select concept_id, details from "+ dataSource.getDefaultCatalog() + "." + qaResulTableName + " where assertion_id = ? and run_id = ?";
+		String resultSQL = "select concept_id, details from "+ dataSource.getDefaultCatalog() + "." + getResultTableName(config.getExecutionId()) + " where assertion_id = ? and run_id = ?";
 		//use limit to save memory and improve performance for worst case when containing thousands of errors
 		if (config.getFailureExportMax() > 0) {
 			resultSQL = resultSQL + " limit ?";
@@ -355,7 +922,7 @@ public List<TestRunItem> executeAssertionsConcurrently(List<Assertion> assertion
 			if ( counter < config.getFailureExportMax() ) {
 				runItem.setFailureCount(counter);
 			} else {
-				String totalSQL = "select count(*) total from "+ dataSource.getDefaultCatalog() + "." + qaResulTableName + " where assertion_id = ? and run_id = ?";
+				String totalSQL = "select count(*) total from "+ dataSource.getDefaultCatalog() + "." + getResultTableName(config.getExecutionId()) + " where assertion_id = ? and run_id = ?";
 				try (PreparedStatement preparedStatement = connection.prepareStatement(totalSQL)) {
 					// select results that match execution
 					preparedStatement.setLong(1, assertion.getAssertionId());
@@ -367,9 +934,98 @@ public List<TestRunItem> executeAssertionsConcurrently(List<Assertion> assertion
 					}
 					}
 			}
+			if (config.isStopAtFailureExportMax() && runItem.getFailureCount() > config.getFailureExportMax()) {
+				runItem.setFailureCountExceedsExportMax(true);
+			}
 		}
 	}
 
+	@Override
+	public void extractTestResults(final Collection<Assertion> assertions, final Collection<TestRunItem> runItems, final ExecutionConfig config) {
+		// only items whose command has been executed have results, the others keep their failure message
+		final Map<UUID, List<TestRunItem>> executedItems = new HashMap<>();
+		int executedCount = 0;
+		for (final TestRunItem runItem : runItems) {
+			if (runItem.getRunTime() != null) {
+				if (!executedItems.containsKey(runItem.getAssertionUuid())) {
+					executedItems.put(runItem.getAssertionUuid(), new ArrayList<TestRunItem>());
+				}
+				executedItems.get(runItem.getAssertionUuid()).add(runItem);
+				executedCount++;
+			}
+		}
+		final Map<Long, List<TestRunItem>> itemsByAssertionId = new HashMap<>();
+		for (final Assertion assertion : assertions) {
+			if (executedItems.containsKey(assertion.getUuid())) {
+				itemsByAssertionId.put(assertion.getAssertionId(), executedItems.get(assertion.getUuid()));
+			}
+		}
+		if (executedCount == 0) {
+			return;
+		}
+		final long timeStart = System.currentTimeMillis();
+		final Map<Long, Long> failureCounts = new HashMap<>();
+		final int failureExportMax = config.getFailureExportMax();
+		final String resultTable = dataSource.getDefaultCatalog() + "." + getResultTableName(config.getExecutionId());
+		// the counts come from the (run_id, assertion_id) index, only the examples exported are read from the rows
+		final String countSQL = "select assertion_id, count(*) from " + resultTable + " where run_id = ? group by assertion_id";
+		String resultSQL = "select concept_id, details from " + resultTable + " where run_id = ? and assertion_id = ?";
+		if (failureExportMax > 0) {
+			resultSQL = resultSQL + " limit ?";
+		}
+		try (Connection connection = dataSource.getConnection()) {
+			try (PreparedStatement preparedStatement = connection.prepareStatement(countSQL)) {
+				preparedStatement.setLong(1, config.getExecutionId());
+				try (ResultSet resultSet = preparedStatement.executeQuery()) {
+					while (resultSet.next()) {
+						if (itemsByAssertionId.containsKey(resultSet.getLong(1))) {
+							failureCounts.put(resultSet.getLong(1), resultSet.getLong(2));
+						}
+					}
+				}
+			}
+			if (failureExportMax != 0) {
+				try (PreparedStatement preparedStatement = connection.prepareStatement(resultSQL)) {
+					for (final Map.Entry<Long, Long> failureCount : failureCounts.entrySet()) {
+						preparedStatement.setLong(1, config.getExecutionId());
+						preparedStatement.setLong(2, failureCount.getKey());
+						if (failureExportMax > 0) {
+							preparedStatement.setLong(3, failureExportMax);
+						}
+						try (ResultSet resultSet = preparedStatement.executeQuery()) {
+							while (resultSet.next()) {
+								for (final TestRunItem item : itemsByAssertionId.get(failureCount.getKey())) {
+									item.addFirstNInstance(new FailureDetail(resultSet.getString(1), resultSet.getString(2)));
+								}
+							}
+						}
+					}
+				}
+			}
+		} catch (final SQLException e) {
+			logger.warn("Failed to extract test results : " + e.fillInStackTrace());
+			for (final List<TestRunItem> items : itemsByAssertionId.values()) {
+				for (final TestRunItem item : items) {
+					item.setFailureMessage("Error extracting test result. Nested exception : " + e.fillInStackTrace() + item);
+				}
+			}
+			return;
+		}
+		// the extraction is shared equally between the items
+		final long extractMillis = (System.currentTimeMillis() - timeStart) / executedCount;
+		for (final Map.Entry<Long, List<TestRunItem>> entry : itemsByAssertionId.entrySet()) {
+			final Long failureCount = failureCounts.get(entry.getKey());
+			for (final TestRunItem item : entry.getValue()) {
+				item.setFailureCount(failureCount == null ? 0 : failureCount);
+				if (config.isStopAtFailureExportMax() && item.getFailureCount() > failureExportMax) {
+					item.setFailureCountExceedsExportMax(true);
+				}
+				item.setExtractResultInMillis(extractMillis);
+			}
+		}
+		logger.info("Extracted results of {} assertions in {} ms", itemsByAssertionId.size(), System.currentTimeMillis() - timeStart);
+	}
+
 	public void setQaResulTableName(final String qaResulTableName) {
 		this.qaResulTableName = qaResulTableName;
 	}
@@ -382,6 +1038,33 @@ public List<TestRunItem> executeAssertionsConcurrently(List<Assertion> assertion
 		this.snapshotTableSuffix = snapshotTableSuffix;
 	}
 
+	public void setResultInsertBatchSize(final int resultInsertBatchSize) {
+		this.resultInsertBatchSize = resultInsertBatchSize;
+	}
+
+	public void setDirectResultInsert(final boolean directResultInsert) {
+		this.directResultInsert = directResultInsert;
+	}
+
+	/**
+	 * @param assertionTimeoutInSeconds the time an assertion may take before its query is killed, 0 for no limit
+	 */
+	public void setAssertionTimeoutInSeconds(final int assertionTimeoutInSeconds) {
+		this.assertionTimeoutInSeconds = assertionTimeoutInSeconds;
+	}
+
+	/**
+	 * @param runScopedResultTables when true the results of each run are written to their own copy of the result
+	 * table instead of the shared table
+	 */
+	public void setRunScopedResultTables(final boolean runScopedResultTables) {
+		this.runScopedResultTables = runScopedResultTables;
+	}
+
+	public void setResultTableMaxKeepTimeInHour(final int resultTableMaxKeepTimeInHour) {
+		this.resultTableMaxKeepTimeInHour = resultTableMaxKeepTimeInHour;
+	}
+
 	public void setFullTableSuffix(final String fullTableSuffix) {
 		this.fullTableSuffix = fullTableSuffix;
 	}
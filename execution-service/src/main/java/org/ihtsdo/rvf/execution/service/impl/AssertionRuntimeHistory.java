@@ -0,0 +1,134 @@
+package org.ihtsdo.rvf.execution.service.impl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.annotation.Resource;
+
+import org.apache.commons.dbcp.BasicDataSource;
+import org.ihtsdo.rvf.entity.TestRunItem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.stereotype.Service;
+
+/**
+ * The time each assertion has taken to run, kept in the RVF master schema per assertion and release size class so
+ * that the longest running assertions can be started first. The size class of a release is the base 2 logarithm of
+ * the number of rows in its schema, so releases of about the same size share their history.
+ */
+@Service
+public class AssertionRuntimeHistory implements InitializingBean {
+
+	private static final String HISTORY_TABLE = "assertion_runtime_history";
+
+	private final Logger logger = LoggerFactory.getLogger(AssertionRuntimeHistory.class);
+
+	@Resource(name = "dataSource")
+	private BasicDataSource dataSource;
+
+	@Resource(name = "snomedDataSource")
+	private BasicDataSource snomedDataSource;
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		final String createHistorySql = "create table if not exists " + HISTORY_TABLE + "("
+				+ "assertion_uuid char(36) not null, "
+				+ "size_class int not null, "
+				+ "run_count int not null, "
+				+ "average_millis bigint not null, "
+				+ "last_millis bigint not null, "
+				+ "updated_at timestamp default current_timestamp on update current_timestamp, "
+				+ "primary key (assertion_uuid, size_class))";
+		try (Connection connection = dataSource.getConnection();
+				Statement statement = connection.createStatement()) {
+			statement.execute(createHistorySql);
+		}
+	}
+
+	/**
+	 * @return the size class of the release loaded into the given schema, 0 when it can not be determined
+	 */
+	public int getSizeClass(final String schemaName) {
+		final String sql = "select sum(table_rows) from INFORMATION_SCHEMA.TABLES where table_schema = ?";
+		try (Connection connection = snomedDataSource.getConnection();
+				PreparedStatement statement = connection.prepareStatement(sql)) {
+			statement.setString(1, schemaName);
+			try (ResultSet resultSet = statement.executeQuery()) {
+				if (resultSet.next() && resultSet.getLong(1) > 0) {
+					return 63 - Long.numberOfLeadingZeros(resultSet.getLong(1));
+				}
+			}
+		} catch (final SQLException e) {
+			logger.error("Failed to determine the size of schema " + schemaName + " due to " + e.fillInStackTrace());
+		}
+		return 0;
+	}
+
+	/**
+	 * Returns the expected run time of every assertion with a history. When an assertion has not run against a release
+	 * of the given size class yet its time for the nearest size class is scaled by the difference in size.
+	 * @return the expected run time in milliseconds keyed by assertion uuid
+	 */
+	public Map<UUID, Long> getExpectedRuntimes(final int sizeClass) {
+		final Map<UUID, Long> runtimes = new LinkedHashMap<>();
+		final Map<UUID, Integer> distances = new HashMap<>();
+		final String sql = "select assertion_uuid, size_class, average_millis from " + HISTORY_TABLE;
+		try (Connection connection = dataSource.getConnection();
+				Statement statement = connection.createStatement();
+				ResultSet resultSet = statement.executeQuery(sql)) {
+			while (resultSet.next()) {
+				final UUID uuid = UUID.fromString(resultSet.getString(1));
+				final int difference = sizeClass - resultSet.getInt(2);
+				if (distances.containsKey(uuid) && distances.get(uuid) <= Math.abs(difference)) {
+					continue;
+				}
+				final long averageMillis = resultSet.getLong(3);
+				distances.put(uuid, Math.abs(difference));
+				runtimes.put(uuid, difference >= 0 ? averageMillis << Math.min(difference, 16) : averageMillis >> Math.min(-difference, 16));
+			}
+		} catch (final SQLException e) {
+			logger.error("Failed to read assertion run time history due to " + e.fillInStackTrace());
+		}
+		return runtimes;
+	}
+
+	/**
+	 * Adds the run and result extraction times of the given items to the history. The average is weighted towards
+	 * recent runs so that it follows changes to the assertions and the database.
+	 */
+	public void record(final int sizeClass, final Collection<TestRunItem> items) {
+		// an assertion can have several tests, which all count towards its time
+		final Map<UUID, Long> runtimes = new LinkedHashMap<>();
+		for (final TestRunItem item : items) {
+			if (item.getAssertionUuid() == null || item.getRunTime() == null) {
+				continue;
+			}
+			final long millis = item.getRunTime() + (item.getExtractResultInMillis() == null ? 0 : item.getExtractResultInMillis());
+			runtimes.put(item.getAssertionUuid(), millis + (runtimes.containsKey(item.getAssertionUuid()) ? runtimes.get(item.getAssertionUuid()) : 0));
+		}
+		final String sql = "insert into " + HISTORY_TABLE + " (assertion_uuid, size_class, run_count, average_millis, last_millis) values (?, ?, 1, ?, ?) "
+				+ "on duplicate key update average_millis = (average_millis * 3 + values(last_millis)) div 4, run_count = run_count + 1, last_millis = values(last_millis)";
+		try (Connection connection = dataSource.getConnection();
+				PreparedStatement statement = connection.prepareStatement(sql)) {
+			for (final Map.Entry<UUID, Long> runtime : runtimes.entrySet()) {
+				statement.setString(1, runtime.getKey().toString());
+				statement.setInt(2, sizeClass);
+				statement.setLong(3, runtime.getValue());
+				statement.setLong(4, runtime.getValue());
+				statement.addBatch();
+			}
+			statement.executeBatch();
+		} catch (final SQLException e) {
+			logger.error("Failed to record assertion run times due to " + e.fillInStackTrace());
+		}
+	}
+}
@@ -13,6 +13,8 @@ public class ExecutionConfig {
 	private boolean extensionValidation;
 	private boolean isReleaseValidation;
 	private String extensionDependencyVersion;
+	private boolean deferResultExtraction;
+	private boolean stopAtFailureExportMax;
 
 	public ExecutionConfig(final Long runId) {
 		this(runId,false);
@@ -95,5 +97,28 @@ public class ExecutionConfig {
 	public void setExtensionDependencyVersion(String extensionDependencyVersion) {
 		this.extensionDependencyVersion = extensionDependencyVersion;
 	}
-	
+
+	/**
+	 * @return true when the failures of all assertions are extracted together once the run has finished instead of
+	 * after each assertion
+	 */
+	public boolean isDeferResultExtraction() {
+		return deferResultExtraction;
+	}
+
+	public void setDeferResultExtraction(boolean deferResultExtraction) {
+		this.deferResultExtraction = deferResultExtraction;
+	}
+
+	/**
+	 * @return true when assertions stop inserting failures once they have found one more than the failure export
+	 * maximum, so that their failure count is only known to be more than the maximum
+	 */
+	public boolean isStopAtFailureExportMax() {
+		return stopAtFailureExportMax;
+	}
+
+	public void setStopAtFailureExportMax(boolean stopAtFailureExportMax) {
+		this.stopAtFailureExportMax = stopAtFailureExportMax;
+	}
 }
@@ -0,0 +1,75 @@
+package org.ihtsdo.rvf.execution.service.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The statements of an {@link org.ihtsdo.rvf.entity.ExecutionCommand} split, stripped of comments and with the
+ * placeholders that are the same for every run substituted. Only the run id and the schema names are left to be bound
+ * when the command is executed.
+ */
+public class PreparedCommand {
+
+	private static final Pattern COMMENT_PATTERN = Pattern.compile("/\\*.*?\\*/", Pattern.DOTALL);
+	private static final Pattern RUN_PLACEHOLDER_PATTERN = Pattern.compile("<RUNID>|<PROSPECTIVE>|<TEMP>|<PREVIOUS>");
+
+	// the text between the run placeholders and the placeholders of each statement
+	private final List<String[]> statementTexts = new ArrayList<>();
+	private final List<String[]> statementPlaceholders = new ArrayList<>();
+
+	/**
+	 * @param parts the statements of the command
+	 * @param constants the values of the placeholders that are the same for every run keyed by placeholder
+	 */
+	public PreparedCommand(final String[] parts, final Map<String, String> constants) {
+		for (String part : parts) {
+			part = COMMENT_PATTERN.matcher(part).replaceAll("");
+			for (final Map.Entry<String, String> constant : constants.entrySet()) {
+				part = part.replace(constant.getKey(), constant.getValue());
+			}
+			final List<String> texts = new ArrayList<>();
+			final List<String> placeholders = new ArrayList<>();
+			final Matcher matcher = RUN_PLACEHOLDER_PATTERN.matcher(part);
+			int textStart = 0;
+			while (matcher.find()) {
+				texts.add(part.substring(textStart, matcher.start()));
+				placeholders.add(matcher.group());
+				textStart = matcher.end();
+			}
+			texts.add(part.substring(textStart));
+			statementTexts.add(texts.toArray(new String[texts.size()]));
+			statementPlaceholders.add(placeholders.toArray(new String[placeholders.size()]));
+		}
+	}
+
+	/**
+	 * @param previousSchema the schema of the previous release, null leaves the placeholder in place
+	 * @return the statements to execute
+	 */
+	public List<String> bind(final Long runId, final String prospectiveSchema, final String previousSchema) {
+		final List<String> result = new ArrayList<>(statementTexts.size());
+		for (int i = 0; i < statementTexts.size(); i++) {
+			final String[] texts = statementTexts.get(i);
+			final String[] placeholders = statementPlaceholders.get(i);
+			final StringBuilder statement = new StringBuilder(texts[0]);
+			for (int j = 0; j < placeholders.length; j++) {
+				switch (placeholders[j]) {
+					case "<RUNID>":
+						statement.append(runId);
+						break;
+					case "<PREVIOUS>":
+						statement.append(previousSchema == null ? placeholders[j] : previousSchema);
+						break;
+					default:
+						statement.append(prospectiveSchema);
+				}
+				statement.append(texts[j + 1]);
+			}
+			result.add(statement.toString());
+		}
+		return result;
+	}
+}
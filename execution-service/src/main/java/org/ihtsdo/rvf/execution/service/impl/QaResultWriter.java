@@ -0,0 +1,92 @@
+package org.ihtsdo.rvf.execution.service.impl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes the failures of an assertion to the QA result table while they are read. The rows are sent in multi-row
+ * inserts of a fixed number of rows so that neither the failures nor the statements have to be held in memory and
+ * the database receives one statement per batch instead of one per row.
+ */
+public class QaResultWriter implements AutoCloseable {
+
+	private final Connection connection;
+	private final String tableName;
+	private final long runId;
+	private final long assertionId;
+	private final int batchSize;
+	private final List<String> details;
+	private PreparedStatement batchStatement;
+	private long rowCount;
+
+	/**
+	 * @param tableName the fully qualified name of the QA result table
+	 * @param batchSize the number of rows sent in each insert
+	 */
+	public QaResultWriter(final Connection connection, final String tableName, final long runId, final long assertionId, final int batchSize) {
+		this.connection = connection;
+		this.tableName = tableName;
+		this.runId = runId;
+		this.assertionId = assertionId;
+		this.batchSize = Math.max(1, batchSize);
+		details = new ArrayList<>(this.batchSize);
+	}
+
+	public void write(final String detail) throws SQLException {
+		details.add(detail);
+		if (details.size() == batchSize) {
+			if (batchStatement == null) {
+				batchStatement = connection.prepareStatement(getInsertSql(batchSize));
+			}
+			insert(batchStatement);
+		}
+	}
+
+	/**
+	 * Writes the rows of the last, partial batch.
+	 */
+	public void flush() throws SQLException {
+		if (!details.isEmpty()) {
+			try (PreparedStatement statement = connection.prepareStatement(getInsertSql(details.size()))) {
+				insert(statement);
+			}
+		}
+	}
+
+	/**
+	 * @return the number of rows written so far
+	 */
+	public long getRowCount() {
+		return rowCount;
+	}
+
+	@Override
+	public void close() throws SQLException {
+		if (batchStatement != null) {
+			batchStatement.close();
+		}
+	}
+
+	private void insert(final PreparedStatement statement) throws SQLException {
+		int index = 1;
+		for (final String detail : details) {
+			statement.setLong(index++, runId);
+			statement.setLong(index++, assertionId);
+			statement.setString(index++, detail);
+		}
+		statement.executeUpdate();
+		rowCount += details.size();
+		details.clear();
+	}
+
+	String getInsertSql(final int rows) {
+		final StringBuilder sql = new StringBuilder("insert into ").append(tableName).append(" (run_id, assertion_id, details) values ");
+		for (int i = 0; i < rows; i++) {
+			sql.append(i == 0 ? "(?, ?, ?)" : ", (?, ?, ?)");
+		}
+		return sql.toString();
+	}
+}
@@ -7,9 +7,13 @@ import java.io.FileOutputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.StringReader;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -17,19 +21,31 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.annotation.Resource;
 
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.dbcp.BasicDataSource;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
 import org.apache.ibatis.jdbc.ScriptRunner;
 import org.ihtsdo.otf.rest.exception.BusinessServiceException;
 import org.ihtsdo.rvf.execution.service.ReleaseDataManager;
+import org.ihtsdo.rvf.execution.service.TableCopyStatus;
 import org.ihtsdo.rvf.execution.service.util.RvfDynamicDataSource;
 import org.ihtsdo.rvf.util.ZipFileUtils;
 import org.slf4j.Logger;
@@ -48,14 +64,36 @@ public class ReleaseDataManagerImpl implements ReleaseDataManager, InitializingB
 
 	private static final Logger logger = LoggerFactory.getLogger(ReleaseDataManagerImpl.class);
 	private static final String RVF_DB_PREFIX = "rvf_";
+	private static final String SHA_256 = "SHA-256";
+	private static final String UTF_8 = "UTF-8";
 	private String sctDataLocation;
 	private File sctDataFolder;
+	private long loaderChunkSizeInMB;
+	private int loaderMaxConcurrentChunks = 1;
+	private boolean loaderStreamFromZip;
+	private boolean loaderIndexProfileEnabled;
+	private String loaderIndexProfileLocation;
+	private long loaderBulkInsertBufferSizeInMB;
+	private long loaderSortBufferSizeInMB;
+	private int copyMaxConcurrentTables = 1;
+	private long loaderResumeWindowHours;
+	private final Set<String> mergeStagingTables = new HashSet<>();
+	private Map<String, List<String>> indexProfile;
 	@Resource(name = "snomedDataSource")
 	private BasicDataSource snomedDataSource;
 	
 	@Autowired
 	private RvfDynamicDataSource rvfDynamicDataSource;
+	@Autowired
+	private ReleaseSchemaRegistry schemaRegistry;
+	@Autowired
+	private StorageProfile storageProfile;
+	@Autowired
+	private ReleaseLoadScheduler loadScheduler;
 	private final Map<String, String> releaseSchemaNameLookup = new ConcurrentHashMap<>();
+	private final Map<String, Map<String, Map<String, Long>>> tableLoadStatistics = new ConcurrentHashMap<>();
+	// fingerprint of the table definitions and of the loader's data format so that schemas loaded differently are never reused
+	private String ddlVersion;
 	/**
 	 * No args constructor for IOC. Always call 'init' method after creation
 	 */
@@ -84,27 +122,58 @@ public class ReleaseDataManagerImpl implements ReleaseDataManager, InitializingB
 			}
 		}
 		logger.info("Using data location as :" + sctDataFolder.getAbsolutePath());
+		ddlVersion = calculateDdlVersion();
+		if (loaderIndexProfileEnabled) {
+			indexProfile = readIndexProfile();
+		}
 		// now populate releaseLookup map with existing releases - but ask not to purge existing databases
 		populateLookupMap();
 	}
 
 	/**
-	 * Utility method that generates a map of all known releases based on the contents of the data folder.
+	 * Utility method that generates a map of all known releases from the release schema registry, without looking at
+	 * the schemas themselves. Schemas whose load never completed (e.g. because the worker died) are dropped. Schemas
+	 * loaded before the registry existed are registered when their version is first asked for.
 	 */
 	protected void populateLookupMap() {
-		// now get list of existing RVF_INT like databases
-		try ( ResultSet catalogs = snomedDataSource.getConnection().getMetaData().getCatalogs()) {
-			while (catalogs.next()) {
-				final String schemaName = catalogs.getString(1);
-				if (schemaName.startsWith(RVF_DB_PREFIX)) {
-					final String version = schemaName.substring(RVF_DB_PREFIX.length());
-						releaseSchemaNameLookup.put(version, schemaName);
-				}
+		final List<String> purged = schemaRegistry.purgeIncompleteSchemas(loaderResumeWindowHours * 60 * 60 * 1000);
+		if (!purged.isEmpty()) {
+			logger.info("Purged partially loaded versions: " + purged);
+		}
+		releaseSchemaNameLookup.putAll(schemaRegistry.getSchemasByState(ReleaseSchemaRegistry.LoadState.COMPLETE));
+	}
+
+	/**
+	 * @return whether the given schema exists, false when it could not be read
+	 */
+	private boolean isExistingSchema(final String schemaName) {
+		final String sql = "select schema_name from INFORMATION_SCHEMA.SCHEMATA where schema_name = ?";
+		try (Connection connection = snomedDataSource.getConnection();
+				PreparedStatement statement = connection.prepareStatement(sql)) {
+			statement.setString(1, schemaName);
+			try (ResultSet resultSet = statement.executeQuery()) {
+				return resultSet.next();
 			}
 		} catch (final SQLException e) {
-			logger.error("Error getting list of existing schemas. Nested exception is : \n" + e.fillInStackTrace());
+			logger.error("Failed to read existing schema " + schemaName + " due to " + e.fillInStackTrace());
+			return false;
 		}
+	}
 
+	/**
+	 * Registers the schema of a version loaded before the registry existed, which the registry does not know about.
+	 * Its rows are not counted as the schema may be of any size.
+	 * @return the schema of the version or null when there is none
+	 */
+	private String registerLegacySchema(final String version) {
+		final String schemaName = RVF_DB_PREFIX + version;
+		if (schemaRegistry.getLoadState(version) != null || !isExistingSchema(schemaName)) {
+			return null;
+		}
+		logger.info("Registering schema {} loaded before the release schema registry existed", schemaName);
+		schemaRegistry.markComplete(version, schemaName, Collections.<String>emptyList(), 0);
+		releaseSchemaNameLookup.put(version, schemaName);
+		return schemaName;
 	}
 
 	/**
@@ -119,11 +188,14 @@ public class ReleaseDataManagerImpl implements ReleaseDataManager, InitializingB
 		logger.info("Receiving release data - " + fileName);
 		final File fileDestination = new File(sctDataFolder.getAbsolutePath(), fileName);
 		OutputStream out = null;
+		String checksum = null;
 		try {
+			final MessageDigest digest = MessageDigest.getInstance(SHA_256);
 			out = new FileOutputStream(fileDestination);
-			IOUtils.copy(inputStream, out);
-			logger.info("Release file copied to : " + fileDestination.getAbsolutePath());
-		} catch (final IOException e) {
+			IOUtils.copy(new DigestInputStream(inputStream, digest), out);
+			checksum = Hex.encodeHexString(digest.digest());
+			logger.info("Release file copied to : " + fileDestination.getAbsolutePath() + " with SHA-256 checksum " + checksum);
+		} catch (final IOException | NoSuchAlgorithmException e) {
 			logger.warn("Error copying release file to " + sctDataFolder + ". Nested exception is : \n" + e.fillInStackTrace());
 			return false;
 			
@@ -136,17 +208,99 @@ public class ReleaseDataManagerImpl implements ReleaseDataManager, InitializingB
 		String productVersion = product + "_" + version;
 		logger.info("Product version:" + productVersion);
 		if (releaseSchemaNameLookup.keySet().contains(productVersion) ) {
+			if (isSameReleaseLoaded(productVersion, checksum)) {
+				logger.info("Product version {} has already been loaded from identical release data and will be reused", productVersion);
+				return true;
+			}
 			logger.info("Product version is already known in RVF and the existing one will be deleted and reloaded: " + productVersion);
 		}
 		logger.info("Loading data into schema " + RVF_DB_PREFIX + productVersion);
 		List<String> rf2FilesLoaded = new ArrayList<>();
-		final String schemaName = loadSnomedData(productVersion, rf2FilesLoaded, fileDestination);
+		final List<String> rf2FilesFailed = new ArrayList<>();
+		final String schemaName = loadSnomedData(productVersion, false, checksum, rf2FilesLoaded, rf2FilesFailed, null, fileDestination);
 		logger.info("schemaName = " + schemaName);
+		if (rf2FilesFailed.isEmpty()) {
+			schemaRegistry.updateSourceChecksum(productVersion, checksum, ddlVersion);
+		} else {
+			// a partial load must not be reused for the same release data
+			logger.warn("Product version {} is not recorded as loaded from release data {} as {} failed to load", productVersion, checksum, rf2FilesFailed);
+		}
 		// now add to releaseSchemaNameLookup
 		releaseSchemaNameLookup.put(productVersion, schemaName);
 		return true;
 	}
 
+	/**
+	 * Checks whether the given version was completely loaded from a release zip with the given checksum using the current table definitions and data format.
+	 */
+	private boolean isSameReleaseLoaded(final String version, final String checksum) {
+		if (checksum == null || ddlVersion == null) {
+			return false;
+		}
+		final String[] loadedFrom = schemaRegistry.getSourceChecksum(version);
+		if (loadedFrom == null || !checksum.equals(loadedFrom[0]) || !ddlVersion.equals(loadedFrom[1])) {
+			return false;
+		}
+		// the registry can not tell when the schema has been dropped outside RVF
+		return isExistingSchema(RVF_DB_PREFIX + version);
+	}
+
+	/**
+	 * @return the SHA-256 checksum of the given zip files read one after the other or null when it can not be calculated
+	 */
+	private String calculateChecksum(final File... zipFiles) {
+		try {
+			final MessageDigest digest = MessageDigest.getInstance(SHA_256);
+			for (final File zipFile : zipFiles) {
+				try (InputStream input = new DigestInputStream(new FileInputStream(zipFile), digest)) {
+					IOUtils.copy(input, NullOutputStream.NULL_OUTPUT_STREAM);
+				}
+			}
+			return Hex.encodeHexString(digest.digest());
+		} catch (final IOException | NoSuchAlgorithmException e) {
+			logger.warn("Failed to calculate the checksum of " + Arrays.toString(zipFiles) + ", an interrupted load will not be resumed", e);
+			return null;
+		}
+	}
+
+	private String calculateDdlVersion() {
+		try {
+			// the storage profile is part of the table definitions so changing it reloads published releases
+			final MessageDigest digest = MessageDigest.getInstance(SHA_256);
+			digest.update(getCreateTablesScript().getBytes(UTF_8));
+			digest.update(ReleaseFileDataLoader.DATA_FORMAT_VERSION.getBytes(UTF_8));
+			return Hex.encodeHexString(digest.digest());
+		} catch (final IOException | NoSuchAlgorithmException e) {
+			logger.error("Failed to calculate the version of the table definitions. Published releases will always be reloaded.", e);
+			return null;
+		}
+	}
+
+	/**
+	 * Reads the columns to index per table type from the configured index profile or from the bundled
+	 * /sql/index-profile.properties when no location is configured.
+	 */
+	private Map<String, List<String>> readIndexProfile() throws IOException {
+		final Properties properties = new Properties();
+		final boolean isBundled = loaderIndexProfileLocation == null || loaderIndexProfileLocation.trim().isEmpty();
+		try (InputStream input = isBundled ? getClass().getResourceAsStream("/sql/index-profile.properties")
+				: new FileInputStream(loaderIndexProfileLocation.trim())) {
+			properties.load(input);
+		}
+		final Map<String, List<String>> profile = new LinkedHashMap<>();
+		for (final String tableType : properties.stringPropertyNames()) {
+			final List<String> columns = new ArrayList<>();
+			for (final String column : properties.getProperty(tableType).split(",")) {
+				if (!column.trim().isEmpty()) {
+					columns.add(column.trim());
+				}
+			}
+			profile.put(tableType, columns);
+		}
+		logger.info("Using index profile for tables: " + profile.keySet());
+		return profile;
+	}
+
 	/**
 	 * Method that copies a known/published release pack into the data folder. This method is not intended to be used
 	 * for uploading prospective releases since they do not need to be stored for later use.
@@ -185,38 +339,80 @@ public class ReleaseDataManagerImpl implements ReleaseDataManager, InitializingB
 	 */
 	@Override
 	public String loadSnomedData(final String versionName, List<String> rf2FilesLoaded, final File... zipDataFile) throws BusinessServiceException {
-		return loadSnomedData(versionName, false, rf2FilesLoaded, zipDataFile);
+		return loadSnomedData(versionName, false, null, rf2FilesLoaded, new ArrayList<String>(), null, zipDataFile);
+	}
+
+	/**
+	 * Same as {@link #loadSnomedData(String, List, File...)} but reports the progress of each file to the given listener.
+	 * An earlier attempt to load the version that did not complete is resumed from the files it completely loaded.
+	 */
+	@Override
+	public String loadSnomedData(final String versionName, List<String> rf2FilesLoaded, final ReleaseFileDataLoader.LoadListener loadListener,
+			final File... zipDataFile) throws BusinessServiceException {
+		return loadSnomedData(versionName, false, null, rf2FilesLoaded, new ArrayList<String>(), loadListener, zipDataFile);
 	}
 
-	private String loadSnomedData(final String versionName, boolean isAppendToVersion, List<String> rf2FilesLoaded, final File... zipDataFile) throws BusinessServiceException {
+	/**
+	 * @param sourceChecksum the SHA-256 checksum of the zip file, null to calculate it when the load can be resumed
+	 * @param rf2FilesFailed list the names of the files that could not be loaded are added to
+	 */
+	private String loadSnomedData(final String versionName, boolean isAppendToVersion, String sourceChecksum, List<String> rf2FilesLoaded,
+			List<String> rf2FilesFailed, final ReleaseFileDataLoader.LoadListener loadListener, final File... zipDataFile) throws BusinessServiceException {
 		File outputFolder = null;
 		final String createdSchemaName = RVF_DB_PREFIX + versionName;
 		final long startTime = Calendar.getInstance().getTimeInMillis();
+		if (sourceChecksum == null && !isAppendToVersion) {
+			sourceChecksum = calculateChecksum(zipDataFile);
+		}
+		final Map<String, Long> completedFiles = isAppendToVersion ? null : getResumableFiles(versionName, createdSchemaName, sourceChecksum);
+		if (completedFiles == null) {
+			schemaRegistry.markLoading(versionName, createdSchemaName, sourceChecksum, ddlVersion);
+		} else {
+			logger.info("Resuming load of version {} into existing schema {} with {} files already loaded", versionName, createdSchemaName, completedFiles.size());
+			schemaRegistry.markResuming(versionName);
+		}
 		try {
-			outputFolder = new File(FileUtils.getTempDirectoryPath(), "rvf_loader_data_" + versionName);
-			logger.info("Setting output folder location = " + outputFolder.getAbsolutePath());
-			if (outputFolder.exists()) {
-				logger.info("Output folder already exists and will be deleted before recreating.");
-				outputFolder.delete();
-			} 
-			outputFolder.mkdir();
-			// extract SNOMED CT content from zip file
-			
-			for (final File zipFile : zipDataFile) {
-				ZipFileUtils.extractFilesFromZipToOneFolder(zipFile, outputFolder.getAbsolutePath());
-			}
-			if (!isAppendToVersion) {
+			final ReleaseFileDataLoader dataLoader = createDataLoader(rvfDynamicDataSource, createdSchemaName);
+			dataLoader.setCompletedFiles(completedFiles);
+			dataLoader.setLoadListener(createCheckpointListener(versionName, loadListener));
+			if (!isAppendToVersion && completedFiles == null) {
+				tableLoadStatistics.remove(versionName);
 				try (Connection connection = snomedDataSource.getConnection()) {
 					connection.setAutoCommit(true);
 					createDBAndTables(createdSchemaName, connection);
 				}
 			}
-			
-			loadReleaseFilesToDB(outputFolder,rvfDynamicDataSource,rf2FilesLoaded, createdSchemaName);
+			if (isStreamingFromZip()) {
+				// read the release files straight from the zip without extracting them to disk first
+				dataLoader.loadZipFilesIntoDB(zipDataFile, rf2FilesLoaded);
+				recordLoadStatistics(versionName, dataLoader.getTableLoadStatistics());
+			} else {
+				outputFolder = new File(FileUtils.getTempDirectoryPath(), "rvf_loader_data_" + versionName);
+				logger.info("Setting output folder location = " + outputFolder.getAbsolutePath());
+				if (outputFolder.exists()) {
+					logger.info("Output folder already exists and will be deleted before recreating.");
+					outputFolder.delete();
+				} 
+				outputFolder.mkdir();
+				// extract SNOMED CT content from zip file
+				for (final File zipFile : zipDataFile) {
+					ZipFileUtils.extractFilesFromZipToOneFolder(zipFile, outputFolder.getAbsolutePath());
+				}
+				recordLoadStatistics(versionName, loadReleaseFilesToDB(outputFolder, dataLoader, rf2FilesLoaded));
+			}
+			rf2FilesFailed.addAll(dataLoader.getFailedFiles());
 			
 			// add schema name to look up map
 			releaseSchemaNameLookup.put(versionName, createdSchemaName);
+			if (dataLoader.getFailedFiles().isEmpty()) {
+				schemaRegistry.markComplete(versionName, createdSchemaName, getBaseTableNamesFromSchema(createdSchemaName, null),
+						Calendar.getInstance().getTimeInMillis() - startTime);
+			} else {
+				// kept for this run but loaded again, or resumed, next time the version is needed
+				schemaRegistry.markFailed(versionName);
+			}
 		} catch (final SQLException | IOException e) {
+			schemaRegistry.markFailed(versionName);
 			final String errorMsg = String.format("Error while loading file %s into version %s", zipDataFile, versionName);
 			logger.error(errorMsg,e);
 			throw new BusinessServiceException(errorMsg, e);
@@ -238,13 +434,17 @@ public class ReleaseDataManagerImpl implements ReleaseDataManager, InitializingB
 			statement.execute(createDbStr);
 			statement.execute(useStr);
 		}
+		final ScriptRunner runner = new ScriptRunner(connection);
+		runner.runScript(new StringReader(getCreateTablesScript()));
+	}
+
+	private String getCreateTablesScript() throws IOException {
 		try (InputStream input = getClass().getResourceAsStream("/sql/create-tables-mysql.sql")) {
-			final ScriptRunner runner = new ScriptRunner(connection);
-			runner.runScript(new InputStreamReader(input));
+			return storageProfile.applyToReleaseTables(IOUtils.toString(input, UTF_8));
 		}
 	}
 
-	private void loadReleaseFilesToDB(final File rf2TextFilesDir, final RvfDynamicDataSource dataSource, List<String> rf2FilesLoaded, String schemaName) throws SQLException, FileNotFoundException {
+	private Map<String, Map<String, Long>> loadReleaseFilesToDB(final File rf2TextFilesDir, final ReleaseFileDataLoader dataLoader, List<String> rf2FilesLoaded) throws SQLException, FileNotFoundException {
 		if (rf2TextFilesDir != null) {
 			final String[] rf2Files = rf2TextFilesDir.list( new FilenameFilter() {
 				
@@ -253,9 +453,75 @@ public class ReleaseDataManagerImpl implements ReleaseDataManager, InitializingB
                     return name.endsWith(".txt") && (name.startsWith("der2") || name.startsWith("sct2"));
                 }
 			});
-			final ReleaseFileDataLoader dataLoader = new ReleaseFileDataLoader(dataSource, schemaName, new MySqlDataTypeConverter());
 			dataLoader.loadFilesIntoDB(rf2TextFilesDir.getAbsolutePath(), rf2Files, rf2FilesLoaded);
 		}
+		return dataLoader.getTableLoadStatistics();
+	}
+
+	private void recordLoadStatistics(final String versionName, final Map<String, Map<String, Long>> statistics) {
+		// data appended to an existing version adds to the statistics of the earlier load
+		final Map<String, Map<String, Long>> existing = tableLoadStatistics.get(versionName);
+		if (existing != null && existing != statistics) {
+			for (final Map.Entry<String, Map<String, Long>> table : statistics.entrySet()) {
+				final Map<String, Long> earlier = existing.get(table.getKey());
+				if (earlier == null) {
+					existing.put(table.getKey(), table.getValue());
+					continue;
+				}
+				final Map<String, Long> combined = new LinkedHashMap<>();
+				for (final Map.Entry<String, Long> number : table.getValue().entrySet()) {
+					final Long earlierNumber = earlier.get(number.getKey());
+					combined.put(number.getKey(), number.getValue() + (earlierNumber == null ? 0 : earlierNumber));
+				}
+				existing.put(table.getKey(), combined);
+			}
+		} else {
+			tableLoadStatistics.put(versionName, statistics);
+		}
+	}
+
+	/**
+	 * @return the files loaded by an earlier attempt that did not complete or null when there is nothing to resume
+	 */
+	private Map<String, Long> getResumableFiles(final String versionName, final String schemaName, final String sourceChecksum) {
+		final Map<String, Long> completedFiles = schemaRegistry.getResumableFiles(versionName, schemaName, sourceChecksum, ddlVersion);
+		if (completedFiles != null && getBaseTableNamesFromSchema(schemaName, null).isEmpty()) {
+			logger.warn("Schema {} of the interrupted load of version {} no longer exists and is loaded from scratch", schemaName, versionName);
+			return null;
+		}
+		return completedFiles;
+	}
+
+	/**
+	 * Checkpoints each completely loaded file in the release schema registry before passing events on to the listener.
+	 */
+	private ReleaseFileDataLoader.LoadListener createCheckpointListener(final String versionName, final ReleaseFileDataLoader.LoadListener loadListener) {
+		return new ReleaseFileDataLoader.LoadListener() {
+			@Override
+			public void fileProgress(final String rf2FileName, final int percentLoaded) {
+				if (loadListener != null) {
+					loadListener.fileProgress(rf2FileName, percentLoaded);
+				}
+			}
+
+			@Override
+			public void fileLoaded(final String rf2FileName, final String rvfTableName, final long fileSize, final long rowsLoaded) {
+				schemaRegistry.markFileLoaded(versionName, rf2FileName, rvfTableName, fileSize, rowsLoaded);
+				if (loadListener != null) {
+					loadListener.fileLoaded(rf2FileName, rvfTableName, fileSize, rowsLoaded);
+				}
+			}
+		};
+	}
+
+	private ReleaseFileDataLoader createDataLoader(final RvfDynamicDataSource dataSource, final String schemaName) {
+		final ReleaseFileDataLoader dataLoader = new ReleaseFileDataLoader(dataSource, schemaName, new MySqlDataTypeConverter());
+		dataLoader.setChunkedLoading(loaderChunkSizeInMB * 1024 * 1024, loaderMaxConcurrentChunks);
+		dataLoader.setBufferSizes(loaderBulkInsertBufferSizeInMB * 1024 * 1024, loaderSortBufferSizeInMB * 1024 * 1024);
+		dataLoader.setIndexProfile(indexProfile);
+		dataLoader.setStorageProfile(storageProfile);
+		dataLoader.setScheduler(loadScheduler);
+		return dataLoader;
 	}
 
 
@@ -267,11 +533,12 @@ public class ReleaseDataManagerImpl implements ReleaseDataManager, InitializingB
 	 */
 	@Override
 	public boolean isKnownRelease(final String releaseVersion) {
-		return releaseSchemaNameLookup.containsKey(releaseVersion);
+		return releaseSchemaNameLookup.containsKey(releaseVersion) || registerLegacySchema(releaseVersion) != null;
 	}
 
 	/**
-	 * Returns a list of all known releases that have been uploaded into the database
+	 * Returns a list of all known releases that have been uploaded into the database. Schemas loaded before the release
+	 * schema registry existed are only listed once their version has been asked for.
 	 * @return set of all releases
 	 */
 	@Override
@@ -283,6 +550,82 @@ public class ReleaseDataManagerImpl implements ReleaseDataManager, InitializingB
 		sctDataLocation = sctDataLocationX;
 	}
 
+	/**
+	 * @param chunkSizeInMB the size of chunks large RF2 files are split into while loading, 0 loads each file in one go
+	 */
+	public void setLoaderChunkSizeInMB(final long chunkSizeInMB) {
+		loaderChunkSizeInMB = chunkSizeInMB;
+	}
+
+	public void setLoaderMaxConcurrentChunks(final int maxConcurrentChunks) {
+		loaderMaxConcurrentChunks = maxConcurrentChunks;
+	}
+
+	/**
+	 * @param streamFromZip if release files should be streamed from the zip into the database instead of being extracted first
+	 */
+	public void setLoaderStreamFromZip(final boolean streamFromZip) {
+		loaderStreamFromZip = streamFromZip;
+	}
+
+	/**
+	 * @param indexProfileEnabled if only the indexes listed in the index profile should be built after loading
+	 */
+	public void setLoaderIndexProfileEnabled(final boolean indexProfileEnabled) {
+		loaderIndexProfileEnabled = indexProfileEnabled;
+	}
+
+	/**
+	 * @param indexProfileLocation path of the index profile properties file, empty uses the bundled profile
+	 */
+	public void setLoaderIndexProfileLocation(final String indexProfileLocation) {
+		loaderIndexProfileLocation = indexProfileLocation;
+	}
+
+	public void setLoaderBulkInsertBufferSizeInMB(final long bulkInsertBufferSizeInMB) {
+		loaderBulkInsertBufferSizeInMB = bulkInsertBufferSizeInMB;
+	}
+
+	public void setLoaderSortBufferSizeInMB(final long sortBufferSizeInMB) {
+		loaderSortBufferSizeInMB = sortBufferSizeInMB;
+	}
+
+	/**
+	 * @param resumeWindowHours how long the schema of an interrupted load is kept so that loading the version again resumes it
+	 */
+	public void setLoaderResumeWindowHours(final long resumeWindowHours) {
+		loaderResumeWindowHours = resumeWindowHours;
+	}
+
+	/**
+	 * @param maxConcurrentTables the maximum number of tables copied or merged between schemas at the same time
+	 */
+	public void setCopyMaxConcurrentTables(final int maxConcurrentTables) {
+		copyMaxConcurrentTables = maxConcurrentTables > 0 ? maxConcurrentTables : 1;
+	}
+
+	/**
+	 * @param stagingTables comma separated names of the tables merged through a staging table instead of correlated
+	 * subqueries when two schemas are combined, * merges all tables that way
+	 */
+	public void setMergeStagingTables(final String stagingTables) {
+		mergeStagingTables.clear();
+		if (stagingTables != null) {
+			for (final String tableName : stagingTables.split(",")) {
+				if (!tableName.trim().isEmpty()) {
+					mergeStagingTables.add(tableName.trim());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Chunked loading needs random access to the extracted files so it takes precedence over streaming.
+	 */
+	private boolean isStreamingFromZip() {
+		return loaderStreamFromZip && loaderChunkSizeInMB <= 0;
+	}
+
 	/**
 	 * Returns the schema name that corresponds to  the given release.
 	 * @param releaseVersion the product name and release date as a yyyymmdd string (e.g. int_20140731)
@@ -291,7 +634,8 @@ public class ReleaseDataManagerImpl implements ReleaseDataManager, InitializingB
 	@Override
 	public String getSchemaForRelease(final String releaseVersion) {
 		if (releaseVersion != null) {
-			return releaseSchemaNameLookup.get(releaseVersion);
+			final String schemaName = releaseSchemaNameLookup.get(releaseVersion);
+			return schemaName != null ? schemaName : registerLegacySchema(releaseVersion);
 		}
 		return null;
 		
@@ -326,51 +670,95 @@ public class ReleaseDataManagerImpl implements ReleaseDataManager, InitializingB
 	
 	
 	@Override
-	public boolean combineKnownVersions(final String combinedVersionName, final String ... knownVersions){
+	public List<TableCopyStatus> combineKnownVersions(final String combinedVersionName, final String ... knownVersions) throws BusinessServiceException {
 		final long startTime = System.currentTimeMillis();
 		logger.info("Combining known versions into {}", combinedVersionName);
-		boolean isFailed = false;
 		//create db schema for the combined version
 		final String schemaName = RVF_DB_PREFIX + combinedVersionName;
 		try (Connection connection = snomedDataSource.getConnection()) {
 			createDBAndTables(schemaName, connection);
 			releaseSchemaNameLookup.put(combinedVersionName, schemaName);
 		} catch (SQLException | IOException e) {
-			isFailed = true;
-			logger.error("Failed to create db schema and tables for version:" + combinedVersionName +" due to " + e.fillInStackTrace());
+			final String msg = "Failed to create db schema and tables for version:" + combinedVersionName;
+			logger.error(msg + " due to " + e.fillInStackTrace());
+			throw new BusinessServiceException(msg, e);
 		}
 		//select data from known version schema and insert into the new schema
+		final List<TableCopyStatus> result = new ArrayList<>();
 		for (final String known : knownVersions) {
 			final String knownSchema = releaseSchemaNameLookup.get(known);
 			if (knownSchema == null) {
-				isFailed = true;
-				logger.error("Known schema doesn't exist for:" + known);
-				break;
+				throw new BusinessServiceException("Known schema doesn't exist for:" + known);
 			}
 			logger.info("Adding known version {} to schema {}", known, combinedVersionName);
-			for (final String tableName : getValidTableNamesFromSchema(knownSchema, null)) {
+			// versions are added one after another as tables of the same name can not be filled concurrently
+			result.addAll(copyTables(getValidTableNamesFromSchema(knownSchema, null), knownSchema, null, schemaName));
+		}
+		final long endTime = System.currentTimeMillis();
+		logger.info("Time taken to combine both known versions into one schema in seconds: " + (endTime-startTime)/1000);
+		if (getFailedTables(result).isEmpty()) {
+			schemaRegistry.markComplete(combinedVersionName, schemaName, getBaseTableNamesFromSchema(schemaName, null), endTime - startTime);
+		}
+		return result;
+	}
+
+	/**
+	 * Copies the given tables into the target schema on a pool of at most copyMaxConcurrentTables threads. When a
+	 * second source schema is given the rows of both sources are merged keeping the most recent row per id.
+	 * @return the status of each table, failures do not stop the other tables from being copied
+	 */
+	private List<TableCopyStatus> copyTables(final List<String> tableNames, final String sourceSchemaA, final String sourceSchemaB, final String targetSchema) {
+		final List<TableCopyStatus> result = new ArrayList<>();
+		final ExecutorService executorService = Executors.newFixedThreadPool(Math.max(1, Math.min(copyMaxConcurrentTables, tableNames.size())));
+		try {
+			final List<Future<TableCopyStatus>> tasks = new ArrayList<>();
+			for (final String tableName : tableNames) {
+				tasks.add(executorService.submit(new Callable<TableCopyStatus>() {
+					@Override
+					public TableCopyStatus call() throws Exception {
+						return sourceSchemaB == null ? copyData(tableName, sourceSchemaA, targetSchema)
+								: copyData(tableName, sourceSchemaA, sourceSchemaB, targetSchema);
+					}
+				}));
+			}
+			for (int i = 0; i < tasks.size(); i++) {
+				TableCopyStatus status;
 				try {
-					copyData(tableName, knownSchema, schemaName);
-				} catch (BusinessServiceException e) {
-					logger.error(" Copy data failed.", e);
-					isFailed = true;
+					status = tasks.get(i).get();
+				} catch (InterruptedException | ExecutionException e) {
+					status = new TableCopyStatus(tableNames.get(i));
+					status.setFailureMessage(e.getMessage());
 				}
+				logger.info("Table {}", status);
+				result.add(status);
 			}
+		} finally {
+			executorService.shutdown();
 		}
-		final long endTime = System.currentTimeMillis();
-		logger.info("Time taken to combine both known versions into one schema in seconds: " + (endTime-startTime)/1000);
-		return !isFailed;
+		return result;
+	}
+
+	private List<String> getFailedTables(final List<TableCopyStatus> statuses) {
+		final List<String> failedTables = new ArrayList<>();
+		for (final TableCopyStatus status : statuses) {
+			if (!status.isSuccessful()) {
+				failedTables.add(status.getTableName() + " (" + status.getFailureMessage() + ")");
+			}
+		}
+		return failedTables;
 	}
-	
 
 	/** Combine data from source schema A and B into target schema. Choose the most recent when both source schema A and B share the same ids.
 	 * @param tableName the table name to copy from source to target schema
 	 * @param sourceSchemaA 
 	 * @param sourceSchemaB
 	 * @param targetSchema
-	 * @throws BusinessServiceException
+	 * @return the number of rows inserted and the time taken or the reason of the failure
 	 */
-	private void copyData(String tableName, String sourceSchemaA, String sourceSchemaB, String targetSchema) throws BusinessServiceException {
+	private TableCopyStatus copyData(String tableName, String sourceSchemaA, String sourceSchemaB, String targetSchema) {
+		if (mergeStagingTables.contains(tableName) || mergeStagingTables.contains("*")) {
+			return mergeDataUsingStagingTable(tableName, sourceSchemaA, sourceSchemaB, targetSchema);
+		}
 		final String disableIndex = "ALTER TABLE " + tableName + " DISABLE KEYS";
 		final String enableIndex = "ALTER TABLE " + tableName + " ENABLE KEYS";
 		String selectDataFromASql = "select a.* from " + sourceSchemaA + "." + tableName + " a where not exists ( select c.id from " + sourceSchemaB + "." 
@@ -385,44 +773,114 @@ public class ReleaseDataManagerImpl implements ReleaseDataManager, InitializingB
 		
 		final String insertSql = "insert into " + targetSchema + "." + tableName  + " ";
 		logger.debug("Copying table {}", tableName);
+		final TableCopyStatus status = new TableCopyStatus(tableName);
+		final long startTime = System.currentTimeMillis();
 		try (Connection connection = snomedDataSource.getConnection();
 			Statement statement = connection.createStatement() ) {
 			statement.execute(disableIndex);
-			statement.execute(insertSql + selectDataFromASql);
-			statement.execute(insertSql + selectDataFromBSql);
-			statement.execute(insertSql + latestDataFromASelectSql);
-			statement.execute(insertSql + latestDataFromBSelectSql);
+			long rowsCopied = statement.executeUpdate(insertSql + selectDataFromASql);
+			rowsCopied += statement.executeUpdate(insertSql + selectDataFromBSql);
+			rowsCopied += statement.executeUpdate(insertSql + latestDataFromASelectSql);
+			rowsCopied += statement.executeUpdate(insertSql + latestDataFromBSelectSql);
 			statement.execute(enableIndex);
+			status.setRowsCopied(rowsCopied);
 		} catch (final SQLException e) {
-			String msg = "Failed to insert data to table: " + tableName;
-			logger.error(msg + " due to " + e.fillInStackTrace());
-			throw new BusinessServiceException(msg, e);
+			logger.error("Failed to insert data to table: " + tableName + " due to " + e.fillInStackTrace());
+			status.setFailureMessage(e.getMessage());
 		}
+		status.setDurationMillis(System.currentTimeMillis() - startTime);
+		return status;
 	}
 	
 	
 	
 	
-	private void copyData(String tableName, String sourceSchema, String targetSchema) throws BusinessServiceException {
+	/**
+	 * Same result as the merge above for snapshot and delta tables, but the winning source of each id is worked out once
+	 * in a staging table keyed on id instead of with correlated subqueries evaluated row by row. The rows of schema B
+	 * are folded into the ids of schema A keeping the most recent effective time, schema A wins when both have the same
+	 * effective time. The rows of both sources are then selected by joining on the primary key of the staging table.
+	 * Full tables hold every version of a component, so their staging table is keyed on id and effective time and
+	 * all versions of both sources are kept, schema A providing the versions both have.
+	 */
+	private TableCopyStatus mergeDataUsingStagingTable(String tableName, String sourceSchemaA, String sourceSchemaB, String targetSchema) {
+		final String stagingTable = targetSchema + ".merge_" + tableName;
+		final String stagingKey = tableName.endsWith("_f") ? "id, effectivetime" : "id";
+		final String createStagingSql = "create temporary table " + stagingTable + " (primary key (" + stagingKey + ")) " + storageProfile.getTemporaryTableClauseForReleaseColumns("id", "effectivetime") + " ignore"
+				+ " select id, effectivetime, 0 as winner from " + sourceSchemaA + "." + tableName;
+		// the winner is updated first so that it is compared against the effective time of schema A
+		final String foldSourceBSql = "insert into " + stagingTable + " (id, effectivetime, winner)"
+				+ " select id, effectivetime, 1 from " + sourceSchemaB + "." + tableName
+				+ " on duplicate key update winner = if(values(effectivetime) > effectivetime, 1, winner),"
+				+ " effectivetime = greatest(effectivetime, values(effectivetime))";
+		final String insertSql = "insert into " + targetSchema + "." + tableName  + " ";
+		final String selectWinnersFromASql = "select a.* from " + sourceSchemaA + "." + tableName + " a join " + stagingTable
+				+ " s on s.id = a.id and s.effectivetime = a.effectivetime and s.winner = 0";
+		final String selectWinnersFromBSql = "select b.* from " + sourceSchemaB + "." + tableName + " b join " + stagingTable
+				+ " s on s.id = b.id and s.effectivetime = b.effectivetime and s.winner = 1";
+		logger.debug("Merging table {} through staging table {}", tableName, stagingTable);
+		final TableCopyStatus status = new TableCopyStatus(tableName);
+		final long startTime = System.currentTimeMillis();
+		try (Connection connection = snomedDataSource.getConnection();
+			Statement statement = connection.createStatement() ) {
+			try {
+				statement.execute(createStagingSql);
+				statement.execute(foldSourceBSql);
+				statement.execute("ALTER TABLE " + targetSchema + "." + tableName + " DISABLE KEYS");
+				long rowsCopied = statement.executeUpdate(insertSql + selectWinnersFromASql);
+				rowsCopied += statement.executeUpdate(insertSql + selectWinnersFromBSql);
+				statement.execute("ALTER TABLE " + targetSchema + "." + tableName + " ENABLE KEYS");
+				status.setRowsCopied(rowsCopied);
+			} finally {
+				// pooled connections outlive the temporary table otherwise
+				statement.execute("drop temporary table if exists " + stagingTable);
+			}
+		} catch (final SQLException e) {
+			logger.error("Failed to merge data into table: " + tableName + " due to " + e.fillInStackTrace());
+			status.setFailureMessage(e.getMessage());
+		}
+		status.setDurationMillis(System.currentTimeMillis() - startTime);
+		return status;
+	}
+
+	private TableCopyStatus copyData(String tableName, String sourceSchema, String targetSchema) {
 		final String disableIndex = "ALTER TABLE " + tableName + " DISABLE KEYS";
 		final String enableIndex = "ALTER TABLE " + tableName + " ENABLE KEYS";
 		final String sql = "insert into " + targetSchema + "." + tableName  + " select * from " + sourceSchema + "." + tableName;
 		logger.debug("Copying table {} with sql {} ", tableName, sql);
+		final TableCopyStatus status = new TableCopyStatus(tableName);
+		final long startTime = System.currentTimeMillis();
 		try (Connection connection = snomedDataSource.getConnection();
 			Statement statement = connection.createStatement() ) {
 			statement.execute(disableIndex);
-			statement.execute(sql);
+			status.setRowsCopied(statement.executeUpdate(sql));
 			statement.execute(enableIndex);
 		} catch (final SQLException e) {
-			String msg = "Failed to insert data to table: " + tableName;
-			logger.error(msg + " due to " + e.fillInStackTrace());
-			throw new BusinessServiceException(msg, e);
-		}		
+			logger.error("Failed to insert data to table: " + tableName + " due to " + e.fillInStackTrace());
+			status.setFailureMessage(e.getMessage());
+		}
+		status.setDurationMillis(System.currentTimeMillis() - startTime);
+		return status;
 	}
 	
 	
 	
+	/**
+	 * @return the RF2 tables of the schema including the snapshot overlay views
+	 */
 	private List<String> getValidTableNamesFromSchema(String schemaName, String tableNamePattern) {
+		return getValidTableNamesFromSchema(schemaName, tableNamePattern, false);
+	}
+
+	/**
+	 * @return the RF2 tables of the schema without the snapshot overlay views, as counting or reading the rows of a view
+	 * reads the whole baseline table it is defined over
+	 */
+	private List<String> getBaseTableNamesFromSchema(String schemaName, String tableNamePattern) {
+		return getValidTableNamesFromSchema(schemaName, tableNamePattern, true);
+	}
+
+	private List<String> getValidTableNamesFromSchema(String schemaName, String tableNamePattern, boolean isBaseTablesOnly) {
 		List<String> result = new ArrayList<>();
 		Collection<String> mappedTables = RF2FileTableMapper.getAllTableNames();
 		try (Connection connection = snomedDataSource.getConnection();
@@ -431,6 +889,9 @@ public class ReleaseDataManagerImpl implements ReleaseDataManager, InitializingB
 			if ( tableNamePattern != null) {
 				sql = sql + " and table_name like '" + tableNamePattern + "'";
 			}
+			if (isBaseTablesOnly) {
+				sql = sql + " and table_type = 'BASE TABLE'";
+			}
 			ResultSet resultSet = statement.executeQuery(sql);
 			while( resultSet.next()) {
 				String tableName = resultSet.getString(1);
@@ -444,17 +905,24 @@ public class ReleaseDataManagerImpl implements ReleaseDataManager, InitializingB
 		return result;
 	}
 
+	@Override
+	public Map<String, Map<String, Long>> getTableLoadStatistics(final String version) {
+		return tableLoadStatistics.get(version);
+	}
+
 	@Override
 	public void dropVersion(String version) {
 		//just remove the schema name from the map for the time being as the actual schema data is
 		//removed a RvfDbScheduleEventGenerator
 		if (version != null) {
 			releaseSchemaNameLookup.remove(version);
+			tableLoadStatistics.remove(version);
+			schemaRegistry.remove(version);
 		}
 	}
 
 	@Override
-	public void copyTableData(String sourceVersion, String destinationVersion, String tableNamePattern, List<String> excludeTableNames) throws BusinessServiceException {
+	public List<TableCopyStatus> copyTableData(String sourceVersion, String destinationVersion, String tableNamePattern, List<String> excludeTableNames) throws BusinessServiceException {
 		final long startTime = System.currentTimeMillis();
 		String sourceSchema = releaseSchemaNameLookup.get(sourceVersion);
 		String destinationSchema = releaseSchemaNameLookup.get(destinationVersion);
@@ -468,22 +936,31 @@ public class ReleaseDataManagerImpl implements ReleaseDataManager, InitializingB
 			}
 			throw new BusinessServiceException(errorMsg.toString());
 		}
-		for (final String tableName : getValidTableNamesFromSchema(sourceSchema, tableNamePattern)) {
-			if (excludeTableNames != null && excludeTableNames.contains(tableName)) {
-				continue;
-			}
-			copyData(tableName, sourceSchema, destinationSchema);
+		final List<String> tableNames = getValidTableNamesFromSchema(sourceSchema, tableNamePattern);
+		if (excludeTableNames != null) {
+			tableNames.removeAll(excludeTableNames);
 		}
+		final List<TableCopyStatus> result = copyTables(tableNames, sourceSchema, null, destinationSchema);
 		final long endTime = System.currentTimeMillis();
 		logger.info("Copy data with table name like {} from {} into {} completed in seconds {} ", tableNamePattern, sourceSchema, destinationSchema, (endTime-startTime)/1000);
+		final List<String> failedTables = getFailedTables(result);
+		if (!failedTables.isEmpty()) {
+			throw new BusinessServiceException("Failed to copy data from " + sourceSchema + " into " + destinationSchema + " for tables: " + failedTables);
+		}
+		return result;
 	}
 
 	@Override
 	public void updateSnapshotTableWithDataFromDelta(String prospectiveVersion) {
 		String schema = releaseSchemaNameLookup.get(prospectiveVersion);
-		List<String> deltaTableNames = getValidTableNamesFromSchema(schema, "%_d");
+		List<String> deltaTableNames = getBaseTableNamesFromSchema(schema, "%_d");
+		List<String> overlayViews = getViewNamesFromSchema(schema);
 		for (String deltaTbl : deltaTableNames) {
 			String snapshotTbl = deltaTbl.replace("_d", "_s");
+			if (overlayViews.contains(snapshotTbl)) {
+				// the overlay view already combines the delta with the baseline snapshot
+				continue;
+			}
 			final String deleteSql = "delete a.* from " + schema + "." + snapshotTbl + " a where exists ( select b.id from " + schema + "." + deltaTbl + " b where a.id=b.id)";
 			logger.debug("Delete data from snapshot table sql:" + deleteSql);
 			final String insertSql = "insert into " + schema + "." + snapshotTbl  + " select * from " + schema + "." + deltaTbl;
@@ -499,13 +976,85 @@ public class ReleaseDataManagerImpl implements ReleaseDataManager, InitializingB
 		
 	}
 
+	/**
+	 * Replaces the given snapshot tables of the prospective version with views that overlay its delta tables on the
+	 * snapshot tables of an unchanged baseline version, so that the baseline snapshot does not have to be copied.
+	 * A baseline row is hidden by the view when the delta holds a row with the same id.
+	 * <p>
+	 * MySQL can not merge a UNION ALL view into the query that reads it, so every assertion reading an overlay view
+	 * materialises the whole baseline snapshot table in a temporary table. Only tables read by few assertions are
+	 * worth overlaying. Baseline snapshots that are overlay views themselves are copied rather than stacked, which
+	 * would materialise both baselines for every read.
+	 */
+	@Override
+	public void createSnapshotOverlayViews(String baselineVersion, String prospectiveVersion, List<String> overlayTableNames) throws BusinessServiceException {
+		final long startTime = System.currentTimeMillis();
+		String baselineSchema = releaseSchemaNameLookup.get(baselineVersion);
+		String prospectiveSchema = releaseSchemaNameLookup.get(prospectiveVersion);
+		if (baselineSchema == null || prospectiveSchema == null) {
+			StringBuilder errorMsg = new StringBuilder();
+			if (baselineSchema == null) {
+				errorMsg.append("No version found in the db for " + baselineVersion); 
+			}
+			if (prospectiveSchema == null) {
+				errorMsg.append("No version found in the db for " + prospectiveVersion); 
+			}
+			throw new BusinessServiceException(errorMsg.toString());
+		}
+		try (Connection connection = snomedDataSource.getConnection();
+			Statement statement = connection.createStatement()) {
+			final List<String> baselineTables = getBaseTableNamesFromSchema(baselineSchema, "%_s");
+			for (final String snapshotTbl : getValidTableNamesFromSchema(baselineSchema, "%_s")) {
+				if (!overlayTableNames.contains(snapshotTbl)) {
+					continue;
+				}
+				if (!baselineTables.contains(snapshotTbl)) {
+					final TableCopyStatus status = copyData(snapshotTbl, baselineSchema, prospectiveSchema);
+					if (!status.isSuccessful()) {
+						throw new BusinessServiceException("Failed to copy overlay view " + snapshotTbl + " of " + baselineSchema + " into " + prospectiveSchema);
+					}
+					continue;
+				}
+				final String deltaTbl = snapshotTbl.substring(0, snapshotTbl.length() - 2) + "_d";
+				final String createViewSql = "create view " + prospectiveSchema + "." + snapshotTbl + " as"
+						+ " select b.* from " + baselineSchema + "." + snapshotTbl + " b where not exists"
+						+ " (select d.id from " + prospectiveSchema + "." + deltaTbl + " d where d.id = b.id)"
+						+ " union all select d.* from " + prospectiveSchema + "." + deltaTbl + " d";
+				logger.debug("Create snapshot overlay view sql:" + createViewSql);
+				statement.execute("drop table if exists " + prospectiveSchema + "." + snapshotTbl);
+				statement.execute(createViewSql);
+			}
+		} catch (final SQLException e) {
+			final String msg = "Failed to create snapshot overlay views in " + prospectiveSchema + " over " + baselineSchema;
+			logger.error(msg + " due to " + e.fillInStackTrace());
+			throw new BusinessServiceException(msg, e);
+		}
+		logger.info("Snapshot overlay views from {} created in {} in seconds {} ", baselineSchema, prospectiveSchema, (System.currentTimeMillis() - startTime)/1000);
+	}
+
+	private List<String> getViewNamesFromSchema(String schemaName) {
+		List<String> result = new ArrayList<>();
+		try (Connection connection = snomedDataSource.getConnection();
+				PreparedStatement statement = connection.prepareStatement("select table_name from INFORMATION_SCHEMA.VIEWS where table_schema = ?")) {
+			statement.setString(1, schemaName);
+			try (ResultSet resultSet = statement.executeQuery()) {
+				while (resultSet.next()) {
+					result.add(resultSet.getString(1));
+				}
+			}
+		} catch (SQLException e) {
+			logger.error("Failed to select view names from db schema: " + schemaName +" due to " + e.fillInStackTrace());
+		}
+		return result;
+	}
+
 	@Override
 	public String loadSnomedDataIntoExistingDb(String productVersion, List<String> rf2FilesLoaded, File... zipDataFile) throws BusinessServiceException {
-		return loadSnomedData(productVersion, true, rf2FilesLoaded, zipDataFile);
+		return loadSnomedData(productVersion, true, null, rf2FilesLoaded, new ArrayList<String>(), null, zipDataFile);
 	}
 
 	@Override
-	public void copyTableData(String sourceVersionA, String sourceVersionB, String destinationVersion, String tableNamePattern,
+	public List<TableCopyStatus> copyTableData(String sourceVersionA, String sourceVersionB, String destinationVersion, String tableNamePattern,
 			List<String> excludeTableNames) throws BusinessServiceException {
 		final long startTime = System.currentTimeMillis();
 		String sourceSchemaA = releaseSchemaNameLookup.get(sourceVersionA);
@@ -524,14 +1073,18 @@ public class ReleaseDataManagerImpl implements ReleaseDataManager, InitializingB
 			}
 			throw new BusinessServiceException(errorMsg.toString());
 		}
-		for (final String tableName : getValidTableNamesFromSchema(sourceSchemaA, tableNamePattern)) {
-			if (excludeTableNames != null && excludeTableNames.contains(tableName)) {
-				continue;
-			}
-			copyData(tableName, sourceSchemaA, sourceSchemaB, destinationSchema);
+		final List<String> tableNames = getValidTableNamesFromSchema(sourceSchemaA, tableNamePattern);
+		if (excludeTableNames != null) {
+			tableNames.removeAll(excludeTableNames);
 		}
+		final List<TableCopyStatus> result = copyTables(tableNames, sourceSchemaA, sourceSchemaB, destinationSchema);
 		final long endTime = System.currentTimeMillis();
 		logger.info("Copy data with table name like {} from {} {} into {} completed in seconds {} ", tableNamePattern, sourceSchemaA, sourceSchemaB, destinationSchema, (endTime-startTime)/1000);
+		final List<String> failedTables = getFailedTables(result);
+		if (!failedTables.isEmpty()) {
+			throw new BusinessServiceException("Failed to merge data from " + sourceSchemaA + " and " + sourceSchemaB + " into " + destinationSchema + " for tables: " + failedTables);
+		}
+		return result;
 	}
 
 	@Override
@@ -540,6 +1093,7 @@ public class ReleaseDataManagerImpl implements ReleaseDataManager, InitializingB
         try (Connection connection = snomedDataSource.getConnection()) {
 			createDBAndTables(schemaName, connection);
 			releaseSchemaNameLookup.put(version, schemaName);
+			schemaRegistry.markComplete(version, schemaName, new ArrayList<String>(), 0);
 		} catch (SQLException | IOException e) {
 			logger.error("Failed to create db schema and tables for:" + version  + " due to " + e.fillInStackTrace());
 			schemaName = null;
@@ -1,16 +1,35 @@
 package org.ihtsdo.rvf.execution.service.impl;
 
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.file.Paths;
 import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.ihtsdo.rvf.execution.service.util.RvfDynamicDataSource;
 import org.ihtsdo.snomed.util.rf2.schema.ComponentType;
 import org.ihtsdo.snomed.util.rf2.schema.DataType;
@@ -27,11 +46,32 @@ import org.slf4j.LoggerFactory;
  */
 public class ReleaseFileDataLoader {
 
+	public static final String ROWS_LOADED = "rows";
+	public static final String LOAD_MILLIS = "loadMillis";
+	public static final String INDEX_MILLIS = "indexMillis";
+	/**
+	 * Version of the way release files are turned into table rows. To be increased with every change to the loader that
+	 * changes the data it loads so that published releases loaded by an earlier version are loaded again.
+	 */
+	public static final String DATA_FORMAT_VERSION = "2";
+	private static final long DEFAULT_BUFFER_SIZE = 1024 * 1024 * 256L;
+
 	private MySqlDataTypeConverter dataTypeConverter;
 	private Connection connection;
 	private final Logger LOGGER = LoggerFactory.getLogger(ReleaseFileDataLoader.class);
 	private RvfDynamicDataSource dataSource;
 	private String schemaName;
+	private long chunkSizeInBytes;
+	private int maxConcurrentChunks = 1;
+	private long bulkInsertBufferSize = DEFAULT_BUFFER_SIZE;
+	private long sortBufferSize = DEFAULT_BUFFER_SIZE;
+	private Map<String, List<String>> indexProfile;
+	private StorageProfile storageProfile;
+	private LoadListener loadListener;
+	private Map<String, Long> completedFiles;
+	private ReleaseLoadScheduler scheduler;
+	private final Map<String, Map<String, Long>> tableLoadStatistics = new ConcurrentHashMap<>();
+	private final List<String> failedFiles = new ArrayList<>();
 
 	public ReleaseFileDataLoader(final Connection dbConnection, final MySqlDataTypeConverter typeConverter) {
 		connection = dbConnection;
@@ -62,57 +102,612 @@ public class ReleaseFileDataLoader {
 
 	
 	/**
+	 * Switches the loader to chunked mode: each RF2 file is split into line aligned byte ranges of roughly
+	 * chunkSizeInBytes which are streamed concurrently. MyISAM lets only one statement write to a table at a time, so
+	 * every chunk is loaded into a staging table of its own. The staging tables are copied into the table one after the
+	 * other once all chunks are in, so the parsing of the file runs in parallel and only the copy is serialised. A file
+	 * with a chunk that fails to load is not loaded at all.
+	 * @param chunkSizeInBytes the target size of each chunk, a value of 0 or less disables chunked loading
+	 * @param maxConcurrentChunks the maximum number of LOAD DATA streams running at the same time, only used when
+	 * no shared scheduler is set
+	 */
+	public void setChunkedLoading(final long chunkSizeInBytes, final int maxConcurrentChunks) {
+		this.chunkSizeInBytes = chunkSizeInBytes;
+		this.maxConcurrentChunks = maxConcurrentChunks > 0 ? maxConcurrentChunks : 1;
+	}
+
+	/**
+	 * Sets the columns to index per RF2 table type (the table name without the _d, _s or _f suffix). All secondary
+	 * indexes of a listed table are dropped before loading and only the listed columns are indexed once the data is in,
+	 * in a single ALTER TABLE. Tables not listed keep their indexes which are disabled and rebuilt as before.
+	 * @param indexProfile the columns to index keyed by table type, null keeps all indexes of all tables
+	 */
+	public void setIndexProfile(final Map<String, List<String>> indexProfile) {
+		this.indexProfile = indexProfile;
+	}
+
+	/**
+	 * @param bulkInsertBufferSize the session bulk_insert_buffer_size used while loading
+	 * @param sortBufferSize the session myisam_sort_buffer_size used while building indexes
+	 */
+	public void setBufferSizes(final long bulkInsertBufferSize, final long sortBufferSize) {
+		if (bulkInsertBufferSize > 0) {
+			this.bulkInsertBufferSize = bulkInsertBufferSize;
+		}
+		if (sortBufferSize > 0) {
+			this.sortBufferSize = sortBufferSize;
+		}
+	}
+
+	/**
+	 * @param storageProfile the engine and column types used by createTableSQL, null keeps MyISAM and the RF2 types
+	 */
+	public void setStorageProfile(final StorageProfile storageProfile) {
+		this.storageProfile = storageProfile;
+	}
+
+	/**
+	 * @param loadListener notified of the load progress of each file and of each file that has been completely loaded
+	 */
+	public void setLoadListener(final LoadListener loadListener) {
+		this.loadListener = loadListener;
+	}
+
+	/**
+	 * Resumes an interrupted load. Tables whose files all have been completely loaded before are left as they are,
+	 * all other tables are emptied and loaded again.
+	 * @param completedFiles the sizes of the files loaded by the earlier attempt keyed by file name
+	 */
+	public void setCompletedFiles(final Map<String, Long> completedFiles) {
+		this.completedFiles = completedFiles;
+	}
+
+	/**
+	 * @param scheduler the scheduler shared by all loads that runs the LOAD DATA statements, null runs them on a pool
+	 * owned by this loader
+	 */
+	public void setScheduler(final ReleaseLoadScheduler scheduler) {
+		this.scheduler = scheduler;
+	}
+
+	/**
+	 * @return the rows loaded, the load time and the index build time in milliseconds of each table loaded so far
+	 */
+	public Map<String, Map<String, Long>> getTableLoadStatistics() {
+		return tableLoadStatistics;
+	}
+
+	/**
+	 * @return the files of the loads so far that belong to a table but could not be loaded
+	 */
+	public List<String> getFailedFiles() {
+		return failedFiles;
+	}
+
+	/**
+	 * Loads the files of each table one after the other on a single connection, so that the indexes of a table that
+	 * several files are loaded into (e.g. the language refsets of different languages) are dropped or disabled once
+	 * before its first file and built once after its last file. Different tables are loaded concurrently.
 	 * @param rf2TextFileRootPath
 	 * @param rf2Files
 	 * @param rf2FilesLoaded 
 	 * @throws SQLException
 	 */
 	public void loadFilesIntoDB(final String rf2TextFileRootPath, final String[] rf2Files, List<String> rf2FilesLoaded) throws SQLException {
+		if (chunkSizeInBytes > 0) {
+			loadFilesIntoDBInChunks(rf2TextFileRootPath, rf2Files, rf2FilesLoaded);
+			return;
+		}
 		final long start = System.currentTimeMillis();
-		ExecutorService executorService =  Executors.newCachedThreadPool();
-		List<Future<String>> tasks = new ArrayList<>();
+		final Map<String, Long> fileSizes = new LinkedHashMap<>();
 		for (final String rf2FileName : rf2Files) {
-			final String rvfTableName = RF2FileTableMapper.getLegacyTableName(rf2FileName);
-			if( rvfTableName == null) {
-				LOGGER.warn("No matching table name found for RF2 file:" + rf2FileName);
-				continue;
+			fileSizes.put(rf2FileName, new File(rf2TextFileRootPath, rf2FileName).length());
+		}
+		final List<String> filesToLoad = selectFilesToLoad(fileSizes, rf2FilesLoaded);
+		loadTables(filesToLoad, fileSizes, new FileSource() {
+			@Override
+			public InputStream open(final String rf2FileName) throws IOException {
+				final File rf2File = new File(rf2TextFileRootPath, rf2FileName);
+				LOGGER.info("Loading {}", rf2File.getPath());
+				return new FileInputStream(rf2File);
 			}
-			final Future<String> future = executorService.submit(new Callable<String>() {
+		}, rf2FilesLoaded);
+		recordFailedFiles(filesToLoad, rf2FilesLoaded);
+		final long end = System.currentTimeMillis();
+		LOGGER.info("Time taken to load in seconds " + (end-start)/1000);
+	}
 
-				@Override
-				public String call() throws Exception {
-					final String configStr = "SET bulk_insert_buffer_size= 1024 * 1024 * 256;";
-					final String disableIndex = "ALTER TABLE " + rvfTableName + " DISABLE KEYS;";
-					final String enableIndex = "ALTER TABLE " + rvfTableName + " ENABLE KEYS;";
-					final String loadFile = "load data local infile '" + rf2TextFileRootPath + "/" + rf2FileName + "' into table " + rvfTableName
-							+ " columns terminated by '\\t' "
-							+ " lines terminated by '\\r\\n' "
-							+ " ignore 1 lines";
-					LOGGER.info(loadFile);
-					
-					try (Connection connection =dataSource.getConnection(schemaName); 
-						Statement statement = connection.createStatement()) {
-						statement.execute(configStr);
-						statement.execute(disableIndex);
-						statement.execute(loadFile);
-						statement.execute(enableIndex);
+	/**
+	 * Loads the files of each table with {@link #loadTable(String, List, Map, FileSource)}, one table per task of the
+	 * scheduler, and adds the files that have been loaded to rf2FilesLoaded.
+	 */
+	private void loadTables(final List<String> filesToLoad, final Map<String, Long> fileSizes, final FileSource fileSource,
+			final List<String> rf2FilesLoaded) {
+		final Map<String, List<String>> filesByTable = groupFilesByTable(filesToLoad);
+		final ReleaseLoadScheduler loadScheduler = getScheduler(filesByTable.size());
+		final ReleaseLoadScheduler.LoadRun run = loadScheduler.startRun(schemaName, getTotalSize(fileSizes, filesToLoad));
+		try {
+			final List<Future<List<String>>> tasks = new ArrayList<>();
+			for (final Map.Entry<String, List<String>> tableFiles : filesByTable.entrySet()) {
+				final String rvfTableName = tableFiles.getKey();
+				final List<String> rf2FileNames = tableFiles.getValue();
+				tasks.add(loadScheduler.submit(run, getTotalSize(fileSizes, rf2FileNames), new Callable<List<String>>() {
+					@Override
+					public List<String> call() throws Exception {
+						return loadTable(rvfTableName, rf2FileNames, fileSizes, fileSource);
+					}
+				}));
+			}
+			for (final Future<List<String>> task : tasks) {
+				try {
+					rf2FilesLoaded.addAll(task.get());
+				} catch (InterruptedException | ExecutionException e) {
+					LOGGER.error("Thread interrupted while waiting for get rf2 file loading result.", e);
+				}
+			}
+		} finally {
+			releaseScheduler(loadScheduler, run);
+		}
+	}
+
+	/**
+	 * Streams the files into the table through the driver so that the progress of the load can be followed. A file that
+	 * fails to load does not stop the other files of the table from being loaded.
+	 * @return the files that have been loaded
+	 */
+	private List<String> loadTable(final String rvfTableName, final List<String> rf2FileNames, final Map<String, Long> fileSizes,
+			final FileSource fileSource) throws SQLException {
+		final Map<String, Long> rowsLoaded = new LinkedHashMap<>();
+		long rows = 0;
+		try (Connection connection = dataSource.getConnection(schemaName);
+			Statement statement = connection.createStatement()) {
+			statement.execute("SET bulk_insert_buffer_size = " + bulkInsertBufferSize);
+			prepareTableForLoad(statement, rvfTableName);
+			final long loadStart = System.currentTimeMillis();
+			for (final String rf2FileName : rf2FileNames) {
+				LOGGER.info("Loading {} into table {}", rf2FileName, rvfTableName);
+				try (InputStream input = new ProgressInputStream(new BufferedInputStream(fileSource.open(rf2FileName)), rf2FileName,
+						fileSizes.get(rf2FileName), new AtomicLong())) {
+					statement.unwrap(com.mysql.jdbc.Statement.class).setLocalInfileInputStream(input);
+					final long fileRows = statement.executeUpdate(buildLoadDataSql(rf2FileName, rvfTableName, true));
+					rowsLoaded.put(rf2FileName, fileRows);
+					rows += fileRows;
+				} catch (final IOException | SQLException e) {
+					LOGGER.error("Failed to load rf2 file " + rf2FileName + " into table " + rvfTableName, e);
+				}
+			}
+			final long indexStart = System.currentTimeMillis();
+			buildIndexes(statement, rvfTableName);
+			recordStatistics(rvfTableName, rows, indexStart - loadStart, System.currentTimeMillis() - indexStart);
+		}
+		for (final Map.Entry<String, Long> fileRows : rowsLoaded.entrySet()) {
+			notifyFileLoaded(fileRows.getKey(), rvfTableName, fileSizes.get(fileRows.getKey()), fileRows.getValue());
+		}
+		return new ArrayList<>(rowsLoaded.keySet());
+	}
+
+	private void loadFilesIntoDBInChunks(final String rf2TextFileRootPath, final String[] rf2Files, List<String> rf2FilesLoaded) throws SQLException {
+		final long start = System.currentTimeMillis();
+		final Map<String, Long> fileSizes = new LinkedHashMap<>();
+		for (final String rf2FileName : rf2Files) {
+			fileSizes.put(rf2FileName, new File(rf2TextFileRootPath, rf2FileName).length());
+		}
+		final List<String> filesToLoad = selectFilesToLoad(fileSizes, rf2FilesLoaded);
+		final ReleaseLoadScheduler loadScheduler = getScheduler(maxConcurrentChunks);
+		final ReleaseLoadScheduler.LoadRun run = loadScheduler.startRun(schemaName, getTotalSize(fileSizes, filesToLoad));
+		try {
+			final Map<String, List<ChunkedFile>> chunkedFilesByTable = new LinkedHashMap<>();
+			final Map<String, Long> loadStarts = new LinkedHashMap<>();
+			for (final Map.Entry<String, List<String>> tableFiles : groupFilesByTable(filesToLoad).entrySet()) {
+				final String rvfTableName = tableFiles.getKey();
+				try (Connection connection = dataSource.getConnection(schemaName);
+					Statement statement = connection.createStatement()) {
+					prepareTableForLoad(statement, rvfTableName);
+				}
+				final List<ChunkedFile> chunkedFiles = new ArrayList<>();
+				loadStarts.put(rvfTableName, System.currentTimeMillis());
+				for (final String rf2FileName : tableFiles.getValue()) {
+					final File rf2File = new File(rf2TextFileRootPath, rf2FileName);
+					final List<long[]> chunks;
+					try {
+						chunks = splitIntoChunks(rf2File, chunkSizeInBytes);
+					} catch (final IOException e) {
+						LOGGER.error("Failed to split RF2 file into chunks:" + rf2FileName, e);
+						continue;
+					}
+					LOGGER.info("Loading {} into table {} with {} chunks", rf2FileName, rvfTableName, chunks.size());
+					final ChunkedFile chunkedFile = new ChunkedFile(rf2FileName);
+					final AtomicLong bytesRead = new AtomicLong();
+					for (int i = 0; i < chunks.size(); i++) {
+						final long[] range = chunks.get(i);
+						final boolean isFirstChunk = i == 0;
+						final int chunkNumber = getChunkCount(chunkedFiles) + chunkedFile.chunkTableNames.size();
+						final String chunkTableName = getChunkTableName(rvfTableName, chunkNumber);
+						chunkedFile.chunkTableNames.add(chunkTableName);
+						chunkedFile.chunkTasks.add(loadScheduler.submit(run, range[1] - range[0], new Callable<Long>() {
+							@Override
+							public Long call() throws Exception {
+								return loadChunk(rf2File, rvfTableName, chunkTableName, range[0], range[1], isFirstChunk, bytesRead);
+							}
+						}));
+					}
+					chunkedFiles.add(chunkedFile);
+				}
+				chunkedFilesByTable.put(rvfTableName, chunkedFiles);
+			}
+			// copy the chunks into each table and rebuild its indexes as soon as all of its chunks are loaded
+			final List<Future<List<String>>> indexTasks = new ArrayList<>();
+			for (final Map.Entry<String, List<ChunkedFile>> tableChunks : chunkedFilesByTable.entrySet()) {
+				final String rvfTableName = tableChunks.getKey();
+				final List<ChunkedFile> chunkedFiles = tableChunks.getValue();
+				for (final ChunkedFile chunkedFile : chunkedFiles) {
+					for (final Future<Long> chunkTask : chunkedFile.chunkTasks) {
+						try {
+							chunkedFile.rows += chunkTask.get();
+						} catch (InterruptedException | ExecutionException e) {
+							chunkedFile.isLoaded = false;
+							LOGGER.error("Failed to load chunk of rf2 file " + chunkedFile.rf2FileName, e);
+						}
+					}
+				}
+				final long loadStart = loadStarts.get(rvfTableName);
+				indexTasks.add(loadScheduler.submit(run, 0, new Callable<List<String>>() {
+					@Override
+					public List<String> call() throws Exception {
+						return completeChunkedTable(rvfTableName, chunkedFiles, fileSizes, loadStart);
 					}
-					return rf2FileName;
+				}));
+			}
+			for (final Future<List<String>> indexTask : indexTasks) {
+				try {
+					rf2FilesLoaded.addAll(indexTask.get());
+				} catch (InterruptedException | ExecutionException e) {
+					LOGGER.error("Failed to copy chunks or rebuild indexes of table.", e);
 				}
-			});
-			tasks.add(future);
+			}
+			recordFailedFiles(filesToLoad, rf2FilesLoaded);
+		} finally {
+			releaseScheduler(loadScheduler, run);
 		}
-		for (Future<String> task : tasks) {
+		final long end = System.currentTimeMillis();
+		LOGGER.info("Time taken to load in chunks in seconds " + (end-start)/1000);
+	}
+
+	/**
+	 * Copies the staging tables of the files whose chunks all have been loaded into the table, drops all staging tables
+	 * and builds the indexes of the table.
+	 * @return the files that have been loaded
+	 */
+	private List<String> completeChunkedTable(final String rvfTableName, final List<ChunkedFile> chunkedFiles, final Map<String, Long> fileSizes,
+			final long loadStart) throws SQLException {
+		final List<ChunkedFile> loaded = new ArrayList<>();
+		long rows = 0;
+		try (Connection connection = dataSource.getConnection(schemaName);
+			Statement statement = connection.createStatement()) {
 			try {
-				rf2FilesLoaded.add(task.get());
-			} catch (InterruptedException | ExecutionException e) {
-				LOGGER.error("Thread interrupted while waiting for get rf2 file loading result.", e.fillInStackTrace());
+				for (final ChunkedFile chunkedFile : chunkedFiles) {
+					if (!chunkedFile.isLoaded) {
+						LOGGER.error("Not all chunks of {} could be loaded so the file is not loaded into {}", chunkedFile.rf2FileName, rvfTableName);
+						continue;
+					}
+					for (final String chunkTableName : chunkedFile.chunkTableNames) {
+						statement.executeUpdate("insert into " + rvfTableName + " select * from " + chunkTableName);
+					}
+					LOGGER.info("Loaded {} rows from {} into {}", chunkedFile.rows, chunkedFile.rf2FileName, rvfTableName);
+					loaded.add(chunkedFile);
+					rows += chunkedFile.rows;
+				}
+			} finally {
+				for (final ChunkedFile chunkedFile : chunkedFiles) {
+					for (final String chunkTableName : chunkedFile.chunkTableNames) {
+						try {
+							statement.execute("drop table if exists " + chunkTableName);
+						} catch (final SQLException e) {
+							LOGGER.error("Failed to drop chunk table " + chunkTableName, e);
+						}
+					}
+				}
+			}
+			final long indexStart = System.currentTimeMillis();
+			buildIndexes(statement, rvfTableName);
+			recordStatistics(rvfTableName, rows, indexStart - loadStart, System.currentTimeMillis() - indexStart);
+		}
+		final List<String> result = new ArrayList<>();
+		for (final ChunkedFile chunkedFile : loaded) {
+			notifyFileLoaded(chunkedFile.rf2FileName, rvfTableName, fileSizes.get(chunkedFile.rf2FileName), chunkedFile.rows);
+			result.add(chunkedFile.rf2FileName);
+		}
+		return result;
+	}
+
+	private static int getChunkCount(final List<ChunkedFile> chunkedFiles) {
+		int count = 0;
+		for (final ChunkedFile chunkedFile : chunkedFiles) {
+			count += chunkedFile.chunkTableNames.size();
+		}
+		return count;
+	}
+
+	/**
+	 * Loads the RF2 text files contained in the given release zips straight from the archives, without extracting
+	 * them to disk first. Each zip entry is streamed into its table through the driver's local infile input stream.
+	 * Files are named without the leading "x" of files not yet published, and when the same file name appears more than
+	 * once the last one found is loaded.
+	 * @param zipFiles the release zip files
+	 * @param rf2FilesLoaded list the names of successfully loaded files are added to
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public void loadZipFilesIntoDB(final File[] zipFiles, final List<String> rf2FilesLoaded) throws SQLException, IOException {
+		final long start = System.currentTimeMillis();
+		final List<ZipFile> openedZipFiles = new ArrayList<>();
+		try {
+			final Map<String, ZipEntry> rf2Entries = new LinkedHashMap<>();
+			final Map<String, ZipFile> rf2EntryZips = new LinkedHashMap<>();
+			for (final File file : zipFiles) {
+				final ZipFile zipFile = new ZipFile(file);
+				openedZipFiles.add(zipFile);
+				final Enumeration<? extends ZipEntry> entries = zipFile.entries();
+				while (entries.hasMoreElements()) {
+					final ZipEntry entry = entries.nextElement();
+					if (entry.isDirectory()) {
+						continue;
+					}
+					// named like the files extracted by ZipFileUtils so that an x prefixed file replaces its published version
+					final String fileName = removeXPrefix(Paths.get(entry.getName()).getFileName().toString());
+					if (isRF2TextFile(fileName)) {
+						rf2Entries.put(fileName, entry);
+						rf2EntryZips.put(fileName, zipFile);
+					}
+				}
+			}
+			final Map<String, Long> fileSizes = new LinkedHashMap<>();
+			for (final Map.Entry<String, ZipEntry> rf2Entry : rf2Entries.entrySet()) {
+				fileSizes.put(rf2Entry.getKey(), rf2Entry.getValue().getSize());
+			}
+			final List<String> filesToLoad = selectFilesToLoad(fileSizes, rf2FilesLoaded);
+			loadTables(filesToLoad, fileSizes, new FileSource() {
+				@Override
+				public InputStream open(final String rf2FileName) throws IOException {
+					final ZipFile zipFile = rf2EntryZips.get(rf2FileName);
+					final ZipEntry entry = rf2Entries.get(rf2FileName);
+					LOGGER.info("Streaming {} from {}", entry.getName(), zipFile.getName());
+					return zipFile.getInputStream(entry);
+				}
+			}, rf2FilesLoaded);
+			recordFailedFiles(filesToLoad, rf2FilesLoaded);
+		} finally {
+			for (final ZipFile zipFile : openedZipFiles) {
+				IOUtils.closeQuietly(zipFile);
 			}
 		}
 		final long end = System.currentTimeMillis();
-		LOGGER.info("Time taken to load in seconds " + (end-start)/1000);
+		LOGGER.info("Time taken to stream zip files into db in seconds " + (end-start)/1000);
 	}
-	
+
+	private ReleaseLoadScheduler getScheduler(final int localConcurrency) {
+		return scheduler != null ? scheduler : new ReleaseLoadScheduler(localConcurrency);
+	}
+
+	private void releaseScheduler(final ReleaseLoadScheduler loadScheduler, final ReleaseLoadScheduler.LoadRun run) {
+		loadScheduler.finishRun(run);
+		if (loadScheduler != scheduler) {
+			loadScheduler.shutdown();
+		}
+	}
+
+	private long getTotalSize(final Map<String, Long> fileSizes, final List<String> filesToLoad) {
+		long totalSize = 0;
+		for (final String rf2FileName : filesToLoad) {
+			totalSize += fileSizes.get(rf2FileName);
+		}
+		return totalSize;
+	}
+
+	private boolean isRF2TextFile(final String fileName) {
+		final String name = removeXPrefix(fileName);
+		return name.endsWith(".txt") && (name.startsWith("der2") || name.startsWith("sct2"));
+	}
+
+	static String removeXPrefix(final String fileName) {
+		return fileName.startsWith("x") ? fileName.substring(1) : fileName;
+	}
+
+	private String buildLoadDataSql(final String rf2FileName, final String rvfTableName, final boolean ignoreHeader) {
+		// the file name is ignored by the driver as the data is read from the local infile input stream
+		return "load data local infile '" + rf2FileName + "' into table " + rvfTableName
+				+ " columns terminated by '\\t' "
+				+ " lines terminated by '\\r\\n' "
+				+ (ignoreHeader ? " ignore 1 lines" : "");
+	}
+
+	/**
+	 * Splits a file into byte ranges of roughly chunkSize bytes, extending each range to the end of the line
+	 * so that no RF2 row is broken across two chunks.
+	 */
+	static List<long[]> splitIntoChunks(final File file, final long chunkSize) throws IOException {
+		final List<long[]> chunks = new ArrayList<>();
+		final long length = file.length();
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+			long chunkStart = 0;
+			while (chunkStart < length) {
+				long chunkEnd = Math.min(chunkStart + chunkSize, length);
+				if (chunkEnd < length) {
+					randomAccessFile.seek(chunkEnd);
+					int next;
+					while ((next = randomAccessFile.read()) != -1 && next != '\n') {
+						//read to the end of the current line
+					}
+					chunkEnd = randomAccessFile.getFilePointer();
+				}
+				chunks.add(new long[] {chunkStart, chunkEnd});
+				chunkStart = chunkEnd;
+			}
+		}
+		return chunks;
+	}
+
+	private static String getChunkTableName(final String rvfTableName, final int chunk) {
+		return rvfTableName + "_chunk" + chunk;
+	}
+
+	/**
+	 * Loads a byte range of a file into a new staging table shaped like the table.
+	 */
+	private long loadChunk(final File rf2File, final String rvfTableName, final String chunkTableName, final long chunkStart, final long chunkEnd,
+			final boolean isFirstChunk, final AtomicLong bytesRead) throws SQLException, IOException {
+		final String loadFile = buildLoadDataSql(rf2File.getName(), chunkTableName, isFirstChunk);
+		LOGGER.debug("Loading bytes {} to {} of {} into {}", chunkStart, chunkEnd, rf2File.getName(), chunkTableName);
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(rf2File, "r");
+			InputStream chunkInput = new ProgressInputStream(new BufferedInputStream(new BoundedInputStream(
+					Channels.newInputStream(randomAccessFile.getChannel().position(chunkStart)), chunkEnd - chunkStart)),
+					rf2File.getName(), rf2File.length(), bytesRead);
+			Connection connection = dataSource.getConnection(schemaName);
+			Statement statement = connection.createStatement()) {
+			statement.execute("SET bulk_insert_buffer_size = " + bulkInsertBufferSize);
+			statement.execute("drop table if exists " + chunkTableName);
+			statement.execute("create table " + chunkTableName + " like " + rvfTableName);
+			statement.execute("ALTER TABLE " + chunkTableName + " DISABLE KEYS");
+			statement.unwrap(com.mysql.jdbc.Statement.class).setLocalInfileInputStream(chunkInput);
+			return statement.executeUpdate(loadFile);
+		}
+	}
+
+	/**
+	 * @return the files that still need loading, files of tables completely loaded by an earlier attempt are added to
+	 * rf2FilesLoaded instead
+	 */
+	private List<String> selectFilesToLoad(final Map<String, Long> fileSizes, final List<String> rf2FilesLoaded) throws SQLException {
+		final List<String> result = new ArrayList<>(fileSizes.keySet());
+		if (completedFiles == null) {
+			return result;
+		}
+		final Map<String, List<String>> filesByTable = groupFilesByTable(result);
+		try (Connection connection = dataSource.getConnection(schemaName);
+			Statement statement = connection.createStatement()) {
+			for (final Map.Entry<String, List<String>> tableFiles : filesByTable.entrySet()) {
+				boolean isTableLoaded = true;
+				for (final String rf2FileName : tableFiles.getValue()) {
+					if (!fileSizes.get(rf2FileName).equals(completedFiles.get(rf2FileName))) {
+						isTableLoaded = false;
+						break;
+					}
+				}
+				if (isTableLoaded) {
+					LOGGER.info("Skipping {} already loaded into {}", tableFiles.getValue(), tableFiles.getKey());
+					result.removeAll(tableFiles.getValue());
+					rf2FilesLoaded.addAll(tableFiles.getValue());
+				} else {
+					// remove whatever the interrupted attempt left in the table
+					statement.execute("TRUNCATE TABLE " + tableFiles.getKey());
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the files keyed by the table they are loaded into, files that do not belong to any table are left out
+	 */
+	private Map<String, List<String>> groupFilesByTable(final List<String> rf2FileNames) {
+		final Map<String, List<String>> filesByTable = new LinkedHashMap<>();
+		for (final String rf2FileName : rf2FileNames) {
+			final String rvfTableName = RF2FileTableMapper.getLegacyTableName(rf2FileName);
+			if (rvfTableName == null) {
+				LOGGER.warn("No matching table name found for RF2 file:" + rf2FileName);
+				continue;
+			}
+			if (!filesByTable.containsKey(rvfTableName)) {
+				filesByTable.put(rvfTableName, new ArrayList<String>());
+			}
+			filesByTable.get(rvfTableName).add(rf2FileName);
+		}
+		return filesByTable;
+	}
+
+	private void recordFailedFiles(final List<String> filesToLoad, final List<String> rf2FilesLoaded) {
+		for (final String rf2FileName : filesToLoad) {
+			if (RF2FileTableMapper.getLegacyTableName(rf2FileName) != null && !rf2FilesLoaded.contains(rf2FileName)) {
+				failedFiles.add(rf2FileName);
+			}
+		}
+		if (!failedFiles.isEmpty()) {
+			LOGGER.error("Failed to load {} into schema {}", failedFiles, schemaName);
+		}
+	}
+
+	private void notifyFileLoaded(final String rf2FileName, final String rvfTableName, final long fileSize, final long rowsLoaded) {
+		if (loadListener != null) {
+			loadListener.fileLoaded(rf2FileName, rvfTableName, fileSize, rowsLoaded);
+		}
+	}
+
+	private void prepareTableForLoad(final Statement statement, final String rvfTableName) throws SQLException {
+		final List<String> indexedColumns = getProfiledColumns(rvfTableName);
+		if (indexedColumns == null) {
+			statement.execute("ALTER TABLE " + rvfTableName + " DISABLE KEYS;");
+			return;
+		}
+		// dropping the indexes of a new or truncated table costs nothing, the indexes of a table appended to are
+		// built again over all of its rows
+		final Set<String> indexNames = new LinkedHashSet<>();
+		try (ResultSet resultSet = statement.executeQuery("SHOW INDEX FROM " + rvfTableName)) {
+			while (resultSet.next()) {
+				final String indexName = resultSet.getString("Key_name");
+				if (!"PRIMARY".equals(indexName)) {
+					indexNames.add(indexName);
+				}
+			}
+		}
+		if (!indexNames.isEmpty()) {
+			final StringBuilder dropIndexes = new StringBuilder();
+			for (final String indexName : indexNames) {
+				dropIndexes.append(dropIndexes.length() == 0 ? "ALTER TABLE " + rvfTableName + " " : ", ");
+				dropIndexes.append("DROP INDEX " + indexName);
+			}
+			statement.execute(dropIndexes.toString());
+		}
+	}
+
+	private void buildIndexes(final Statement statement, final String rvfTableName) throws SQLException {
+		final List<String> indexedColumns = getProfiledColumns(rvfTableName);
+		statement.execute("SET SESSION myisam_sort_buffer_size = " + sortBufferSize);
+		if (indexedColumns == null) {
+			statement.execute("ALTER TABLE " + rvfTableName + " ENABLE KEYS;");
+		} else if (!indexedColumns.isEmpty()) {
+			// all indexes in one statement so that the data file is only read once
+			final StringBuilder addIndexes = new StringBuilder("ALTER TABLE " + rvfTableName);
+			for (int i = 0; i < indexedColumns.size(); i++) {
+				final String column = indexedColumns.get(i);
+				addIndexes.append(i == 0 ? " " : ", ");
+				addIndexes.append("ADD INDEX idx_" + column + "(" + column + ")");
+			}
+			statement.execute(addIndexes.toString());
+		}
+	}
+
+	private List<String> getProfiledColumns(final String rvfTableName) {
+		if (indexProfile == null) {
+			return null;
+		}
+		final int suffixIndex = rvfTableName.lastIndexOf('_');
+		final String tableType = suffixIndex == rvfTableName.length() - 2 ? rvfTableName.substring(0, suffixIndex) : rvfTableName;
+		return indexProfile.get(tableType);
+	}
+
+	/**
+	 * Adds the numbers of a load to those of earlier loads into the same table, e.g. when data is appended to a version.
+	 */
+	private synchronized void recordStatistics(final String rvfTableName, final long rows, final long loadMillis, final long indexMillis) {
+		final Map<String, Long> statistics = new LinkedHashMap<>();
+		final Map<String, Long> earlier = tableLoadStatistics.get(rvfTableName);
+		statistics.put(ROWS_LOADED, rows + (earlier == null ? 0 : earlier.get(ROWS_LOADED)));
+		statistics.put(LOAD_MILLIS, loadMillis + (earlier == null ? 0 : earlier.get(LOAD_MILLIS)));
+		statistics.put(INDEX_MILLIS, indexMillis + (earlier == null ? 0 : earlier.get(INDEX_MILLIS)));
+		tableLoadStatistics.put(rvfTableName, statistics);
+		LOGGER.info("Table {} loaded {} rows in {} ms and built indexes in {} ms", rvfTableName, rows, loadMillis, indexMillis);
+	}
+
 	/* "create table concept_d(\n" + 
 				"id bigint(20) not null,\n" + 
 				"effectivetime char(8) not null,\n" + 
@@ -166,7 +761,7 @@ public class ReleaseFileDataLoader {
 				.append("\n")
 				.append(")");
 		builder.append(" engine=myisam default charset=utf8;");
-		return builder.toString();
+		return storageProfile == null ? builder.toString() : storageProfile.applyToReleaseTables(builder.toString());
 	}
 
 	private boolean isFieldRequiredIndexing(final TableSchema tableSchema, final Field field) {
@@ -177,4 +772,91 @@ public class ReleaseFileDataLoader {
 		}
 		return true;
 	}
+
+	/**
+	 * Opens the files of a load, either from a folder or from the zips they are in.
+	 */
+	private interface FileSource {
+
+		InputStream open(String rf2FileName) throws IOException;
+	}
+
+	/**
+	 * The chunks of a file loaded in chunked mode, in the order of the file.
+	 */
+	private static class ChunkedFile {
+
+		private final String rf2FileName;
+		private final List<String> chunkTableNames = new ArrayList<>();
+		private final List<Future<Long>> chunkTasks = new ArrayList<>();
+		private long rows;
+		private boolean isLoaded = true;
+
+		ChunkedFile(final String rf2FileName) {
+			this.rf2FileName = rf2FileName;
+		}
+	}
+
+	/**
+	 * Callback for following the load of release files.
+	 */
+	public interface LoadListener {
+
+		/**
+		 * Called each time another whole percent of a file has been read into the database.
+		 */
+		void fileProgress(String rf2FileName, int percentLoaded);
+
+		/**
+		 * Called once a file has been completely loaded and the indexes of its table have been built.
+		 */
+		void fileLoaded(String rf2FileName, String rvfTableName, long fileSize, long rowsLoaded);
+	}
+
+	/**
+	 * Counts the bytes of a file read by the driver and reports every whole percent to the load listener. Chunks of
+	 * the same file share the counter.
+	 */
+	private class ProgressInputStream extends FilterInputStream {
+
+		private final String rf2FileName;
+		private final long fileSize;
+		private final AtomicLong bytesRead;
+
+		ProgressInputStream(final InputStream input, final String rf2FileName, final long fileSize, final AtomicLong bytesRead) {
+			super(input);
+			this.rf2FileName = rf2FileName;
+			this.fileSize = fileSize;
+			this.bytesRead = bytesRead;
+		}
+
+		@Override
+		public int read() throws IOException {
+			final int next = super.read();
+			if (next != -1) {
+				progress(1);
+			}
+			return next;
+		}
+
+		@Override
+		public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+			final int count = super.read(buffer, offset, length);
+			if (count > 0) {
+				progress(count);
+			}
+			return count;
+		}
+
+		private void progress(final long count) {
+			if (loadListener == null || fileSize <= 0) {
+				return;
+			}
+			final long total = bytesRead.addAndGet(count);
+			final long percent = Math.min(100, total * 100 / fileSize);
+			if (percent > (total - count) * 100 / fileSize) {
+				loadListener.fileProgress(rf2FileName, (int) percent);
+			}
+		}
+	}
 }
@@ -0,0 +1,196 @@
+package org.ihtsdo.rvf.execution.service.impl;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Service;
+
+/**
+ * Runs the LOAD DATA statements of all release loads on one bounded pool so that concurrent validations can not
+ * open more than maxConcurrentLoads streams between them. Every load registers a run with the number of bytes it
+ * has to load. Whenever a thread becomes free it takes the next pending load of the run with the fewest bytes left,
+ * so that the run closest to completion finishes first.
+ */
+@Service
+public class ReleaseLoadScheduler implements DisposableBean {
+
+	private final Logger logger = LoggerFactory.getLogger(ReleaseLoadScheduler.class);
+	private final List<LoadRun> runs = new ArrayList<>();
+	private final AtomicLong activeLoads = new AtomicLong();
+	private final AtomicLong completedLoads = new AtomicLong();
+	private final AtomicLong bytesLoaded = new AtomicLong();
+	private final AtomicLong loadMillis = new AtomicLong();
+	private ThreadPoolExecutor executor;
+	private int maxConcurrentLoads;
+
+	public ReleaseLoadScheduler() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	public ReleaseLoadScheduler(final int maxConcurrentLoads) {
+		setMaxConcurrentLoads(maxConcurrentLoads);
+	}
+
+	/**
+	 * @param maxConcurrentLoads the maximum number of LOAD DATA statements running at the same time across all loads
+	 */
+	public synchronized void setMaxConcurrentLoads(final int maxConcurrentLoads) {
+		this.maxConcurrentLoads = maxConcurrentLoads > 0 ? maxConcurrentLoads : 1;
+		if (executor == null) {
+			executor = new ThreadPoolExecutor(this.maxConcurrentLoads, this.maxConcurrentLoads, 60, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>());
+			executor.allowCoreThreadTimeOut(true);
+		} else if (this.maxConcurrentLoads > executor.getMaximumPoolSize()) {
+			executor.setMaximumPoolSize(this.maxConcurrentLoads);
+			executor.setCorePoolSize(this.maxConcurrentLoads);
+		} else {
+			executor.setCorePoolSize(this.maxConcurrentLoads);
+			executor.setMaximumPoolSize(this.maxConcurrentLoads);
+		}
+	}
+
+	/**
+	 * Registers a load. Call {@link #finishRun(LoadRun)} once all its loads have completed.
+	 * @param name a name for the load used in the metrics, e.g. the schema loaded into
+	 * @param totalBytes the number of bytes the load is going to read
+	 */
+	public synchronized LoadRun startRun(final String name, final long totalBytes) {
+		final LoadRun run = new LoadRun(name, totalBytes);
+		runs.add(run);
+		return run;
+	}
+
+	public synchronized void finishRun(final LoadRun run) {
+		runs.remove(run);
+		for (final FutureTask<?> pending : run.pendingLoads) {
+			pending.cancel(false);
+		}
+		run.pendingLoads.clear();
+	}
+
+	/**
+	 * Queues a load for the given run.
+	 * @param bytes the number of bytes the task loads, counted as done for the run once the task has finished
+	 */
+	public <T> Future<T> submit(final LoadRun run, final long bytes, final Callable<T> task) {
+		// the counters are updated before the future completes so that callers see them once they have the result
+		final FutureTask<T> future = new FutureTask<>(new Callable<T>() {
+			@Override
+			public T call() throws Exception {
+				activeLoads.incrementAndGet();
+				final long start = System.currentTimeMillis();
+				try {
+					return task.call();
+				} finally {
+					activeLoads.decrementAndGet();
+					completedLoads.incrementAndGet();
+					loadMillis.addAndGet(System.currentTimeMillis() - start);
+					bytesLoaded.addAndGet(bytes);
+					run.bytesDone.addAndGet(bytes);
+				}
+			}
+		});
+		synchronized (this) {
+			run.pendingLoads.add(future);
+		}
+		// each dispatcher picks whichever pending load has the highest priority at the time a thread is free
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				dispatchNext();
+			}
+		});
+		return future;
+	}
+
+	private void dispatchNext() {
+		final FutureTask<?> next;
+		synchronized (this) {
+			final LoadRun run = selectRun();
+			if (run == null) {
+				return;
+			}
+			next = run.pendingLoads.removeFirst();
+		}
+		next.run();
+	}
+
+	private LoadRun selectRun() {
+		LoadRun selected = null;
+		for (final LoadRun run : runs) {
+			if (!run.pendingLoads.isEmpty() && (selected == null || run.getBytesRemaining() < selected.getBytesRemaining())) {
+				selected = run;
+			}
+		}
+		return selected;
+	}
+
+	/**
+	 * @return the cap on concurrent loads, the loads running and queued, the runs in progress and the throughput
+	 */
+	public synchronized Map<String, Object> getMetrics() {
+		final Map<String, Object> metrics = new LinkedHashMap<>();
+		int queuedLoads = 0;
+		final Map<String, Long> bytesRemaining = new LinkedHashMap<>();
+		for (final LoadRun run : runs) {
+			queuedLoads += run.pendingLoads.size();
+			bytesRemaining.put(run.name, run.getBytesRemaining());
+		}
+		metrics.put("maxConcurrentLoads", maxConcurrentLoads);
+		metrics.put("activeLoads", activeLoads.get());
+		metrics.put("queuedLoads", queuedLoads);
+		metrics.put("completedLoads", completedLoads.get());
+		metrics.put("bytesLoaded", bytesLoaded.get());
+		// bytes per second of a single load stream, summed over the time spent loading
+		final long millis = loadMillis.get();
+		metrics.put("bytesPerSecondPerLoad", millis > 0 ? bytesLoaded.get() * 1000 / millis : 0);
+		metrics.put("bytesRemainingPerRun", bytesRemaining);
+		return metrics;
+	}
+
+	/**
+	 * Stops the pool once the loads already queued have run.
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		logger.info("Shutting down release load scheduler");
+		shutdown();
+	}
+
+	/**
+	 * The loads of one release load, e.g. all files loaded into one schema.
+	 */
+	public static class LoadRun {
+
+		private final String name;
+		private final long totalBytes;
+		private final AtomicLong bytesDone = new AtomicLong();
+		private final LinkedList<FutureTask<?>> pendingLoads = new LinkedList<>();
+
+		private LoadRun(final String name, final long totalBytes) {
+			this.name = name;
+			this.totalBytes = totalBytes;
+		}
+
+		public long getBytesRemaining() {
+			return Math.max(0, totalBytes - bytesDone.get());
+		}
+	}
+}
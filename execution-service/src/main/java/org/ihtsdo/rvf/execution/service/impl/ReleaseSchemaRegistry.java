@@ -0,0 +1,471 @@
+package org.ihtsdo.rvf.execution.service.impl;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Resource;
+
+import org.apache.commons.dbcp.BasicDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.stereotype.Service;
+
+/**
+ * A registry of the release schemas loaded by RVF. It is kept in the RVF master schema and records for each version
+ * the schema name, load state, row counts per table, load duration and the checksum of the source data so that
+ * known releases can be looked up at startup without scanning INFORMATION_SCHEMA.
+ * <p>
+ * Versions that are not completely loaded are owned by the RVF instance loading them, which refreshes their heartbeat
+ * every minute while it runs. Only versions whose heartbeat has stopped are ever purged, so that starting another
+ * instance against the same database does not drop the schemas an instance that is still running is loading.
+ */
+@Service
+public class ReleaseSchemaRegistry implements InitializingBean, DisposableBean {
+
+	public enum LoadState { LOADING, COMPLETE, FAILED }
+
+	private static final String REGISTRY_TABLE = "release_schema_registry";
+	private static final String TABLE_COUNT_TABLE = "release_schema_table_count";
+	private static final String FILE_CHECKPOINT_TABLE = "release_schema_file_checkpoint";
+	private static final long HEARTBEAT_INTERVAL_MILLIS = 60 * 1000L;
+	// a load is given up on once its owner missed this many heartbeats
+	private static final int MISSED_HEARTBEATS_BEFORE_STALE = 5;
+
+	private final Logger logger = LoggerFactory.getLogger(ReleaseSchemaRegistry.class);
+
+	@Resource(name = "dataSource")
+	private BasicDataSource dataSource;
+
+	@Resource(name = "snomedDataSource")
+	private BasicDataSource snomedDataSource;
+
+	private final String owner = ManagementFactory.getRuntimeMXBean().getName() + ":" + UUID.randomUUID();
+	private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor();
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		final String createRegistrySql = "create table if not exists " + REGISTRY_TABLE + "("
+				+ "version varchar(255) not null, "
+				+ "schema_name varchar(255) not null, "
+				+ "load_state varchar(16) not null, "
+				+ "source_checksum char(64), "
+				+ "ddl_version char(64), "
+				+ "load_duration_millis bigint, "
+				+ "updated_at timestamp default current_timestamp, "
+				+ "owner varchar(255), "
+				+ "heartbeat_at timestamp null, "
+				+ "primary key (version))";
+		final String createTableCountSql = "create table if not exists " + TABLE_COUNT_TABLE + "("
+				+ "version varchar(255) not null, "
+				+ "table_name varchar(64) not null, "
+				+ "row_count bigint not null, "
+				+ "primary key (version, table_name))";
+		final String createFileCheckpointSql = "create table if not exists " + FILE_CHECKPOINT_TABLE + "("
+				+ "version varchar(255) not null, "
+				+ "file_name varchar(255) not null, "
+				+ "table_name varchar(64) not null, "
+				+ "file_size bigint not null, "
+				+ "row_count bigint not null, "
+				+ "primary key (version, file_name))";
+		try (Connection connection = dataSource.getConnection();
+				Statement statement = connection.createStatement()) {
+			statement.execute(createRegistrySql);
+			statement.execute(createTableCountSql);
+			statement.execute(createFileCheckpointSql);
+			addOwnerColumns(statement);
+		}
+		heartbeat.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				refreshHeartbeat();
+			}
+		}, HEARTBEAT_INTERVAL_MILLIS, HEARTBEAT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		heartbeat.shutdownNow();
+	}
+
+	/**
+	 * Adds the owner columns to a registry created before they existed.
+	 */
+	private void addOwnerColumns(final Statement statement) throws SQLException {
+		try (ResultSet resultSet = statement.executeQuery("select count(*) from INFORMATION_SCHEMA.COLUMNS where table_schema = database()"
+				+ " and table_name = '" + REGISTRY_TABLE + "' and column_name = 'owner'")) {
+			if (resultSet.next() && resultSet.getLong(1) > 0) {
+				return;
+			}
+		}
+		statement.execute("alter table " + REGISTRY_TABLE + " add column owner varchar(255), add column heartbeat_at timestamp null");
+	}
+
+	/**
+	 * Tells the other instances that the versions this instance has not completely loaded are still in use.
+	 */
+	private void refreshHeartbeat() {
+		final String sql = "update " + REGISTRY_TABLE + " set heartbeat_at = ? where owner = ? and load_state <> ?";
+		try (Connection connection = dataSource.getConnection();
+				PreparedStatement statement = connection.prepareStatement(sql)) {
+			statement.setTimestamp(1, new Timestamp(System.currentTimeMillis()));
+			statement.setString(2, owner);
+			statement.setString(3, LoadState.COMPLETE.name());
+			statement.executeUpdate();
+		} catch (final SQLException e) {
+			logger.error("Failed to refresh heartbeat of release schemas owned by " + owner + " due to " + e.fillInStackTrace());
+		}
+	}
+
+	/**
+	 * @return the schema names of all versions in the given load state, keyed by version
+	 */
+	public Map<String, String> getSchemasByState(final LoadState state) {
+		final Map<String, String> result = new LinkedHashMap<>();
+		final String sql = "select version, schema_name from " + REGISTRY_TABLE + " where load_state = ?";
+		try (Connection connection = dataSource.getConnection();
+				PreparedStatement statement = connection.prepareStatement(sql)) {
+			statement.setString(1, state.name());
+			try (ResultSet resultSet = statement.executeQuery()) {
+				while (resultSet.next()) {
+					result.put(resultSet.getString(1), resultSet.getString(2));
+				}
+			}
+		} catch (final SQLException e) {
+			logger.error("Failed to read release schemas with state " + state + " from registry due to " + e.fillInStackTrace());
+		}
+		return result;
+	}
+
+	/**
+	 * @return the load state of the version or null when the version is not registered
+	 */
+	public LoadState getLoadState(final String version) {
+		final String sql = "select load_state from " + REGISTRY_TABLE + " where version = ?";
+		try (Connection connection = dataSource.getConnection();
+				PreparedStatement statement = connection.prepareStatement(sql)) {
+			statement.setString(1, version);
+			try (ResultSet resultSet = statement.executeQuery()) {
+				if (resultSet.next()) {
+					return LoadState.valueOf(resultSet.getString(1));
+				}
+			}
+		} catch (final SQLException e) {
+			logger.error("Failed to read load state of version " + version + " from registry due to " + e.fillInStackTrace());
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the checksum of the source data and the table definition version a completely loaded version was loaded with.
+	 * @return an array with the checksum and the ddl version or null when the version is not completely loaded
+	 */
+	public String[] getSourceChecksum(final String version) {
+		final String sql = "select source_checksum, ddl_version from " + REGISTRY_TABLE + " where version = ? and load_state = ?";
+		try (Connection connection = dataSource.getConnection();
+				PreparedStatement statement = connection.prepareStatement(sql)) {
+			statement.setString(1, version);
+			statement.setString(2, LoadState.COMPLETE.name());
+			try (ResultSet resultSet = statement.executeQuery()) {
+				if (resultSet.next()) {
+					return new String[] {resultSet.getString(1), resultSet.getString(2)};
+				}
+			}
+		} catch (final SQLException e) {
+			logger.error("Failed to read checksum of version " + version + " from registry due to " + e.fillInStackTrace());
+		}
+		return null;
+	}
+
+	/**
+	 * Records that a version starts loading from source data with the given checksum, which an attempt to resume the
+	 * load has to match.
+	 */
+	public void markLoading(final String version, final String schemaName, final String sourceChecksum, final String ddlVersion) {
+		try (Connection connection = dataSource.getConnection()) {
+			connection.setAutoCommit(false);
+			try {
+				deleteVersion(connection, version);
+				final String insertSql = "insert into " + REGISTRY_TABLE + " (version, schema_name, load_state, owner, heartbeat_at, source_checksum, ddl_version)"
+						+ " values (?, ?, ?, ?, ?, ?, ?)";
+				try (PreparedStatement statement = connection.prepareStatement(insertSql)) {
+					statement.setString(1, version);
+					statement.setString(2, schemaName);
+					statement.setString(3, LoadState.LOADING.name());
+					statement.setString(4, owner);
+					statement.setTimestamp(5, new Timestamp(System.currentTimeMillis()));
+					statement.setString(6, sourceChecksum);
+					statement.setString(7, ddlVersion);
+					statement.executeUpdate();
+				}
+				connection.commit();
+			} catch (final SQLException e) {
+				connection.rollback();
+				throw e;
+			}
+		} catch (final SQLException e) {
+			logger.error("Failed to register version " + version + " as loading due to " + e.fillInStackTrace());
+		}
+	}
+
+	/**
+	 * Takes over an incomplete load of a version to resume it.
+	 */
+	public void markResuming(final String version) {
+		final String sql = "update " + REGISTRY_TABLE + " set load_state = ?, owner = ?, heartbeat_at = ? where version = ?";
+		try (Connection connection = dataSource.getConnection();
+				PreparedStatement statement = connection.prepareStatement(sql)) {
+			statement.setString(1, LoadState.LOADING.name());
+			statement.setString(2, owner);
+			statement.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
+			statement.setString(4, version);
+			statement.executeUpdate();
+		} catch (final SQLException e) {
+			logger.error("Failed to register version " + version + " as resumed due to " + e.fillInStackTrace());
+		}
+	}
+
+	/**
+	 * Records a version as completely loaded together with the row counts of all its tables in one transaction.
+	 */
+	public void markComplete(final String version, final String schemaName, final List<String> tableNames, final long loadDurationMillis) {
+		final Map<String, Long> rowCounts = countRows(schemaName, tableNames);
+		try (Connection connection = dataSource.getConnection()) {
+			connection.setAutoCommit(false);
+			try {
+				deleteVersion(connection, version);
+				final String insertSql = "insert into " + REGISTRY_TABLE + " (version, schema_name, load_state, load_duration_millis) values (?, ?, ?, ?)";
+				try (PreparedStatement statement = connection.prepareStatement(insertSql)) {
+					statement.setString(1, version);
+					statement.setString(2, schemaName);
+					statement.setString(3, LoadState.COMPLETE.name());
+					statement.setLong(4, loadDurationMillis);
+					statement.executeUpdate();
+				}
+				final String countSql = "insert into " + TABLE_COUNT_TABLE + " (version, table_name, row_count) values (?, ?, ?)";
+				try (PreparedStatement statement = connection.prepareStatement(countSql)) {
+					for (final Map.Entry<String, Long> rowCount : rowCounts.entrySet()) {
+						statement.setString(1, version);
+						statement.setString(2, rowCount.getKey());
+						statement.setLong(3, rowCount.getValue());
+						statement.addBatch();
+					}
+					statement.executeBatch();
+				}
+				connection.commit();
+			} catch (final SQLException e) {
+				connection.rollback();
+				throw e;
+			}
+		} catch (final SQLException e) {
+			logger.error("Failed to register version " + version + " as complete due to " + e.fillInStackTrace());
+		}
+	}
+
+	/**
+	 * Records that the load of a version did not complete. The version stays owned by this instance, so its schema is
+	 * not purged while this instance is running.
+	 */
+	public void markFailed(final String version) {
+		updateState(version, LoadState.FAILED);
+	}
+
+	/**
+	 * Returns the RF2 files that were completely loaded by an earlier attempt to load the version into the given schema
+	 * which did not complete, so that loading can resume from there. The earlier attempt must have loaded source data
+	 * with the same checksum using the same table definitions, as a file can change without changing its size.
+	 * @return the sizes of the loaded files keyed by file name or null when the version can not be resumed
+	 */
+	public Map<String, Long> getResumableFiles(final String version, final String schemaName, final String sourceChecksum, final String ddlVersion) {
+		if (sourceChecksum == null || ddlVersion == null) {
+			return null;
+		}
+		final String stateSql = "select schema_name, load_state, source_checksum, ddl_version from " + REGISTRY_TABLE + " where version = ?";
+		final String checkpointSql = "select file_name, file_size from " + FILE_CHECKPOINT_TABLE + " where version = ?";
+		try (Connection connection = dataSource.getConnection()) {
+			try (PreparedStatement statement = connection.prepareStatement(stateSql)) {
+				statement.setString(1, version);
+				try (ResultSet resultSet = statement.executeQuery()) {
+					if (!resultSet.next() || !schemaName.equals(resultSet.getString(1))
+							|| LoadState.COMPLETE.name().equals(resultSet.getString(2))
+							|| !sourceChecksum.equals(resultSet.getString(3)) || !ddlVersion.equals(resultSet.getString(4))) {
+						return null;
+					}
+				}
+			}
+			final Map<String, Long> result = new LinkedHashMap<>();
+			try (PreparedStatement statement = connection.prepareStatement(checkpointSql)) {
+				statement.setString(1, version);
+				try (ResultSet resultSet = statement.executeQuery()) {
+					while (resultSet.next()) {
+						result.put(resultSet.getString(1), resultSet.getLong(2));
+					}
+				}
+			}
+			return result.isEmpty() ? null : result;
+		} catch (final SQLException e) {
+			logger.error("Failed to read load checkpoints of version " + version + " due to " + e.fillInStackTrace());
+			return null;
+		}
+	}
+
+	/**
+	 * Records that an RF2 file has been completely loaded while the version is loading.
+	 */
+	public void markFileLoaded(final String version, final String fileName, final String tableName, final long fileSize, final long rowCount) {
+		final String checkpointSql = "replace into " + FILE_CHECKPOINT_TABLE + " (version, file_name, table_name, file_size, row_count) values (?, ?, ?, ?, ?)";
+		final String touchSql = "update " + REGISTRY_TABLE + " set updated_at = ?, heartbeat_at = ?, load_state = ?, owner = ? where version = ?";
+		try (Connection connection = dataSource.getConnection()) {
+			try (PreparedStatement statement = connection.prepareStatement(checkpointSql)) {
+				statement.setString(1, version);
+				statement.setString(2, fileName);
+				statement.setString(3, tableName);
+				statement.setLong(4, fileSize);
+				statement.setLong(5, rowCount);
+				statement.executeUpdate();
+			}
+			try (PreparedStatement statement = connection.prepareStatement(touchSql)) {
+				final Timestamp now = new Timestamp(System.currentTimeMillis());
+				statement.setTimestamp(1, now);
+				statement.setTimestamp(2, now);
+				statement.setString(3, LoadState.LOADING.name());
+				statement.setString(4, owner);
+				statement.setString(5, version);
+				statement.executeUpdate();
+			}
+		} catch (final SQLException e) {
+			logger.error("Failed to record checkpoint for file " + fileName + " of version " + version + " due to " + e.fillInStackTrace());
+		}
+	}
+
+	/**
+	 * Records the checksum of the source data and the version of the table definitions used to load a version.
+	 */
+	public void updateSourceChecksum(final String version, final String checksum, final String ddlVersion) {
+		final String sql = "update " + REGISTRY_TABLE + " set source_checksum = ?, ddl_version = ? where version = ?";
+		try (Connection connection = dataSource.getConnection();
+				PreparedStatement statement = connection.prepareStatement(sql)) {
+			statement.setString(1, checksum);
+			statement.setString(2, ddlVersion);
+			statement.setString(3, version);
+			statement.executeUpdate();
+		} catch (final SQLException e) {
+			logger.error("Failed to record checksum for version " + version + " due to " + e.fillInStackTrace());
+		}
+	}
+
+	public void remove(final String version) {
+		try (Connection connection = dataSource.getConnection()) {
+			connection.setAutoCommit(false);
+			try {
+				deleteVersion(connection, version);
+				connection.commit();
+			} catch (final SQLException e) {
+				connection.rollback();
+				throw e;
+			}
+		} catch (final SQLException e) {
+			logger.error("Failed to remove version " + version + " from registry due to " + e.fillInStackTrace());
+		}
+	}
+
+	/**
+	 * Drops the schemas of all versions whose load never completed and whose owner stopped refreshing their heartbeat,
+	 * and removes them from the registry. Versions that checkpointed a loaded file within the resume window are kept so
+	 * that a retry can resume loading them.
+	 * @param resumeWindowMillis how long an incomplete load stays resumable, 0 or less purges all stale ones
+	 * @return the versions that have been purged
+	 */
+	public List<String> purgeIncompleteSchemas(final long resumeWindowMillis) {
+		final List<String> purged = new ArrayList<>();
+		final Map<String, String> incomplete = new LinkedHashMap<>();
+		final String sql = "select version, schema_name from " + REGISTRY_TABLE + " where load_state <> ?"
+				+ " and (owner is null or owner <> ?) and (heartbeat_at is null or heartbeat_at < ?)"
+				+ " and (updated_at < ? or not exists (select 1 from " + FILE_CHECKPOINT_TABLE + " c where c.version = " + REGISTRY_TABLE + ".version))";
+		final long now = System.currentTimeMillis();
+		try (Connection connection = dataSource.getConnection();
+				PreparedStatement statement = connection.prepareStatement(sql)) {
+			statement.setString(1, LoadState.COMPLETE.name());
+			statement.setString(2, owner);
+			statement.setTimestamp(3, new Timestamp(now - HEARTBEAT_INTERVAL_MILLIS * MISSED_HEARTBEATS_BEFORE_STALE));
+			statement.setTimestamp(4, new Timestamp(now - Math.max(resumeWindowMillis, 0)));
+			try (ResultSet resultSet = statement.executeQuery()) {
+				while (resultSet.next()) {
+					incomplete.put(resultSet.getString(1), resultSet.getString(2));
+				}
+			}
+		} catch (final SQLException e) {
+			logger.error("Failed to read incomplete release schemas from registry due to " + e.fillInStackTrace());
+		}
+		for (final Map.Entry<String, String> entry : incomplete.entrySet()) {
+			logger.warn("Purging partially loaded schema {} for version {}", entry.getValue(), entry.getKey());
+			try (Connection connection = snomedDataSource.getConnection();
+					Statement statement = connection.createStatement()) {
+				statement.execute("drop database if exists " + entry.getValue());
+				remove(entry.getKey());
+				purged.add(entry.getKey());
+			} catch (final SQLException e) {
+				logger.error("Failed to purge schema " + entry.getValue() + " due to " + e.fillInStackTrace());
+			}
+		}
+		return purged;
+	}
+
+	private void updateState(final String version, final LoadState state) {
+		final String sql = "update " + REGISTRY_TABLE + " set load_state = ? where version = ?";
+		try (Connection connection = dataSource.getConnection();
+				PreparedStatement statement = connection.prepareStatement(sql)) {
+			statement.setString(1, state.name());
+			statement.setString(2, version);
+			statement.executeUpdate();
+		} catch (final SQLException e) {
+			logger.error("Failed to update state of version " + version + " to " + state + " due to " + e.fillInStackTrace());
+		}
+	}
+
+	private void deleteVersion(final Connection connection, final String version) throws SQLException {
+		try (PreparedStatement statement = connection.prepareStatement("delete from " + FILE_CHECKPOINT_TABLE + " where version = ?")) {
+			statement.setString(1, version);
+			statement.executeUpdate();
+		}
+		try (PreparedStatement statement = connection.prepareStatement("delete from " + TABLE_COUNT_TABLE + " where version = ?")) {
+			statement.setString(1, version);
+			statement.executeUpdate();
+		}
+		try (PreparedStatement statement = connection.prepareStatement("delete from " + REGISTRY_TABLE + " where version = ?")) {
+			statement.setString(1, version);
+			statement.executeUpdate();
+		}
+	}
+
+	private Map<String, Long> countRows(final String schemaName, final List<String> tableNames) {
+		final Map<String, Long> rowCounts = new LinkedHashMap<>();
+		try (Connection connection = snomedDataSource.getConnection();
+				Statement statement = connection.createStatement()) {
+			for (final String tableName : tableNames) {
+				try (ResultSet resultSet = statement.executeQuery("select count(*) from " + schemaName + "." + tableName)) {
+					if (resultSet.next()) {
+						rowCounts.put(tableName, resultSet.getLong(1));
+					}
+				}
+			}
+		} catch (final SQLException e) {
+			logger.error("Failed to count rows in schema " + schemaName + " due to " + e.fillInStackTrace());
+		}
+		return rowCounts;
+	}
+}
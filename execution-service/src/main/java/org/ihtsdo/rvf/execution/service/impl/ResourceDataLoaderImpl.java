@@ -7,6 +7,7 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.StringReader;
 import java.io.Writer;
 import java.nio.file.Files;
 import java.sql.Connection;
@@ -27,6 +28,8 @@ public class ResourceDataLoaderImpl implements ResourceDataLoader {
 	private static final String UTF_8 = "UTF-8";
 	@Autowired
 	RvfDynamicDataSource rvfDynamicDataSource;
+	@Autowired
+	StorageProfile storageProfile;
 	private static final Logger LOGGER = LoggerFactory.getLogger(ResourceDataLoaderImpl.class);
 	
 	@Override
@@ -35,8 +38,7 @@ public class ResourceDataLoaderImpl implements ResourceDataLoader {
 			try (final Connection connection = rvfDynamicDataSource.getConnection(schemaName)) {
 				final ScriptRunner runner = new ScriptRunner(connection);
 				try (InputStream input = getClass().getResourceAsStream("/sql/create-resource-tables.sql")) {
-
-					runner.runScript(new InputStreamReader(input));
+					runner.runScript(new StringReader(storageProfile.applyToResourceTables(IOUtils.toString(input, UTF_8))));
 				} 
 				
 				final File temp = File.createTempFile("load-resource-data.txt", null);
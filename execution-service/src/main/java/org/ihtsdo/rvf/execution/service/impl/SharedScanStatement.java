@@ -0,0 +1,193 @@
+package org.ihtsdo.rvf.execution.service.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * A row level assertion statement of the form
+ * <pre>insert into qa_result (columns) select &lt;values&gt; from table alias where &lt;predicate&gt;</pre>
+ * without joins, grouping or unions. The statements of assertions that read the same table this way can be fused into
+ * a single statement that scans the table once, evaluates all predicates and inserts each violation with the values of
+ * the assertion it belongs to.
+ */
+public class SharedScanStatement {
+
+	private static final Pattern COMMENT_PATTERN = Pattern.compile("/\\*.*?\\*/", Pattern.DOTALL);
+	private static final String[] UNSUPPORTED_KEYWORDS = {"join", "group", "having", "union", "order", "limit"};
+	private static final String SCAN_ALIAS = "shared_scan";
+
+	private final String target;
+	private final String columns;
+	private final List<String> values;
+	private final String table;
+	private final String alias;
+	private final String predicate;
+
+	private SharedScanStatement(final String target, final String columns, final List<String> values, final String table,
+			final String alias, final String predicate) {
+		this.target = target;
+		this.columns = columns;
+		this.values = values;
+		this.table = table;
+		this.alias = alias;
+		this.predicate = predicate;
+	}
+
+	/**
+	 * @return the parsed statement or null when the statement is not a row level check on a single table
+	 */
+	public static SharedScanStatement parse(final String sql) {
+		final String statement = COMMENT_PATTERN.matcher(sql).replaceAll(" ").replaceAll("\\s+", " ").trim();
+		if (!startsWithKeywords(statement, "insert into ") || statement.contains(";")) {
+			return null;
+		}
+		final int columnsStart = statement.indexOf('(');
+		final int selectStart = indexOfKeyword(statement, "select", 0);
+		if (columnsStart < 0 || selectStart < columnsStart) {
+			return null;
+		}
+		final int columnsEnd = statement.lastIndexOf(')', selectStart);
+		final int fromStart = indexOfKeyword(statement, "from", selectStart);
+		final int whereStart = indexOfKeyword(statement, "where", fromStart);
+		if (columnsEnd < columnsStart || fromStart < 0 || whereStart < 0) {
+			return null;
+		}
+		for (final String keyword : UNSUPPORTED_KEYWORDS) {
+			if (indexOfKeyword(statement, keyword, selectStart) >= 0) {
+				return null;
+			}
+		}
+		final String[] source = statement.substring(fromStart + "from".length(), whereStart).trim().split(" ");
+		if (source.length < 2 || source.length > 3 || source.length == 3 && !source[1].equalsIgnoreCase("as") || source[0].contains(",")) {
+			return null;
+		}
+		final List<String> values = splitTopLevel(statement.substring(selectStart + "select".length(), fromStart));
+		if (values.isEmpty()) {
+			return null;
+		}
+		final String target = statement.substring("insert into ".length(), columnsStart).trim();
+		final String columns = statement.substring(columnsStart + 1, columnsEnd).trim();
+		final String predicate = statement.substring(whereStart + "where".length()).trim();
+		return new SharedScanStatement(target, columns, values, source[0], source[source.length - 1], predicate);
+	}
+
+	/**
+	 * @return the key shared by statements that can be fused, i.e. that insert the same columns into the same table
+	 * and scan the same table under the same alias
+	 */
+	public String getScanKey() {
+		return (target + "|" + columns.replace(" ", "") + "|" + values.size() + "|" + table + "|" + alias).toLowerCase();
+	}
+
+	public String getTable() {
+		return table;
+	}
+
+	/**
+	 * Builds the statement scanning the table once for all given statements, which must all have the same scan key.
+	 * The table is joined with one row per statement in that order so that MySQL reads each row of the table once and
+	 * checks it against every predicate.
+	 */
+	public static String fuse(final List<SharedScanStatement> statements) {
+		final SharedScanStatement first = statements.get(0);
+		final StringBuilder sql = new StringBuilder();
+		sql.append("insert into ").append(first.target).append(" (").append(first.columns).append(") select ");
+		for (int i = 0; i < first.values.size(); i++) {
+			sql.append(i == 0 ? "" : ", ").append("case ").append(SCAN_ALIAS).append(".n");
+			for (int j = 0; j < statements.size(); j++) {
+				sql.append(" when ").append(j).append(" then ").append(statements.get(j).values.get(i));
+			}
+			sql.append(" end");
+		}
+		sql.append(" from ").append(first.table).append(' ').append(first.alias).append(" straight_join (");
+		for (int j = 0; j < statements.size(); j++) {
+			sql.append(j == 0 ? "select 0 as n" : " union all select " + j);
+		}
+		sql.append(") ").append(SCAN_ALIAS).append(" where ");
+		for (int j = 0; j < statements.size(); j++) {
+			sql.append(j == 0 ? "" : " or ").append('(').append(SCAN_ALIAS).append(".n = ").append(j)
+					.append(" and (").append(statements.get(j).predicate).append("))");
+		}
+		return sql.toString();
+	}
+
+	/**
+	 * Caps the number of rows an <pre>insert into ... select</pre> statement inserts so that MySQL can stop reading
+	 * once it has found them.
+	 * @return the statement with a limit on the select or the statement itself when it has no select or already ends
+	 * in a limit or an on duplicate key clause
+	 */
+	public static String withRowLimit(final String statement, final long maxRows) {
+		final int selectStart = indexOfKeyword(statement, "select", 0);
+		if (selectStart < 0 || indexOfKeyword(statement, "limit", selectStart) >= 0 || indexOfKeyword(statement, "duplicate", selectStart) >= 0) {
+			return statement;
+		}
+		// on a new line in case the statement ends in a line comment
+		return statement + "\nlimit " + maxRows;
+	}
+
+	private static boolean startsWithKeywords(final String statement, final String keywords) {
+		return statement.regionMatches(true, 0, keywords, 0, keywords.length());
+	}
+
+	/**
+	 * @return the position of the keyword outside of any quotes and brackets or -1
+	 */
+	private static int indexOfKeyword(final String statement, final String keyword, final int start) {
+		if (start < 0) {
+			return -1;
+		}
+		int depth = 0;
+		char quote = 0;
+		for (int i = start; i < statement.length(); i++) {
+			final char c = statement.charAt(i);
+			if (quote != 0) {
+				if (c == quote) {
+					quote = 0;
+				}
+			} else if (c == '\'' || c == '"' || c == '`') {
+				quote = c;
+			} else if (c == '(') {
+				depth++;
+			} else if (c == ')') {
+				depth--;
+			} else if (depth == 0 && statement.regionMatches(true, i, keyword, 0, keyword.length())
+					&& (i == 0 || !isWordCharacter(statement.charAt(i - 1)))
+					&& (i + keyword.length() == statement.length() || !isWordCharacter(statement.charAt(i + keyword.length())))) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static boolean isWordCharacter(final char c) {
+		return Character.isLetterOrDigit(c) || c == '_';
+	}
+
+	private static List<String> splitTopLevel(final String selectList) {
+		final List<String> values = new ArrayList<>();
+		int depth = 0;
+		char quote = 0;
+		int valueStart = 0;
+		for (int i = 0; i < selectList.length(); i++) {
+			final char c = selectList.charAt(i);
+			if (quote != 0) {
+				if (c == quote) {
+					quote = 0;
+				}
+			} else if (c == '\'' || c == '"' || c == '`') {
+				quote = c;
+			} else if (c == '(') {
+				depth++;
+			} else if (c == ')') {
+				depth--;
+			} else if (c == ',' && depth == 0) {
+				values.add(selectList.substring(valueStart, i).trim());
+				valueStart = i + 1;
+			}
+		}
+		values.add(selectList.substring(valueStart).trim());
+		return values;
+	}
+}
@@ -0,0 +1,170 @@
+package org.ihtsdo.rvf.execution.service.impl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * The storage engine and physical layout used for the tables RVF creates, configured per deployment. Release tables,
+ * resource tables, temporary tables created by assertions and while merging, and the assertion result table each
+ * have their own engine and table options, e.g. MyISAM, InnoDB with ROW_FORMAT=COMPRESSED, MEMORY or Aria. The column
+ * types of the release tables can be overridden by column name.
+ */
+@Service
+public class StorageProfile {
+
+	private static final String DEFAULT_ENGINE = "MyISAM";
+	private static final Pattern ENGINE_PATTERN = Pattern.compile("engine\\s*=\\s*myisam", Pattern.CASE_INSENSITIVE);
+	private static final String MEMORY_ENGINE = "MEMORY";
+	// column types the MEMORY engine can not store
+	private static final Pattern LARGE_OBJECT_PATTERN = Pattern.compile("\\b(tiny|medium|long)?(text|blob)\\b", Pattern.CASE_INSENSITIVE);
+
+	private final Logger logger = LoggerFactory.getLogger(StorageProfile.class);
+	private String releaseEngine = DEFAULT_ENGINE;
+	private String releaseTableOptions;
+	private String resourceEngine = DEFAULT_ENGINE;
+	private String temporaryEngine = DEFAULT_ENGINE;
+	private String resultEngine;
+	private String resultTableOptions;
+	private final Map<String, String> releaseColumnTypes = new LinkedHashMap<>();
+
+	/**
+	 * Applies the release table engine, options and column types to the create table statements of a release schema.
+	 */
+	public String applyToReleaseTables(final String ddl) {
+		String result = ENGINE_PATTERN.matcher(ddl).replaceAll(Matcher.quoteReplacement(getTableClause(releaseEngine, releaseTableOptions)));
+		for (final Map.Entry<String, String> columnType : releaseColumnTypes.entrySet()) {
+			// column definitions are written one per line as "<name> <type> not null"
+			final Pattern columnPattern = Pattern.compile("(?im)^(\\s*" + Pattern.quote(columnType.getKey()) + "\\s+)\\S+(\\s+not null)");
+			result = columnPattern.matcher(result).replaceAll("$1" + Matcher.quoteReplacement(columnType.getValue()) + "$2");
+		}
+		return result;
+	}
+
+	public String applyToResourceTables(final String ddl) {
+		return ENGINE_PATTERN.matcher(ddl).replaceAll(Matcher.quoteReplacement(getTableClause(resourceEngine, null)));
+	}
+
+	/**
+	 * @return the table clause appended to the tables assertions create and to temporary tables
+	 */
+	public String getTemporaryTableClause() {
+		return getTableClause(temporaryEngine, null);
+	}
+
+	/**
+	 * @param tableDefinition the create table statement or the column definitions of the table
+	 * @return the temporary table clause, MyISAM when the engine is MEMORY and the table has TEXT or BLOB columns
+	 */
+	public String getTemporaryTableClause(final String tableDefinition) {
+		if (MEMORY_ENGINE.equalsIgnoreCase(temporaryEngine) && tableDefinition != null && LARGE_OBJECT_PATTERN.matcher(tableDefinition).find()) {
+			return getTableClause(DEFAULT_ENGINE, null);
+		}
+		return getTemporaryTableClause();
+	}
+
+	/**
+	 * @return the temporary table clause for a table holding the given release table columns with their configured types
+	 */
+	public String getTemporaryTableClauseForReleaseColumns(final String... columnNames) {
+		final StringBuilder columnTypes = new StringBuilder();
+		for (final String columnName : columnNames) {
+			if (releaseColumnTypes.containsKey(columnName)) {
+				columnTypes.append(columnName).append(' ').append(releaseColumnTypes.get(columnName)).append(", ");
+			}
+		}
+		return getTemporaryTableClause(columnTypes.toString());
+	}
+
+	/**
+	 * Converts the result table to the configured engine if it is not using it yet. Nothing is done when no result
+	 * engine is configured so that the table keeps the layout it has been created with.
+	 */
+	public void applyToResultTable(final DataSource dataSource, final String tableName) {
+		if (isBlank(resultEngine)) {
+			return;
+		}
+		final String sql = "select engine from INFORMATION_SCHEMA.TABLES where table_schema = database() and table_name = ?";
+		try (Connection connection = dataSource.getConnection();
+				PreparedStatement statement = connection.prepareStatement(sql)) {
+			statement.setString(1, tableName);
+			try (ResultSet resultSet = statement.executeQuery()) {
+				if (!resultSet.next()) {
+					logger.warn("Table {} does not exist yet and is left with its default engine", tableName);
+					return;
+				}
+				if (resultEngine.equalsIgnoreCase(resultSet.getString(1)) && isBlank(resultTableOptions)) {
+					return;
+				}
+			}
+			logger.info("Converting table {} to {}", tableName, getTableClause(resultEngine, resultTableOptions));
+			try (Statement alterStatement = connection.createStatement()) {
+				alterStatement.execute("alter table " + tableName + " " + getTableClause(resultEngine, resultTableOptions));
+			}
+		} catch (final SQLException e) {
+			logger.error("Failed to apply storage profile to table " + tableName + " due to " + e.fillInStackTrace());
+		}
+	}
+
+	private String getTableClause(final String engine, final String tableOptions) {
+		return "engine=" + engine + (isBlank(tableOptions) ? "" : " " + tableOptions.trim());
+	}
+
+	private boolean isBlank(final String value) {
+		return value == null || value.trim().isEmpty();
+	}
+
+	public void setReleaseEngine(final String releaseEngine) {
+		this.releaseEngine = isBlank(releaseEngine) ? DEFAULT_ENGINE : releaseEngine.trim();
+	}
+
+	/**
+	 * @param releaseTableOptions table options added after the engine, e.g. ROW_FORMAT=COMPRESSED KEY_BLOCK_SIZE=8
+	 */
+	public void setReleaseTableOptions(final String releaseTableOptions) {
+		this.releaseTableOptions = releaseTableOptions;
+	}
+
+	/**
+	 * @param releaseColumnTypes semicolon separated column=type pairs, e.g. effectivetime=date;active=tinyint(1)
+	 */
+	public void setReleaseColumnTypes(final String releaseColumnTypes) {
+		this.releaseColumnTypes.clear();
+		if (releaseColumnTypes != null) {
+			for (final String columnType : releaseColumnTypes.split(";")) {
+				final int separator = columnType.indexOf('=');
+				if (separator > 0) {
+					this.releaseColumnTypes.put(columnType.substring(0, separator).trim(), columnType.substring(separator + 1).trim());
+				}
+			}
+		}
+	}
+
+	public void setResourceEngine(final String resourceEngine) {
+		this.resourceEngine = isBlank(resourceEngine) ? DEFAULT_ENGINE : resourceEngine.trim();
+	}
+
+	public void setTemporaryEngine(final String temporaryEngine) {
+		this.temporaryEngine = isBlank(temporaryEngine) ? DEFAULT_ENGINE : temporaryEngine.trim();
+	}
+
+	public void setResultEngine(final String resultEngine) {
+		this.resultEngine = resultEngine == null ? null : resultEngine.trim();
+	}
+
+	public void setResultTableOptions(final String resultTableOptions) {
+		this.resultTableOptions = resultTableOptions;
+	}
+}
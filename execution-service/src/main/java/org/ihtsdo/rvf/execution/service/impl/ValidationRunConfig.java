@@ -18,6 +18,8 @@ public class ValidationRunConfig {
 	private String storageLocation;
 	private String url;
 	private Integer failureExportMax;
+	private boolean stopAtFailureExportMax;
+	private Integer structureFailureExampleMax;
 	private String manifestFileFullPath;
 	private String s3ExecutionBucketName;
 	private String prospectiveFileFullPath;
@@ -82,6 +84,26 @@ public class ValidationRunConfig {
 	public void setFailureExportMax(final Integer failureExportMax) {
 		this.failureExportMax = failureExportMax;
 	}
+	public ValidationRunConfig addStopAtFailureExportMax(final boolean stopAtFailureExportMax) {
+		this.stopAtFailureExportMax = stopAtFailureExportMax;
+		return this;
+	}
+	public boolean isStopAtFailureExportMax() {
+		return stopAtFailureExportMax;
+	}
+	public void setStopAtFailureExportMax(final boolean stopAtFailureExportMax) {
+		this.stopAtFailureExportMax = stopAtFailureExportMax;
+	}
+	public ValidationRunConfig addStructureFailureExampleMax(final Integer structureFailureExampleMax) {
+		this.structureFailureExampleMax = structureFailureExampleMax;
+		return this;
+	}
+	public Integer getStructureFailureExampleMax() {
+		return structureFailureExampleMax;
+	}
+	public void setStructureFailureExampleMax(final Integer structureFailureExampleMax) {
+		this.structureFailureExampleMax = structureFailureExampleMax;
+	}
 	public Long getRunId() {
 		return runId;
 	}
@@ -11,15 +11,20 @@ import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.codec.DecoderException;
 import org.apache.commons.io.FileUtils;
@@ -50,6 +55,8 @@ public class ValidationRunner {
 
 	public static final String FAILURE_MESSAGE = "failureMessage";
 
+	private static final String CONCURRENCY_LIMIT_CHANGES = "concurrencyLimitChanges";
+
 	private final Logger logger = LoggerFactory.getLogger(ValidationRunner.class);
 	
 	@Autowired
@@ -66,16 +73,66 @@ public class ValidationRunner {
 	
 	private int batchSize = 0;
 
-	private ExecutorService executorService = Executors.newCachedThreadPool();
+	private int maxConcurrentAssertions = Runtime.getRuntime().availableProcessors();
+
+	private int minConcurrentAssertions;
+
+	private double concurrencySlowdownTolerance = 2.0;
+
+	private boolean sharedScanEnabled;
+
+	private boolean deferResultExtraction;
 	@Autowired
 	private ValidationReportService reportService;
 	
 	@Autowired
 	ValidationVersionLoader releaseVersionLoader;
+
+	@Autowired
+	private AssertionRuntimeHistory runtimeHistory;
 	
 	public ValidationRunner( int batchSize) {
 		this.batchSize = batchSize;
 	}
+
+	/**
+	 * @param maxConcurrentAssertions the number of assertions running at the same time when the batch size is not 0
+	 */
+	public void setMaxConcurrentAssertions(final int maxConcurrentAssertions) {
+		this.maxConcurrentAssertions = maxConcurrentAssertions > 0 ? maxConcurrentAssertions : 1;
+	}
+
+	/**
+	 * @param minConcurrentAssertions the number of assertions running at the same time to start from, the number
+	 * then adapts between this and maxConcurrentAssertions, 0 always runs maxConcurrentAssertions
+	 */
+	public void setMinConcurrentAssertions(final int minConcurrentAssertions) {
+		this.minConcurrentAssertions = minConcurrentAssertions;
+	}
+
+	/**
+	 * @param concurrencySlowdownTolerance the ratio of actual to expected assertion run times up to which more
+	 * assertions are run at the same time
+	 */
+	public void setConcurrencySlowdownTolerance(final double concurrencySlowdownTolerance) {
+		this.concurrencySlowdownTolerance = concurrencySlowdownTolerance;
+	}
+
+	/**
+	 * @param sharedScanEnabled when true independent row level checks on the same table are fused into a single scan
+	 * of the table when running in dependency order, unless the run stops at the number of failures to export
+	 */
+	public void setSharedScanEnabled(final boolean sharedScanEnabled) {
+		this.sharedScanEnabled = sharedScanEnabled;
+	}
+
+	/**
+	 * @param deferResultExtraction when true the failures of all assertions are extracted in a single pass over the
+	 * results once all assertions have run
+	 */
+	public void setDeferResultExtraction(final boolean deferResultExtraction) {
+		this.deferResultExtraction = deferResultExtraction;
+	}
 	
 	public void run(ValidationRunConfig validationConfig) {
 		final Map<String , Object> responseMap = new LinkedHashMap<>();
@@ -122,7 +179,8 @@ public class ValidationRunner {
 		}
 		
 		boolean isFailed = structuralTestRunner.verifyZipFileStructure(responseMap, validationConfig.getLocalProspectiveFile(), validationConfig.getRunId(), 
-				validationConfig.getLocalManifestFile(), validationConfig.isWriteSucceses(), validationConfig.getUrl(), validationConfig.getStorageLocation());
+				validationConfig.getLocalManifestFile(), validationConfig.isWriteSucceses(), validationConfig.getUrl(), validationConfig.getStorageLocation(),
+				validationConfig.getStructureFailureExampleMax());
 		reportService.putFileIntoS3(reportStorage, new File(structuralTestRunner.getStructureTestReportFullPath()));
 		if (isFailed) {
 			reportService.writeResults(responseMap, State.FAILED, reportStorage);
@@ -184,14 +242,14 @@ public class ValidationRunner {
 			}
 		}
 		logger.debug("Running release-type validations:" + releaseTypeAssertions.size());
-		List<TestRunItem> testItems = runAssertionTests(executionConfig, releaseTypeAssertions,reportStorage,false);
+		List<TestRunItem> testItems = runAssertionTests(executionConfig, responseMap, releaseTypeAssertions, reportStorage, false);
 		String prospectiveExtensionVersion = executionConfig.getProspectiveVersion();
 		//loading international snapshot
 		releaseVersionLoader.combineCurrenExtensionWithDependencySnapshot(executionConfig, responseMap, validationConfig);
 		releaseDataManager.dropVersion(prospectiveExtensionVersion);
 		//run remaining component-centric and file-centric validaitons
 		assertions.removeAll(releaseTypeAssertions);
-		testItems.addAll(runAssertionTests(executionConfig, assertions, reportStorage, true));
+		testItems.addAll(runAssertionTests(executionConfig, responseMap, assertions, reportStorage, true));
 		constructTestReport(executionConfig, responseMap, timeStart, testItems);
 	}
 
@@ -207,21 +265,24 @@ public class ValidationRunner {
 		return new ArrayList<Assertion>(assertions);
 	}
 
-	private List<TestRunItem> runAssertionTests(ExecutionConfig executionConfig,List<Assertion> assertions, String reportStorage, boolean runResourceAssertions) {
+	private List<TestRunItem> runAssertionTests(ExecutionConfig executionConfig, final Map<String, Object> responseMap, List<Assertion> assertions,
+			String reportStorage, boolean runResourceAssertions) {
 		List<TestRunItem> result = new ArrayList<>();
+		final List<Assertion> resourceAssertions = new ArrayList<>();
 		if (runResourceAssertions) {
-			final List<Assertion> resourceAssertions = assertionService.getResourceAssertions();
+			resourceAssertions.addAll(assertionService.getResourceAssertions());
 			logger.info("Found total resource assertions need to be run before test: " + resourceAssertions.size());
-			reportService.writeProgress("Start executing assertions...", reportStorage);
-			result.addAll(executeAssertions(executionConfig, resourceAssertions, reportStorage));
 		}
 		reportService.writeProgress("Start executing assertions...", reportStorage);
 		logger.info("Total assertions to run: " + assertions.size());
+		executionConfig.setDeferResultExtraction(deferResultExtraction);
 		if (batchSize == 0) {
+			result.addAll(executeAssertions(executionConfig, resourceAssertions, reportStorage));
 			result.addAll(executeAssertions(executionConfig, assertions, reportStorage));
 		} else {
-			result.addAll(executeAssertionsConcurrently(executionConfig,assertions, batchSize, reportStorage));
+			result.addAll(executeAssertionsInDependencyOrder(executionConfig, resourceAssertions, assertions, reportStorage, responseMap));
 		}
+		extractDeferredResults(executionConfig, resourceAssertions, assertions, result);
 		return result;
 	}
 
@@ -232,7 +293,6 @@ public class ValidationRunner {
 		final List<Assertion> resourceAssertions = assertionService.getResourceAssertions();
 		logger.info("Found total resource assertions need to be run before test: " + resourceAssertions.size());
 		reportService.writeProgress("Start executing assertions...", reportStorage);
-		 final List<TestRunItem> items = executeAssertions(executionConfig, resourceAssertions, reportStorage);
 		final Set<Assertion> assertions = new HashSet<>();
 		for (final AssertionGroup group : groups) {
 			for (final Assertion assertion : assertionService.getAssertionsForGroup(group)) {
@@ -240,15 +300,28 @@ public class ValidationRunner {
 			}
 		}
 		logger.info("Total assertions to run: " + assertions.size());
+		executionConfig.setDeferResultExtraction(deferResultExtraction);
+		final List<TestRunItem> items;
 		if (batchSize == 0) {
+			items = executeAssertions(executionConfig, resourceAssertions, reportStorage);
 			items.addAll(executeAssertions(executionConfig, assertions, reportStorage));
 		} else {
-			items.addAll(executeAssertionsConcurrently(executionConfig,assertions, batchSize, reportStorage));
+			items = executeAssertionsInDependencyOrder(executionConfig, resourceAssertions, assertions, reportStorage, responseMap);
 		}
+		extractDeferredResults(executionConfig, resourceAssertions, assertions, items);
 		constructTestReport(executionConfig, responseMap, timeStart, items);
 		
 	}
 
+	private void extractDeferredResults(final ExecutionConfig executionConfig, final Collection<Assertion> resourceAssertions,
+			final Collection<Assertion> assertions, final List<TestRunItem> items) {
+		if (executionConfig.isDeferResultExtraction()) {
+			final List<Assertion> allAssertions = new ArrayList<>(resourceAssertions);
+			allAssertions.addAll(assertions);
+			assertionExecutionService.extractTestResults(allAssertions, items, executionConfig);
+		}
+	}
+
 	private void constructTestReport(final ExecutionConfig executionConfig, final Map<String, Object> responseMap, final long timeStart, final List<TestRunItem> items) {
 		//failed tests
 		final List<TestRunItem> failedItems = new ArrayList<>();
@@ -271,44 +344,79 @@ public class ValidationRunner {
 		responseMap.put(report.getTestType().toString() + "TestResult", report);
 	}
 
-	private List<TestRunItem> executeAssertionsConcurrently(final ExecutionConfig executionConfig, final Collection<Assertion> assertions, int batchSize, String reportStorage) {
-		
-		final List<Future<Collection<TestRunItem>>> tasks = new ArrayList<>();
-		final List<TestRunItem> results = new ArrayList<>();
-		int counter = 1;
-		List<Assertion> batch = null;
-		for (final Assertion assertion: assertions) {
-			if (batch == null) {
-				batch = new ArrayList<Assertion>();
+	/**
+	 * Runs the resource assertions and the given assertions on a work-stealing pool of maxConcurrentAssertions
+	 * threads. Assertions that create or refer to the same tables, views, procedures or functions run in the order
+	 * they would run one after the other, with the resource assertions first. An assertion starts as soon as all the
+	 * assertions it depends on have completed, so that a run takes as long as its longest chain of dependent
+	 * assertions instead of waiting for the slowest assertion of each batch. Of the assertions ready to run the one
+	 * with the longest expected run time, including the assertions waiting for it, is started first.
+	 */
+	private List<TestRunItem> executeAssertionsInDependencyOrder(final ExecutionConfig executionConfig, final Collection<Assertion> resourceAssertions,
+			final Collection<Assertion> assertions, final String reportStorage, final Map<String, Object> responseMap) {
+		final List<Assertion> orderedAssertions = new ArrayList<>(resourceAssertions);
+		orderedAssertions.addAll(assertions);
+		final AssertionDependencyGraph graph = new AssertionDependencyGraph(orderedAssertions, assertionService);
+		final int sizeClass = runtimeHistory.getSizeClass(releaseDataManager.getSchemaForRelease(executionConfig.getProspectiveVersion()));
+		final Map<UUID, Long> expectedRuntimes = runtimeHistory.getExpectedRuntimes(sizeClass);
+		graph.prioritise(expectedRuntimes);
+		logger.info(String.format("Running [%1s] assertions with [%2s] threads, longest chain of dependent assertions [%3s]",
+				orderedAssertions.size(), maxConcurrentAssertions, graph.getCriticalPathLength()));
+		final AssertionRun run = new AssertionRun(executionConfig, reportStorage, orderedAssertions.size(), expectedRuntimes,
+				new AdaptiveConcurrencyLimiter(minConcurrentAssertions > 0 ? minConcurrentAssertions : maxConcurrentAssertions,
+						maxConcurrentAssertions, concurrencySlowdownTolerance));
+		// a fused scan cannot stop at the failures to export of each of its assertions
+		if (sharedScanEnabled && !executionConfig.isStopAtFailureExportMax()) {
+			addSharedScans(graph, run);
+		}
+		final ForkJoinPool pool = new ForkJoinPool(maxConcurrentAssertions);
+		try {
+			for (final AssertionDependencyGraph.Node root : graph.getRoots()) {
+				run.ready.add(root);
+				pool.execute(new AssertionTask(run));
 			}
-			batch.add(assertion);
-			if (counter % batchSize == 0 || counter == assertions.size()) {
-				final List<Assertion> work = batch;
-				logger.info(String.format("Started executing assertion [%1s] of [%2s]", counter, assertions.size()));
-				final Future<Collection<TestRunItem>> future = executorService.submit(new Callable<Collection<TestRunItem>>() {
-					@Override
-					public Collection<TestRunItem> call() throws Exception {
-						return assertionExecutionService.executeAssertions(work, executionConfig);
-					}
-				});
-				logger.info(String.format("Finished executing assertion [%1s] of [%2s]", counter, assertions.size()));
-				//reporting every 10 assertions
-				reportService.writeProgress(String.format("[%1s] of [%2s] assertions are started.", counter, assertions.size()), reportStorage);
-				tasks.add(future);
-				batch = null;
+			run.remaining.await();
+		} catch (final InterruptedException e) {
+			logger.error("Thread interrupted while waiting for assertions to complete.", e);
+		} finally {
+			pool.shutdown();
+		}
+		logger.info("Concurrent assertions over time: " + run.limiter.getLimitChanges());
+		addConcurrencyLimitChanges(responseMap, run.limiter.getLimitChanges());
+		final List<TestRunItem> results = new ArrayList<>(run.results);
+		runtimeHistory.record(sizeClass, results);
+		return results;
+	}
+
+	/**
+	 * Adds the number of assertions run at the same time over time to the report, appending to the changes of an
+	 * earlier set of assertions of the same validation.
+	 */
+	@SuppressWarnings("unchecked")
+	private void addConcurrencyLimitChanges(final Map<String, Object> responseMap, final List<String> limitChanges) {
+		List<String> reported = (List<String>) responseMap.get(CONCURRENCY_LIMIT_CHANGES);
+		if (reported == null) {
+			reported = new ArrayList<>();
+			responseMap.put(CONCURRENCY_LIMIT_CHANGES, reported);
+		}
+		reported.addAll(limitChanges);
+	}
+
+	private void addSharedScans(final AssertionDependencyGraph graph, final AssertionRun run) {
+		// only assertions independent of all others can run at whatever time the shared scan runs
+		final Map<Assertion, AssertionDependencyGraph.Node> independentNodes = new IdentityHashMap<>();
+		for (final AssertionDependencyGraph.Node node : graph.getNodes()) {
+			if (node.isIndependent()) {
+				independentNodes.put(node.getAssertion(), node);
 			}
-			counter++;
 		}
-		
-		// Wait for all concurrent tasks to finish
-		for (final Future<Collection<TestRunItem>> task : tasks) {
-			try {
-				results.addAll(task.get());
-			} catch (ExecutionException | InterruptedException e) {
-				logger.error("Thread interrupted while waiting for future result for run item:" + task , e);
+		for (final List<Assertion> group : assertionExecutionService.groupSharedScans(independentNodes.keySet())) {
+			final SharedScan sharedScan = new SharedScan(group);
+			for (final Assertion assertion : group) {
+				run.sharedScans.put(independentNodes.get(assertion), sharedScan);
 			}
+			logger.info(String.format("Running [%1s] assertions in a shared scan", group.size()));
 		}
-		return results;
 	}
 
 	private List<TestRunItem> executeAssertions(final ExecutionConfig executionConfig, final Collection<Assertion> assertions, String reportStorage) {
@@ -328,4 +436,137 @@ public class ValidationRunner {
 		reportService.writeProgress(String.format("[%1s] of [%2s] assertions are completed.", counter, assertions.size()), reportStorage);
 		return results;
 	}
+
+	/**
+	 * The state shared by the assertions of one run in dependency order.
+	 */
+	private static class AssertionRun {
+
+		private final ExecutionConfig executionConfig;
+		private final String reportStorage;
+		private final int total;
+		private final Queue<TestRunItem> results = new ConcurrentLinkedQueue<>();
+		private final Queue<AssertionDependencyGraph.Node> ready = new PriorityBlockingQueue<>(11, AssertionDependencyGraph.Node.PRIORITY_ORDER);
+		private final AtomicInteger completed = new AtomicInteger();
+		private final CountDownLatch remaining;
+		private final Map<AssertionDependencyGraph.Node, SharedScan> sharedScans = new IdentityHashMap<>();
+		private final Map<UUID, Long> expectedRuntimes;
+		private final AdaptiveConcurrencyLimiter limiter;
+
+		private AssertionRun(final ExecutionConfig executionConfig, final String reportStorage, final int total,
+				final Map<UUID, Long> expectedRuntimes, final AdaptiveConcurrencyLimiter limiter) {
+			this.executionConfig = executionConfig;
+			this.reportStorage = reportStorage;
+			this.total = total;
+			this.remaining = new CountDownLatch(total);
+			this.expectedRuntimes = expectedRuntimes;
+			this.limiter = limiter;
+		}
+	}
+
+	/**
+	 * Assertions run together with a single scan of the table they check, by whichever task takes one of them first.
+	 */
+	private static class SharedScan {
+
+		private final List<Assertion> assertions;
+		private final AtomicBoolean started = new AtomicBoolean();
+
+		private SharedScan(final List<Assertion> assertions) {
+			this.assertions = assertions;
+		}
+	}
+
+	/**
+	 * Runs the ready assertion with the highest priority and then forks a task for each assertion that was only
+	 * waiting for it onto the current worker. One task is created for each assertion, but which assertion a task runs
+	 * is only decided once it starts.
+	 */
+	private class AssertionTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		private final AssertionRun run;
+
+		private AssertionTask(final AssertionRun run) {
+			this.run = run;
+		}
+
+		@Override
+		protected void compute() {
+			// the pool has a worker for the highest number of assertions allowed, the limiter holds back the others
+			run.limiter.acquire();
+			final AssertionDependencyGraph.Node node = run.ready.poll();
+			if (node == null) {
+				run.limiter.cancel();
+				return;
+			}
+			final long timeStart = System.currentTimeMillis();
+			final SharedScan sharedScan = run.sharedScans.get(node);
+			if (sharedScan != null) {
+				// the other assertions of the scan complete together with the first one taken
+				if (sharedScan.started.compareAndSet(false, true)) {
+					try {
+						run.results.addAll(assertionExecutionService.executeSharedScan(sharedScan.assertions, run.executionConfig, run.expectedRuntimes));
+					} catch (final RuntimeException e) {
+						logger.error("Failed to execute shared scan of assertions", e);
+					} finally {
+						release(timeStart, sharedScan.assertions);
+						complete(sharedScan.assertions.size());
+					}
+				} else {
+					run.limiter.cancel();
+				}
+				return;
+			}
+			final Assertion assertion = node.getAssertion();
+			try {
+				run.results.addAll(assertionExecutionService.executeAssertion(assertion, run.executionConfig));
+			} catch (final RuntimeException e) {
+				logger.error("Failed to execute assertion with uuid : " + assertion.getUuid(), e);
+			} finally {
+				release(timeStart, Collections.singletonList(assertion));
+				final int completed = complete(1);
+				logger.info(String.format("Finished executing assertion [%1s] of [%2s] with uuid : [%3s]", completed, run.total, assertion.getUuid()));
+				for (final AssertionDependencyGraph.Node successor : node.getSuccessors()) {
+					if (successor.release()) {
+						run.ready.add(successor);
+						new AssertionTask(run).fork();
+					}
+				}
+			}
+		}
+
+		private void release(final long timeStart, final List<Assertion> assertions) {
+			Long expectedMillis = null;
+			for (final Assertion assertion : assertions) {
+				final Long millis = run.expectedRuntimes.get(assertion.getUuid());
+				if (millis != null) {
+					expectedMillis = millis + (expectedMillis == null ? 0 : expectedMillis);
+				}
+			}
+			if (run.limiter.release(System.currentTimeMillis() - timeStart, expectedMillis)) {
+				logger.info(String.format("Running [%1s] assertions at the same time", run.limiter.getLimit()));
+				writeProgress(run.completed.get());
+			}
+		}
+
+		private int complete(final int count) {
+			final int completed = run.completed.addAndGet(count);
+			if (completed / batchSize > (completed - count) / batchSize || completed == run.total) {
+				writeProgress(completed);
+			}
+			for (int i = 0; i < count; i++) {
+				run.remaining.countDown();
+			}
+			return completed;
+		}
+
+		/**
+		 * Writes the progress together with the history of the limit, as each write replaces the one before.
+		 */
+		private void writeProgress(final int completed) {
+			reportService.writeProgress(String.format("[%1s] of [%2s] assertions are completed. Running [%3s] assertions at the same time %4s.",
+					completed, run.total, run.limiter.getLimit(), run.limiter.getLimitChanges()), run.reportStorage);
+		}
+	}
 }
@@ -11,6 +11,7 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -23,6 +24,7 @@ import org.ihtsdo.otf.dao.s3.helper.FileHelper;
 import org.ihtsdo.otf.rest.exception.BusinessServiceException;
 import org.ihtsdo.rvf.execution.service.ReleaseDataManager;
 import org.ihtsdo.rvf.execution.service.ResourceDataLoader;
+import org.ihtsdo.rvf.execution.service.TableCopyStatus;
 import org.ihtsdo.rvf.execution.service.impl.ValidationReportService.State;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -61,6 +63,8 @@ public class ValidationVersionLoader {
 	private ResourceDataLoader resourceLoader;
 	
 	private final Logger logger = LoggerFactory.getLogger(ValidationVersionLoader.class);
+
+	private final List<String> snapshotOverlayTables = new ArrayList<>();
 	
 	
 	public boolean loadPreviousVersion(ExecutionConfig executionConfig, Map<String, Object> responseMap, ValidationRunConfig validationConfig) throws Exception {
@@ -99,11 +103,15 @@ public class ValidationVersionLoader {
 			}
 		} else {
 			//load prospective version alone now as used to combine with dependency for extension testing
-			uploadProspectiveVersion(prospectiveVersion, null, validationConfig.getLocalProspectiveFile(), rf2FilesLoaded);
+			uploadProspectiveVersion(prospectiveVersion, null, validationConfig.getLocalProspectiveFile(), rf2FilesLoaded, reportStorage);
 		}
 		responseMap.put("totalRF2FilesLoaded", rf2FilesLoaded.size());
 		Collections.sort(rf2FilesLoaded);
 		responseMap.put("rf2Files", rf2FilesLoaded);
+		final Map<String, Map<String, Long>> tableLoadStatistics = releaseDataManager.getTableLoadStatistics(prospectiveVersion);
+		if (tableLoadStatistics != null) {
+			responseMap.put("tableLoadStatistics", tableLoadStatistics);
+		}
 		final String prospectiveSchema = releaseDataManager.getSchemaForRelease(prospectiveVersion);
 		if (prospectiveSchema != null) {
 			reportService.writeProgress("Loading resource data for prospective schema:" + prospectiveSchema, reportStorage);
@@ -124,6 +132,7 @@ public class ValidationVersionLoader {
 		if (validationConfig.getFailureExportMax() != null) {
 			executionConfig.setFailureExportMax(validationConfig.getFailureExportMax());
 		}
+		executionConfig.setStopAtFailureExportMax(validationConfig.isStopAtFailureExportMax() && executionConfig.getFailureExportMax() > 0);
 		executionConfig.setReleaseValidation(!validationConfig.isRf2DeltaOnly());
 		return executionConfig;
 	}
@@ -131,18 +140,19 @@ public class ValidationVersionLoader {
 	public List<String> loadProspectiveDeltaAndCombineWithPreviousSnapshotIntoDB(String prospectiveVersion, ValidationRunConfig validationConfig, List<String> excludeTableNames) throws BusinessServiceException {
 		List<String> filesLoaded = new ArrayList<>();
 		if (validationConfig.isRf2DeltaOnly()) {
-			releaseDataManager.loadSnomedData(prospectiveVersion, filesLoaded, validationConfig.getLocalProspectiveFile());
+			releaseDataManager.loadSnomedData(prospectiveVersion, filesLoaded, createProgressListener(validationConfig.getStorageLocation()),
+					validationConfig.getLocalProspectiveFile());
 			if (isExtension(validationConfig)) {
 				if (!validationConfig.isFirstTimeRelease()) {
 					releaseDataManager.copyTableData(validationConfig.getPreviousExtVersion(),validationConfig.getExtensionDependency(), prospectiveVersion,SNAPSHOT_TABLE, excludeTableNames);
 				} else {
-					releaseDataManager.copyTableData(validationConfig.getExtensionDependency(), prospectiveVersion,SNAPSHOT_TABLE, excludeTableNames);
+					combineWithBaselineSnapshot(validationConfig.getExtensionDependency(), prospectiveVersion, excludeTableNames);
 				}
 				
 			} else {
 				//copy snapshot from previous release
 				if (!validationConfig.isFirstTimeRelease()) {
-					releaseDataManager.copyTableData(validationConfig.getPrevIntReleaseVersion(), prospectiveVersion,SNAPSHOT_TABLE, excludeTableNames);
+					combineWithBaselineSnapshot(validationConfig.getPrevIntReleaseVersion(), prospectiveVersion, excludeTableNames);
 				}
 			}
 			releaseDataManager.updateSnapshotTableWithDataFromDelta(prospectiveVersion);
@@ -151,6 +161,41 @@ public class ValidationVersionLoader {
 	}
 	
 
+	/**
+	 * Makes the snapshot of the baseline version available in the prospective version by copying it, apart from the
+	 * configured overlay tables which are read through views over the unchanged baseline schema.
+	 */
+	private void combineWithBaselineSnapshot(String baselineVersion, String prospectiveVersion, List<String> excludeTableNames) throws BusinessServiceException {
+		if (snapshotOverlayTables.isEmpty()) {
+			releaseDataManager.copyTableData(baselineVersion, prospectiveVersion, SNAPSHOT_TABLE, excludeTableNames);
+			return;
+		}
+		final List<String> copyExcludeTableNames = new ArrayList<>(snapshotOverlayTables);
+		final List<String> overlayTableNames = new ArrayList<>(snapshotOverlayTables);
+		if (excludeTableNames != null) {
+			copyExcludeTableNames.addAll(excludeTableNames);
+			overlayTableNames.removeAll(excludeTableNames);
+		}
+		releaseDataManager.copyTableData(baselineVersion, prospectiveVersion, SNAPSHOT_TABLE, copyExcludeTableNames);
+		releaseDataManager.createSnapshotOverlayViews(baselineVersion, prospectiveVersion, overlayTableNames);
+	}
+
+	/**
+	 * @param snapshotOverlayTables the comma separated snapshot tables to read through views over the baseline snapshot
+	 * rather than copy. A view is materialised by every assertion that reads it, so only tables read by few assertions
+	 * gain from it.
+	 */
+	public void setSnapshotOverlayTables(String snapshotOverlayTables) {
+		this.snapshotOverlayTables.clear();
+		if (snapshotOverlayTables != null) {
+			for (final String tableName : snapshotOverlayTables.split(",")) {
+				if (!tableName.trim().isEmpty()) {
+					this.snapshotOverlayTables.add(tableName.trim());
+				}
+			}
+		}
+	}
+
 	public void downloadProspectiveVersion(ValidationRunConfig validationConfig) throws Exception {
 		if (validationConfig.isProspectiveFilesInS3()) {
 			//streaming file from S3 to local
@@ -262,7 +307,7 @@ public class ValidationVersionLoader {
 	
 	
 	private void uploadProspectiveVersion(final String prospectiveVersion, final String knownVersion, final File tempFile, 
-			final List<String> rf2FilesLoaded) throws ConfigurationException, BusinessServiceException {
+			final List<String> rf2FilesLoaded, final String reportStorage) throws ConfigurationException, BusinessServiceException {
 		
 		if (knownVersion != null && !knownVersion.trim().isEmpty()) {
 			logger.info(String.format("Baseline verison: [%1s] will be combined with prospective release file: [%2s]", knownVersion, tempFile.getName()));
@@ -287,19 +332,43 @@ public class ValidationVersionLoader {
 				}
 				logger.info("Start loading release version {} with release file {} and baseline {}", 
 						prospectiveVersion, tempFile.getName(), preLoadedZipFile.getName());
-				releaseDataManager.loadSnomedData(prospectiveVersion,rf2FilesLoaded, tempFile, preLoadedZipFile);
+				releaseDataManager.loadSnomedData(prospectiveVersion,rf2FilesLoaded, createProgressListener(reportStorage), tempFile, preLoadedZipFile);
 			} else {
 				throw new ConfigurationException("Can't find the cached release zip file for known version: " + versionDate);
 			}
 		} else {
 			logger.info("Start loading release version {} with release file {}", prospectiveVersion, tempFile.getName());
-			releaseDataManager.loadSnomedData(prospectiveVersion, rf2FilesLoaded, tempFile);
+			releaseDataManager.loadSnomedData(prospectiveVersion, rf2FilesLoaded, createProgressListener(reportStorage), tempFile);
 		}
 		logger.info("Completed loading release version {}", prospectiveVersion);
 	}
 
 	
 
+	/**
+	 * Writes the load progress of each release file to the progress file of the run in steps of ten percent.
+	 */
+	private ReleaseFileDataLoader.LoadListener createProgressListener(final String reportStorage) {
+		return new ReleaseFileDataLoader.LoadListener() {
+			private final Map<String, Integer> reportedPercents = new HashMap<>();
+
+			@Override
+			public synchronized void fileProgress(String rf2FileName, int percentLoaded) {
+				final int step = percentLoaded / 10 * 10;
+				final Integer reported = reportedPercents.get(rf2FileName);
+				if (step > 0 && step < 100 && (reported == null || step > reported)) {
+					reportedPercents.put(rf2FileName, step);
+					reportService.writeProgress("Loading " + rf2FileName + ": " + step + "%", reportStorage);
+				}
+			}
+
+			@Override
+			public synchronized void fileLoaded(String rf2FileName, String rvfTableName, long fileSize, long rowsLoaded) {
+				reportService.writeProgress("Loaded " + rf2FileName + ": " + rowsLoaded + " rows", reportStorage);
+			}
+		};
+	}
+
 	/**Current extension is already loaded into the prospective version
 	 * @param executionConfig
 	 * @param responseMap
@@ -320,9 +389,11 @@ public class ValidationVersionLoader {
 		}
 		if (isExtension(validationConfig)) {
 			try {
-				releaseDataManager.copyTableData(extensionVersion, combinedVersion, DELTA_TABLE, null);
-				releaseDataManager.copyTableData(extensionVersion, combinedVersion,FULL_TABLE, null);
-				releaseDataManager.copyTableData(executionConfig.getExtensionDependencyVersion(),extensionVersion, combinedVersion,SNAPSHOT_TABLE, null);
+				List<TableCopyStatus> tableCopyStatus = new ArrayList<>();
+				tableCopyStatus.addAll(releaseDataManager.copyTableData(extensionVersion, combinedVersion, DELTA_TABLE, null));
+				tableCopyStatus.addAll(releaseDataManager.copyTableData(extensionVersion, combinedVersion,FULL_TABLE, null));
+				tableCopyStatus.addAll(releaseDataManager.copyTableData(executionConfig.getExtensionDependencyVersion(),extensionVersion, combinedVersion,SNAPSHOT_TABLE, null));
+				responseMap.put("combinedTableCopyStatus", tableCopyStatus);
 				resourceLoader.loadResourceData(combinedSchema);
 			} catch (Exception e) {
 				String errorMsg = e.getMessage();
@@ -18,6 +18,7 @@ import org.springframework.stereotype.Service;
 public class RvfDynamicDataSource {
 
     private String url;
+    private int preparedStatementCacheSize;
     @Resource(name = "snomedDataSource")
     private BasicDataSource basicDataSource;
     private ConcurrentHashMap<String, BasicDataSource> schemaDatasourceMap = new ConcurrentHashMap<>();
@@ -53,6 +54,12 @@ public class RvfDynamicDataSource {
             dataSource.setValidationQueryTimeout(basicDataSource.getValidationQueryTimeout());
             dataSource.setMinEvictableIdleTimeMillis(basicDataSource.getMinEvictableIdleTimeMillis());
             dataSource.setTimeBetweenEvictionRunsMillis(basicDataSource.getTimeBetweenEvictionRunsMillis());
+            if (preparedStatementCacheSize > 0) {
+                // keep the statements of each connection prepared on the server so repeated selects are only parsed once
+                dataSource.setPoolPreparedStatements(true);
+                dataSource.setMaxOpenPreparedStatements(preparedStatementCacheSize);
+                dataSource.addConnectionProperty("useServerPrepStmts", "true");
+            }
             // add to map
             schemaDatasourceMap.putIfAbsent(schema, dataSource);
         	LOGGER.debug("Create datasource for schema:" + schema);
@@ -79,4 +86,14 @@ public class RvfDynamicDataSource {
     public void setUrl(String url) {
         this.url = url;
     }
+
+    /**
+     * Pooling only pays off for statements that are prepared more than once with the same text. The assertion sql has
+     * the run id and the release schema names substituted into it, so most of it is unique to a run and would only fill
+     * the cache and hold server side statements open, which is why the default is 0.
+     * @param preparedStatementCacheSize the number of prepared statements kept open per connection, 0 disables pooling
+     */
+    public void setPreparedStatementCacheSize(int preparedStatementCacheSize) {
+        this.preparedStatementCacheSize = preparedStatementCacheSize;
+    }
 }
@@ -0,0 +1,65 @@
+package org.ihtsdo.rvf.execution.service.impl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AdaptiveConcurrencyLimiterTest {
+
+	@Test
+	public void testIncreaseWhileAssertionsKeepTheirRunTime() {
+		final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 4, 2.0);
+		complete(limiter, 2, 150L, 100L);
+		Assert.assertEquals(3, limiter.getLimit());
+		complete(limiter, 3, 100L, null);
+		Assert.assertEquals(4, limiter.getLimit());
+		// never above the maximum
+		complete(limiter, 4, 100L, 100L);
+		Assert.assertEquals(4, limiter.getLimit());
+		Assert.assertEquals(3, limiter.getLimitChanges().size());
+	}
+
+	@Test
+	public void testDecreaseWhenAssertionsSlowDown() {
+		final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 16, 2.0);
+		for (int limit = 2; limit < 12; limit++) {
+			complete(limiter, limit, 100L, 100L);
+		}
+		Assert.assertEquals(12, limiter.getLimit());
+		complete(limiter, 12, 500L, 100L);
+		Assert.assertEquals(9, limiter.getLimit());
+		complete(limiter, 9, 500L, 100L);
+		complete(limiter, 6, 500L, 100L);
+		complete(limiter, 4, 500L, 100L);
+		complete(limiter, 3, 500L, 100L);
+		// never below the minimum
+		Assert.assertEquals(2, limiter.getLimit());
+	}
+
+	@Test
+	public void testAcquireWaitsForRelease() throws InterruptedException {
+		final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 2.0);
+		limiter.acquire();
+		final Thread waiting = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				limiter.acquire();
+				limiter.cancel();
+			}
+		});
+		waiting.start();
+		waiting.join(100);
+		Assert.assertTrue(waiting.isAlive());
+		limiter.release(100L, null);
+		waiting.join(5000);
+		Assert.assertFalse(waiting.isAlive());
+	}
+
+	private void complete(final AdaptiveConcurrencyLimiter limiter, final int count, final long actualMillis, final Long expectedMillis) {
+		for (int i = 0; i < count; i++) {
+			limiter.acquire();
+		}
+		for (int i = 0; i < count; i++) {
+			limiter.release(actualMillis, expectedMillis);
+		}
+	}
+}
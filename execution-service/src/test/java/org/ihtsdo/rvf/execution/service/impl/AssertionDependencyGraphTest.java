@@ -0,0 +1,77 @@
+package org.ihtsdo.rvf.execution.service.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.ihtsdo.rvf.entity.Assertion;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AssertionDependencyGraphTest {
+
+	private static final String DEFINE_PROCEDURE = "drop procedure if exists gbTerm_procedure;\n"
+			+ "create procedure gbTerm_procedure(runid BIGINT, assertionid char(36))\n"
+			+ "begin insert into qa_result select runid, assertionid, a.conceptid, a.term from v_curr_delta_gb a; end;";
+	private static final String CALL_PROCEDURE = "drop table if exists v_curr_delta_gb;\n"
+			+ "create table if not exists v_curr_delta_gb (id varchar(36), term varchar(255), conceptid varchar(255));\n"
+			+ "insert into v_curr_delta_gb select id, term, conceptid from <PROSPECTIVE>.curr_description_d;\n"
+			+ "call gbTerm_procedure(<RUNID>,'<ASSERTIONUUID>');";
+	private static final String FILE_CENTRIC = "/* reads v_curr_delta_gb in a comment only */\n"
+			+ "insert into qa_result select <RUNID>, '<ASSERTIONUUID>', a.id, 'inactive' from curr_concept_s a where a.active = '0';";
+	private static final String TEMP_TABLE = "drop table if exists <PROSPECTIVE>.tmp_inactive_desc;\n"
+			+ "create table if not exists <PROSPECTIVE>.tmp_inactive_desc as select * from curr_description_s where active = '0';\n"
+			+ "drop table if exists <PROSPECTIVE>.tmp_inactive_desc;";
+
+	@Test
+	public void testDependenciesKeepSequentialOrder() {
+		final List<Assertion> assertions = createAssertions(4);
+		final AssertionDependencyGraph graph = new AssertionDependencyGraph(assertions,
+				Arrays.asList(DEFINE_PROCEDURE, CALL_PROCEDURE, FILE_CENTRIC, CALL_PROCEDURE));
+		final List<AssertionDependencyGraph.Node> nodes = graph.getNodes();
+		// the procedure refers to the table created by the calls and both calls create the same table
+		Assert.assertEquals(Arrays.asList(nodes.get(0), nodes.get(2)), graph.getRoots());
+		Assert.assertEquals(2, nodes.get(0).getSuccessors().size());
+		Assert.assertTrue(nodes.get(1).getSuccessors().contains(nodes.get(3)));
+		Assert.assertTrue(nodes.get(2).getSuccessors().isEmpty());
+		Assert.assertEquals(3, graph.getCriticalPathLength());
+	}
+
+	@Test
+	public void testRelease() {
+		final AssertionDependencyGraph graph = new AssertionDependencyGraph(createAssertions(3),
+				Arrays.asList(TEMP_TABLE, FILE_CENTRIC, TEMP_TABLE));
+		final List<AssertionDependencyGraph.Node> nodes = graph.getNodes();
+		Assert.assertEquals(Arrays.asList(nodes.get(0), nodes.get(1)), graph.getRoots());
+		Assert.assertTrue(nodes.get(0).getSuccessors().contains(nodes.get(2)));
+		Assert.assertTrue(nodes.get(2).release());
+	}
+
+	@Test
+	public void testPrioritiseLongestWorkFirst() {
+		final List<Assertion> assertions = createAssertions(3);
+		final AssertionDependencyGraph graph = new AssertionDependencyGraph(assertions, Arrays.asList(FILE_CENTRIC, TEMP_TABLE, TEMP_TABLE));
+		final Map<UUID, Long> runtimes = new HashMap<>();
+		runtimes.put(assertions.get(0).getUuid(), 500L);
+		runtimes.put(assertions.get(1).getUuid(), 200L);
+		graph.prioritise(runtimes);
+		final List<AssertionDependencyGraph.Node> nodes = new ArrayList<>(graph.getNodes());
+		// the last assertion has no history and is expected to take the average of the others
+		Assert.assertEquals(350, nodes.get(2).getPriority());
+		Assert.assertEquals(550, nodes.get(1).getPriority());
+		Collections.sort(nodes, AssertionDependencyGraph.Node.PRIORITY_ORDER);
+		Assert.assertEquals(Arrays.asList(graph.getNodes().get(1), graph.getNodes().get(0), graph.getNodes().get(2)), nodes);
+	}
+
+	private List<Assertion> createAssertions(final int count) {
+		final List<Assertion> assertions = new ArrayList<>();
+		for (long i = 0; i < count; i++) {
+			assertions.add(new Assertion(i, "assertion " + i));
+		}
+		return assertions;
+	}
+}
@@ -0,0 +1,45 @@
+package org.ihtsdo.rvf.execution.service.impl;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PreparedCommandTest {
+
+	private Map<String, String> constants;
+
+	@Before
+	public void setUp() {
+		constants = new LinkedHashMap<>();
+		constants.put("<ASSERTIONUUID>", "42");
+		constants.put("qa_result", "rvf_master.qa_result");
+		constants.put("<DELTA>", "d");
+		constants.put("<SNAPSHOT>", "s");
+	}
+
+	@Test
+	public void testBind() {
+		final PreparedCommand command = new PreparedCommand(new String[] {
+				"/* inactive concepts */ insert into qa_result (run_id, assertion_id, details) select <RUNID>, <ASSERTIONUUID>, a.id "
+				+ "from <PROSPECTIVE>.concept_<SNAPSHOT> a left join <PREVIOUS>.concept_<SNAPSHOT> b on a.id = b.id where b.id is null",
+				"drop table if exists <TEMP>.tmp_<DELTA>" }, constants);
+		final List<String> statements = command.bind(7L, "rvf_int_20150731", "rvf_int_20150131");
+		Assert.assertEquals(Arrays.asList(
+				" insert into rvf_master.qa_result (run_id, assertion_id, details) select 7, 42, a.id "
+				+ "from rvf_int_20150731.concept_s a left join rvf_int_20150131.concept_s b on a.id = b.id where b.id is null",
+				"drop table if exists rvf_int_20150731.tmp_d"), statements);
+		// the same command binds the values of another run
+		Assert.assertEquals("drop table if exists rvf_int_20160131.tmp_d", command.bind(8L, "rvf_int_20160131", null).get(1));
+	}
+
+	@Test
+	public void testBindWithoutPreviousSchema() {
+		final PreparedCommand command = new PreparedCommand(new String[] { "select * from <PREVIOUS>.concept_<SNAPSHOT>", "" }, constants);
+		Assert.assertEquals(Arrays.asList("select * from <PREVIOUS>.concept_s", ""), command.bind(7L, "rvf_int_20150731", null));
+	}
+}
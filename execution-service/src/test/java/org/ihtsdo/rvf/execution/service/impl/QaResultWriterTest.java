@@ -0,0 +1,55 @@
+package org.ihtsdo.rvf.execution.service.impl;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class QaResultWriterTest {
+
+	private Connection connection;
+
+	@Before
+	public void setUp() throws SQLException {
+		connection = DriverManager.getConnection("jdbc:h2:mem:qa_result_writer");
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("create table qa_result (run_id bigint, assertion_id bigint, details varchar(500))");
+		}
+	}
+
+	@After
+	public void tearDown() throws SQLException {
+		connection.close();
+	}
+
+	@Test
+	public void testWriteInBatches() throws SQLException {
+		try (QaResultWriter writer = new QaResultWriter(connection, "qa_result", 7L, 42L, 100)) {
+			for (int i = 0; i < 250; i++) {
+				writer.write("failure " + i);
+				// full batches are written straight away
+				Assert.assertEquals(i + 1 - (i + 1) % 100, writer.getRowCount());
+			}
+			writer.flush();
+			Assert.assertEquals(250, writer.getRowCount());
+		}
+		try (Statement statement = connection.createStatement();
+				ResultSet resultSet = statement.executeQuery("select count(*), count(distinct details) from qa_result where run_id = 7 and assertion_id = 42")) {
+			Assert.assertTrue(resultSet.next());
+			Assert.assertEquals(250, resultSet.getInt(1));
+			Assert.assertEquals(250, resultSet.getInt(2));
+		}
+	}
+
+	@Test
+	public void testInsertSql() {
+		final QaResultWriter writer = new QaResultWriter(connection, "rvf_master.qa_result", 7L, 42L, 2);
+		Assert.assertEquals("insert into rvf_master.qa_result (run_id, assertion_id, details) values (?, ?, ?), (?, ?, ?)", writer.getInsertSql(2));
+	}
+}
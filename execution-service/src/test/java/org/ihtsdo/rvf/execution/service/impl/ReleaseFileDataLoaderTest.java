@@ -1,6 +1,11 @@
 package org.ihtsdo.rvf.execution.service.impl;
 
 
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -71,6 +76,32 @@ public class ReleaseFileDataLoaderTest {
 		Assert.assertEquals(expected, script);
 	}
 	
+	@Test
+	public void testSplitIntoChunksAtLineBoundaries() throws Exception {
+		final File rf2File = File.createTempFile("sct2_Concept_Delta_INT_20150131", ".txt");
+		try {
+			FileUtils.writeStringToFile(rf2File, "id\teffectivetime\r\n1\t20150131\r\n22\t20150131\r\n333\t20150131\r\n", Charset.forName("UTF-8"));
+			final List<long[]> chunks = ReleaseFileDataLoader.splitIntoChunks(rf2File, 10);
+			Assert.assertEquals(4, chunks.size());
+			long previousEnd = 0;
+			for (final long[] chunk : chunks) {
+				Assert.assertEquals(previousEnd, chunk[0]);
+				previousEnd = chunk[1];
+			}
+			Assert.assertEquals(rf2File.length(), previousEnd);
+			Assert.assertEquals(18, chunks.get(0)[1]);
+			Assert.assertEquals(1, ReleaseFileDataLoader.splitIntoChunks(rf2File, rf2File.length() * 2).size());
+		} finally {
+			rf2File.delete();
+		}
+	}
+
+	@Test
+	public void testUnpublishedFileNamedLikePublishedFile() {
+		Assert.assertEquals("sct2_Concept_Delta_INT_20150131.txt", ReleaseFileDataLoader.removeXPrefix("xsct2_Concept_Delta_INT_20150131.txt"));
+		Assert.assertEquals("der2_cRefset_LanguageDelta-en_INT_20150131.txt", ReleaseFileDataLoader.removeXPrefix("der2_cRefset_LanguageDelta-en_INT_20150131.txt"));
+	}
+
 	@After
 	public void tearDown() {
 		
@@ -0,0 +1,78 @@
+package org.ihtsdo.rvf.execution.service.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ReleaseLoadSchedulerTest {
+
+	private final ReleaseLoadScheduler scheduler = new ReleaseLoadScheduler(1);
+	private final List<String> loadOrder = Collections.synchronizedList(new ArrayList<String>());
+
+	@After
+	public void tearDown() {
+		scheduler.shutdown();
+	}
+
+	@Test
+	public void testRunClosestToCompletionGoesFirst() throws Exception {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch blocker = new CountDownLatch(1);
+		final ReleaseLoadScheduler.LoadRun large = scheduler.startRun("large", 1000);
+		final ReleaseLoadScheduler.LoadRun small = scheduler.startRun("small", 100);
+		final List<Future<String>> futures = new ArrayList<>();
+		futures.add(scheduler.submit(large, 400, load("large_1", started, blocker)));
+		// the single thread is busy with large_1 until the other loads are queued
+		started.await();
+		futures.add(scheduler.submit(large, 600, load("large_2", null, null)));
+		futures.add(scheduler.submit(small, 100, load("small_1", null, null)));
+		blocker.countDown();
+		for (final Future<String> future : futures) {
+			future.get();
+		}
+		Assert.assertEquals(Arrays.asList("large_1", "small_1", "large_2"), loadOrder);
+		Assert.assertEquals(0, large.getBytesRemaining());
+		scheduler.finishRun(large);
+		scheduler.finishRun(small);
+	}
+
+	@Test
+	public void testMetrics() throws Exception {
+		final ReleaseLoadScheduler.LoadRun run = scheduler.startRun("int_20150131", 300);
+		scheduler.submit(run, 100, load("concept", null, null)).get();
+		final Map<String, Object> metrics = scheduler.getMetrics();
+		Assert.assertEquals(1, metrics.get("maxConcurrentLoads"));
+		Assert.assertEquals(0L, metrics.get("activeLoads"));
+		Assert.assertEquals(0, metrics.get("queuedLoads"));
+		Assert.assertEquals(1L, metrics.get("completedLoads"));
+		Assert.assertEquals(100L, metrics.get("bytesLoaded"));
+		Assert.assertEquals(Collections.singletonMap("int_20150131", 200L), metrics.get("bytesRemainingPerRun"));
+		scheduler.finishRun(run);
+		Assert.assertEquals(Collections.emptyMap(), scheduler.getMetrics().get("bytesRemainingPerRun"));
+	}
+
+	private Callable<String> load(final String name, final CountDownLatch started, final CountDownLatch blocker) {
+		return new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				if (started != null) {
+					started.countDown();
+				}
+				if (blocker != null) {
+					blocker.await();
+				}
+				loadOrder.add(name);
+				return name;
+			}
+		};
+	}
+}
@@ -0,0 +1,96 @@
+package org.ihtsdo.rvf.execution.service.impl;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.ihtsdo.rvf.entity.Assertion;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SharedScanStatementTest {
+
+	private static final String INACTIVE_MODIFIER = "insert into qa_result (runid, assertionuuid, concept_id, details)\n"
+			+ "	select\n"
+			+ "		<RUNID>,\n"
+			+ "		'<ASSERTIONUUID>',\n"
+			+ "		a.sourceid,\n"
+			+ "		concat('RELATIONSHIP: id=',a.id, ': Modifier, from the stated relationship, is inactive.')\n"
+			+ "	from curr_stated_relationship_s a\n"
+			+ "	where a.active = '1' and a.modifierid not in (select id from curr_concept_s where active = '1')";
+	private static final String ISA_RELGROUP = "insert into qa_result (runid, assertionuuid, concept_id, details)\n"
+			+ "	select <RUNID>, '<ASSERTIONUUID>', a.sourceid, concat('RELATIONSHIP: id=',a.id, ':Stated is-a relationship in group, where')\n"
+			+ "	from curr_stated_relationship_s a\n"
+			+ "	where a.active = '1' and a.typeid = '116680003' and a.relationshipgroup != '0'";
+
+	@Test
+	public void testParse() {
+		final SharedScanStatement statement = SharedScanStatement.parse(INACTIVE_MODIFIER);
+		Assert.assertNotNull(statement);
+		Assert.assertEquals("curr_stated_relationship_s", statement.getTable());
+		Assert.assertEquals(statement.getScanKey(), SharedScanStatement.parse(ISA_RELGROUP).getScanKey());
+	}
+
+	@Test
+	public void testRejectJoinsAndGrouping() {
+		Assert.assertNull(SharedScanStatement.parse("insert into qa_result (runid, assertionuuid, concept_id, details) "
+				+ "select <RUNID>, '<ASSERTIONUUID>', a.id, 'duplicate' from curr_concept_s a where a.active = '1' group by a.id having count(*) > 1"));
+		Assert.assertNull(SharedScanStatement.parse("insert into qa_result (runid, assertionuuid, concept_id, details) "
+				+ "select <RUNID>, '<ASSERTIONUUID>', a.id, 'missing' from curr_concept_s a left join curr_description_s b on a.id = b.conceptid where b.id is null"));
+		Assert.assertNull(SharedScanStatement.parse("drop table if exists v_act_srt"));
+	}
+
+	@Test
+	public void testFuse() {
+		final String sql = SharedScanStatement.fuse(Arrays.asList(SharedScanStatement.parse(INACTIVE_MODIFIER), SharedScanStatement.parse(ISA_RELGROUP)));
+		Assert.assertTrue(sql.startsWith("insert into qa_result (runid, assertionuuid, concept_id, details) select case shared_scan.n when 0 then <RUNID> when 1 then <RUNID> end, "));
+		Assert.assertTrue(sql.contains(" from curr_stated_relationship_s a straight_join (select 0 as n union all select 1) shared_scan where "));
+		Assert.assertTrue(sql.endsWith("(shared_scan.n = 0 and (a.active = '1' and a.modifierid not in (select id from curr_concept_s where active = '1')))"
+				+ " or (shared_scan.n = 1 and (a.active = '1' and a.typeid = '116680003' and a.relationshipgroup != '0'))"));
+	}
+
+	@Test
+	public void testWithRowLimit() {
+		Assert.assertEquals(INACTIVE_MODIFIER + "\nlimit 11", SharedScanStatement.withRowLimit(INACTIVE_MODIFIER, 11));
+		// a limit in a sub query does not cap the insert
+		final String limitedSubQuery = "insert into qa_result (runid, assertionuuid, concept_id, details) "
+				+ "select <RUNID>, '<ASSERTIONUUID>', a.id, 'first' from curr_concept_s a where a.id in (select id from curr_concept_s limit 1)";
+		Assert.assertEquals(limitedSubQuery + "\nlimit 11", SharedScanStatement.withRowLimit(limitedSubQuery, 11));
+		final String limited = ISA_RELGROUP + " limit 5";
+		Assert.assertEquals(limited, SharedScanStatement.withRowLimit(limited, 11));
+		Assert.assertEquals("drop table if exists v_act_srt", SharedScanStatement.withRowLimit("drop table if exists v_act_srt", 11));
+	}
+
+	@Test
+	public void testShareRunTime() {
+		final Assertion slow = new Assertion();
+		slow.setUuid(UUID.randomUUID());
+		final Assertion fast = new Assertion();
+		fast.setUuid(UUID.randomUUID());
+		final Assertion unknown = new Assertion();
+		unknown.setUuid(UUID.randomUUID());
+		final Map<UUID, Long> expectedRuntimes = new HashMap<>();
+		expectedRuntimes.put(slow.getUuid(), 3000L);
+		expectedRuntimes.put(fast.getUuid(), 1000L);
+		final List<Assertion> assertions = Arrays.asList(slow, fast, unknown);
+		final Map<Assertion, Long> runTimes = AssertionExecutionServiceImpl.shareRunTime(assertions, 6000, expectedRuntimes);
+		Assert.assertEquals(Long.valueOf(3000), runTimes.get(slow));
+		Assert.assertEquals(Long.valueOf(1000), runTimes.get(fast));
+		// the average of the assertions with a history
+		Assert.assertEquals(Long.valueOf(2000), runTimes.get(unknown));
+		final Map<Assertion, Long> withoutHistory = AssertionExecutionServiceImpl.shareRunTime(assertions, 6000, Collections.<UUID, Long>emptyMap());
+		Assert.assertEquals(Long.valueOf(2000), withoutHistory.get(slow));
+		Assert.assertEquals(Long.valueOf(2000), withoutHistory.get(fast));
+	}
+
+	@Test
+	public void testIsResultInsert() {
+		Assert.assertTrue(AssertionExecutionServiceImpl.isResultInsert("insert into rvf.qa_result_7 (run_id) select 7", "rvf.qa_result_7"));
+		Assert.assertTrue(AssertionExecutionServiceImpl.isResultInsert("INSERT  INTO\n\trvf.qa_result_7(run_id) select 7", "rvf.qa_result_7"));
+		Assert.assertFalse(AssertionExecutionServiceImpl.isResultInsert("insert into rvf.qa_result_71 (run_id) select 71", "rvf.qa_result_7"));
+		Assert.assertFalse(AssertionExecutionServiceImpl.isResultInsert("insert into temp_table select * from rvf.qa_result_7", "rvf.qa_result_7"));
+	}
+}
@@ -0,0 +1,56 @@
+package org.ihtsdo.rvf.execution.service.impl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StorageProfileTest {
+
+	private static final String CONCEPT_DDL = "create table concept_s(\n"
+			+ "id bigint(20) not null,\n"
+			+ "effectivetime char(8) not null,\n"
+			+ "active char(1) not null,\n"
+			+ "key idx_id(id)\n"
+			+ ") engine=myisam default charset=utf8;";
+
+	@Test
+	public void testDefaultProfileKeepsDefinitions() {
+		final StorageProfile profile = new StorageProfile();
+		Assert.assertEquals(CONCEPT_DDL.replace("engine=myisam", "engine=MyISAM"), profile.applyToReleaseTables(CONCEPT_DDL));
+		Assert.assertEquals("engine=MyISAM", profile.getTemporaryTableClause());
+	}
+
+	@Test
+	public void testReleaseEngineAndColumnTypes() {
+		final StorageProfile profile = new StorageProfile();
+		profile.setReleaseEngine("InnoDB");
+		profile.setReleaseTableOptions("ROW_FORMAT=COMPRESSED KEY_BLOCK_SIZE=8");
+		profile.setReleaseColumnTypes("effectivetime=date; active=tinyint(1)");
+		final String ddl = profile.applyToReleaseTables(CONCEPT_DDL);
+		Assert.assertTrue(ddl.contains(") engine=InnoDB ROW_FORMAT=COMPRESSED KEY_BLOCK_SIZE=8 default charset=utf8;"));
+		Assert.assertTrue(ddl.contains("\neffectivetime date not null,\n"));
+		Assert.assertTrue(ddl.contains("\nactive tinyint(1) not null,\n"));
+		Assert.assertTrue(ddl.contains("\nid bigint(20) not null,\n"));
+		Assert.assertTrue(ddl.contains("key idx_id(id)"));
+	}
+
+	@Test
+	public void testTemporaryEngine() {
+		final StorageProfile profile = new StorageProfile();
+		profile.setTemporaryEngine("MEMORY");
+		Assert.assertEquals("engine=MEMORY", profile.getTemporaryTableClause());
+	}
+
+	@Test
+	public void testMemoryEngineFallsBackForTextColumns() {
+		final StorageProfile profile = new StorageProfile();
+		profile.setTemporaryEngine("MEMORY");
+		Assert.assertEquals("engine=MEMORY", profile.getTemporaryTableClause("create table temp_term(conceptid bigint(20), term varchar(255))"));
+		Assert.assertEquals("engine=MyISAM", profile.getTemporaryTableClause("create table temp_term(conceptid bigint(20), term text)"));
+		Assert.assertEquals("engine=MyISAM", profile.getTemporaryTableClause("create table temp_term(conceptid bigint(20), term MEDIUMTEXT)"));
+		Assert.assertEquals("engine=MEMORY", profile.getTemporaryTableClauseForReleaseColumns("id", "effectivetime"));
+		profile.setReleaseColumnTypes("effectivetime=text");
+		Assert.assertEquals("engine=MyISAM", profile.getTemporaryTableClauseForReleaseColumns("id", "effectivetime"));
+		profile.setTemporaryEngine("InnoDB");
+		Assert.assertEquals("engine=InnoDB", profile.getTemporaryTableClause("create table temp_term(conceptid bigint(20), term text)"));
+	}
+}
@@ -0,0 +1,107 @@
+package org.ihtsdo.rvf.execution.service.test.harness;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Resource;
+
+import org.apache.commons.dbcp.BasicDataSource;
+import org.ihtsdo.rvf.execution.service.TableCopyStatus;
+import org.ihtsdo.rvf.execution.service.impl.ReleaseDataManagerImpl;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+/**
+ * Compares the correlated subquery merge with the staging table merge when combining the snapshot tables of two
+ * release schemas. Both merges must produce the same number of rows per table. The staging table merge of the full
+ * tables must keep every version of both schemas.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(locations = {"/testExecutionServiceContext.xml"})
+public class ReleaseSchemaMergeBenchmarkHarness {
+
+	@Autowired
+	private ReleaseDataManagerImpl releaseDataManager;
+	@Resource(name = "snomedDataSource")
+	private BasicDataSource snomedDataSource;
+	private final String sourceFileA = "../SnomedCT_test1_INT_20140131.zip";
+
+	@Test
+	public void testMergeEngines() throws Exception {
+		final File fileA = new File(sourceFileA);
+		final File fileB = new File(getClass().getResource("/SnomedCT_Release_INT_20140131.zip").toURI());
+		releaseDataManager.loadSnomedData("merge_benchmark_a", new ArrayList<String>(), fileA);
+		releaseDataManager.loadSnomedData("merge_benchmark_b", new ArrayList<String>(), fileB);
+
+		releaseDataManager.setMergeStagingTables(null);
+		final Map<String, TableCopyStatus> correlated = merge("merge_benchmark_correlated");
+		releaseDataManager.setMergeStagingTables("*");
+		final Map<String, TableCopyStatus> staging = merge("merge_benchmark_staging");
+
+		long correlatedMillis = 0;
+		long stagingMillis = 0;
+		for (final String tableName : correlated.keySet()) {
+			final TableCopyStatus before = correlated.get(tableName);
+			final TableCopyStatus after = staging.get(tableName);
+			assertEquals("Rows merged into " + tableName, before.getRowsCopied(), after.getRowsCopied());
+			System.out.println(tableName + " rows:" + before.getRowsCopied() + " correlated:" + before.getDurationMillis()
+					+ " ms staging:" + after.getDurationMillis() + " ms");
+			correlatedMillis += before.getDurationMillis();
+			stagingMillis += after.getDurationMillis();
+		}
+		System.out.println("Total correlated:" + correlatedMillis + " ms staging:" + stagingMillis + " ms");
+		for (final String version : new String[] {"merge_benchmark_a", "merge_benchmark_b", "merge_benchmark_correlated", "merge_benchmark_staging"}) {
+			releaseDataManager.dropVersion(version);
+		}
+	}
+
+	@Test
+	public void testStagingMergeKeepsAllVersionsOfFullTables() throws Exception {
+		final File fileA = new File(sourceFileA);
+		final File fileB = new File(getClass().getResource("/SnomedCT_Release_INT_20140131.zip").toURI());
+		releaseDataManager.loadSnomedData("merge_benchmark_a", new ArrayList<String>(), fileA);
+		releaseDataManager.loadSnomedData("merge_benchmark_b", new ArrayList<String>(), fileB);
+
+		releaseDataManager.setMergeStagingTables("*");
+		final Map<String, TableCopyStatus> staging = merge("merge_benchmark_full", "%_f");
+		try (Connection connection = snomedDataSource.getConnection();
+			Statement statement = connection.createStatement()) {
+			for (final TableCopyStatus status : staging.values()) {
+				final String tableName = status.getTableName();
+				try (ResultSet resultSet = statement.executeQuery("select count(*) from (select id, effectivetime from rvf_merge_benchmark_a." + tableName
+						+ " union select id, effectivetime from rvf_merge_benchmark_b." + tableName + ") versions")) {
+					resultSet.next();
+					assertEquals("Versions merged into " + tableName, resultSet.getLong(1), status.getRowsCopied());
+				}
+			}
+		}
+		for (final String version : new String[] {"merge_benchmark_a", "merge_benchmark_b", "merge_benchmark_full"}) {
+			releaseDataManager.dropVersion(version);
+		}
+	}
+
+	private Map<String, TableCopyStatus> merge(final String destinationVersion) throws Exception {
+		return merge(destinationVersion, "%_s");
+	}
+
+	private Map<String, TableCopyStatus> merge(final String destinationVersion, final String tableNamePattern) throws Exception {
+		releaseDataManager.createSchema(destinationVersion);
+		final List<TableCopyStatus> statuses = releaseDataManager.copyTableData("merge_benchmark_a", "merge_benchmark_b", destinationVersion, tableNamePattern, null);
+		final Map<String, TableCopyStatus> result = new LinkedHashMap<>();
+		for (final TableCopyStatus status : statuses) {
+			result.put(status.getTableName(), status);
+		}
+		return result;
+	}
+}
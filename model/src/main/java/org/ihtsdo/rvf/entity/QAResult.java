@@ -11,6 +11,8 @@ import javax.persistence.Lob;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.Index;
+
 
 @Entity
 @Table(name = "qa_result")
@@ -23,6 +25,7 @@ public class QAResult implements Serializable {
 	private Long id;
 	
 	@Column(name = "run_id")
+	@Index(name="qa_result_run_assertion_idx",columnNames={"run_id", "assertion_id"})
 	private Long runId;
 
 	@JoinColumn(name ="assertion_id")
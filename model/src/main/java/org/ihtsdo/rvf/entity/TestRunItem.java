@@ -18,6 +18,10 @@ public class TestRunItem implements Comparable<TestRunItem>{
 	private String failureMessage;
 	private List<FailureDetail> firstNInstances;
 	private Long extractResultInMillis;
+	private Long resultRowCount;
+	private Long resultWriteInMillis;
+	private Boolean timedOut;
+	private Boolean failureCountExceedsExportMax;
 
 	/**
 	 * Empty constructor for IOC
@@ -47,7 +51,9 @@ public class TestRunItem implements Comparable<TestRunItem>{
 				"executionId=" + executionId + '\'' +
 				"testCategory=" + testCategory + '\'' +
 				"runTime=" + queryInMilliSeconds + '\'' +
-				"failureCount=" + failureCount +
+				"failureCount=" + failureCount + '\'' +
+				"resultRowCount=" + resultRowCount + '\'' +
+				"resultWriteTime=" + resultWriteInMillis +
 				'}';
 	}
 
@@ -119,6 +125,51 @@ public class TestRunItem implements Comparable<TestRunItem>{
 		this.extractResultInMillis = extractResultInMillis;
 	}
 
+	/**
+	 * @return the number of rows the test wrote to the QA result table
+	 */
+	public Long getResultRowCount() {
+		return resultRowCount;
+	}
+
+	public void setResultRowCount(Long resultRowCount) {
+		this.resultRowCount = resultRowCount;
+	}
+
+	/**
+	 * @return the time spent writing rows to the QA result table
+	 */
+	public Long getResultWriteInMillis() {
+		return resultWriteInMillis;
+	}
+
+	public void setResultWriteInMillis(Long resultWriteInMillis) {
+		this.resultWriteInMillis = resultWriteInMillis;
+	}
+
+	/**
+	 * @return true when the test has been cancelled for exceeding its time budget, null otherwise
+	 */
+	public Boolean getTimedOut() {
+		return timedOut;
+	}
+
+	public void setTimedOut(Boolean timedOut) {
+		this.timedOut = timedOut;
+	}
+
+	/**
+	 * @return true when the test stopped once it found more failures than are exported, in which case the failure
+	 * count is a lower bound, null otherwise
+	 */
+	public Boolean getFailureCountExceedsExportMax() {
+		return failureCountExceedsExportMax;
+	}
+
+	public void setFailureCountExceedsExportMax(Boolean failureCountExceedsExportMax) {
+		this.failureCountExceedsExportMax = failureCountExceedsExportMax;
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -1,11 +1,14 @@
 package org.ihtsdo.rvf.validation;
 
-import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
@@ -13,9 +16,9 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.regex.Pattern;
 
 import org.apache.commons.lang3.StringUtils;
+import org.ihtsdo.rvf.validation.Rf2ColumnValidator.ValueFormat;
 import org.ihtsdo.rvf.validation.log.ValidationLog;
 import org.ihtsdo.rvf.validation.model.ColumnType;
 import org.ihtsdo.rvf.validation.resource.ResourceProvider;
@@ -29,14 +32,6 @@ import org.slf4j.LoggerFactory;
 
 public class ColumnPatternTester {
 
-	private static final Pattern UUID_PATTERN = Pattern.compile("^[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}$");
-	private static final Pattern DATE_PATTERN = Pattern.compile("^\\d{8}$");
-	private static final Pattern BOOLEAN_PATTERN = Pattern.compile("[0-1]");
-	private static final Pattern SCTID_PATTERN = Pattern.compile("^\\d{6,18}$");
-	private static final Pattern INTEGER_PATTERN = Pattern.compile("\\d+");
-	private static final Pattern NON_ZERO_INTEGER_PATTERN = Pattern.compile("^[1-9][0-9]*$");
-	private static final Pattern BLANK = Pattern.compile("^$");
-	private static final Pattern NOT_BLANK = Pattern.compile("^(?=\\s*\\S).*$");
 	private static final String UTF_8 = "UTF-8";
 	private static final String FILE_NAME_TEST_TYPE = "FileNameTest";
 	private static final String COLUMN_COUNT_TEST_TYPE = "ColumnCountTest";
@@ -47,10 +42,16 @@ public class ColumnPatternTester {
 	private static final String COLUMN_DATE_TEST_TYPE = "ColumnDateTest";
 	private static final String COLUMN_BOOLEAN_TEST_TYPE = "ColumnBooleanTest";
 
+	private static final long DEFAULT_PARALLEL_SCAN_MIN_FILE_SIZE = 64L * 1024 * 1024;
+	private static final long MAX_SEGMENT_SIZE = 1L << 30;
+	private static final long HEADER_MAX_SIZE = 1024 * 1024;
+
 	private final ValidationLog validationLog;
 	private final ResourceProvider resourceManager;
 	private final TestReportable testReport;
-	private Map<ColumnType, PatternTest> columnTests;
+	private long parallelScanMinFileSize = DEFAULT_PARALLEL_SCAN_MIN_FILE_SIZE;
+	private ExecutorService segmentExecutor;
+	private RF2FileStructureTester fileStructureTester;
 	
 	private Logger logger = LoggerFactory.getLogger(ColumnPatternTester.class.getName());
 
@@ -58,7 +59,6 @@ public class ColumnPatternTester {
 		this.validationLog = validationLog;
 		this.resourceManager = resourceManager;
 		this.testReport = testReport;
-		columnTests = assembleColumnTests();
 	}
 
 	public void runTests() {
@@ -72,6 +72,7 @@ public class ColumnPatternTester {
 		final List<String> fileNames = resourceManager.getFileNames();
 		final SchemaFactory schemaFactory = new SchemaFactory();
 		ExecutorService executor = Executors.newCachedThreadPool();
+		segmentExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
 		List<Future<Long>> tasks = new ArrayList<>();
 		for (final String fileName : fileNames) {
 			Future<Long> task = executor.submit(new Callable<Long>() {
@@ -94,6 +95,8 @@ public class ColumnPatternTester {
 				logger.error("Error occurred when executing column validations", e);
 			}
 		}
+		executor.shutdown();
+		segmentExecutor.shutdown();
 		validationLog.info("{} files and {} lines tested in {} milliseconds.", filesTested, linesTested, (new Date().getTime() - startTime.getTime()));
 	}
 
@@ -115,52 +118,32 @@ public class ColumnPatternTester {
 		} catch (final FileRecognitionException e) {
 			// log the problem and continue to the next file
 			testReport.addError("0-0", startTime, fileName, resourceManager.getFilePath(), "", FILE_NAME_TEST_TYPE, "RF2 Compilant filename", fileName, e.getMessage());
+			testFileStructure(fileName, startTime);
 			return linesTested;
 		}
 		if (tableSchema == null) {
 			// log the problem and continue to the next file
 			testReport.addError("0-0", startTime, fileName, resourceManager.getFilePath(), "", FILE_NAME_TEST_TYPE, "RF2 Compilant filename", fileName, "unexpected filename format.");
+			testFileStructure(fileName, startTime);
 			return linesTested;
 		}
 
 		final boolean releaseInputFile = fileName.startsWith("rel2");
-		List<Field> fields = tableSchema.getFields();
-		if (fields != null) {
-			try (BufferedReader reader = resourceManager.getReader(fileName, Charset.forName(UTF_8))) {
-				String line;
-				long lineNumber = 0;
-
-				String[] columnData;
-				final int configColumnCount = fields.size();
-
-				while ((line = reader.readLine()) != null) {
-					int columnIndex = 0;
-					linesTested++;
-					lineNumber++;
-					columnData = line.split("\t");
-
-					final int dataColumnCount = columnData.length;
-
-					if (!(validateRow(startTime, fileName, line, lineNumber, configColumnCount, dataColumnCount))) {
-						continue;
-					}
-					//check whether header fields not containing null values due to specific additional fields
-					if ( (lineNumber == 1) && havingAdditionalFields(tableSchema)) {
-						schemaFactory.populateExtendedRefsetAdditionalFieldNames(tableSchema, line);
-						fields = tableSchema.getFields();
-					}
-					for (final Field column : fields) {
-						final String value = columnData[columnIndex];
-						if (lineNumber == 1) {
-							// Test header value
-							testHeaderValue(value, column, startTime, fileName, columnIndex);
-						} else {
-							testDataValue(lineNumber + "-" + columnIndex, lineNumber, value, column, startTime, fileName, releaseInputFile);
-						}
-						columnIndex++;
-					}
+		if (tableSchema.getFields() != null) {
+			final LineStructure lineStructure = new LineStructure();
+			try {
+				if (parallelScanMinFileSize > 0 && resourceManager.getSize(fileName) >= parallelScanMinFileSize) {
+					linesTested = runSegmentedTestForFile(fileName, schemaFactory, tableSchema, startTime, releaseInputFile, lineStructure);
+				} else {
+					linesTested = runSequentialTestForFile(fileName, schemaFactory, tableSchema, startTime, releaseInputFile, lineStructure);
+				}
+				if (fileStructureTester != null && fileName.endsWith(".txt")) {
+					fileStructureTester.testLineStructure(fileName, lineStructure, startTime);
+				}
+			} catch (final IOException | ExecutionException | InterruptedException e) {
+				if (e instanceof InterruptedException) {
+					Thread.currentThread().interrupt();
 				}
-			} catch (final IOException e) {
 				validationLog.executionError("Problem reading file {}", fileName, e);
 				testReport.addError("0-0", startTime, fileName, resourceManager.getFilePath(), null, FILE_NAME_TEST_TYPE, "", fileName, "Unable to read the file");
 			}
@@ -168,11 +151,161 @@ public class ColumnPatternTester {
 		} else {
 			validationLog.executionError("Invalid fileName {} does not match the expected pattern ", fileName);
 			testReport.addError("0-0", startTime, fileName, resourceManager.getFilePath(), "", FILE_NAME_TEST_TYPE, "", fileName, "valid release 2 filename");
+			testFileStructure(fileName, startTime);
 		}
 		return linesTested;
 		
 	}
 
+	/**
+	 * Tests the line terminators of a file whose columns can not be tested, reading it just for that.
+	 */
+	private void testFileStructure(final String fileName, final Date startTime) {
+		if (fileStructureTester != null && fileName.endsWith(".txt")) {
+			fileStructureTester.testFile(fileName, startTime);
+		}
+	}
+
+	private long runSequentialTestForFile(final String fileName, final SchemaFactory schemaFactory, final TableSchema tableSchema,
+			final Date startTime, final boolean releaseInputFile, final LineStructure lineStructure) throws IOException {
+		final LineTester lineTester = new LineTester(fileName, schemaFactory, tableSchema, testReport, startTime, releaseInputFile);
+		long lineNumber = 0;
+		try (TerminatedLineReader reader = new TerminatedLineReader(resourceManager.getReader(fileName, Charset.forName(UTF_8)))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lineStructure.addLine(line, reader.getTerminator());
+				lineTester.testLine(line, ++lineNumber);
+			}
+		}
+		return lineNumber;
+	}
+
+	/**
+	 * Tests the header and then the rest of a large file in segments that are tested at the same time, reading the
+	 * file through a memory mapping. The lines of each segment are counted first so that each segment knows the number
+	 * of its first line, and the errors of each segment are held back until the segments before it have been reported
+	 * so that the report sees them in the order of the lines. The line terminators of each segment are collected the
+	 * same way and appended to the lineStructure in order.
+	 */
+	private long runSegmentedTestForFile(final String fileName, final SchemaFactory schemaFactory, final TableSchema tableSchema,
+			final Date startTime, final boolean releaseInputFile, final LineStructure lineStructure) throws IOException, InterruptedException, ExecutionException {
+		final File file = resourceManager.getFile(fileName);
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			final long size = channel.size();
+			// the header can name additional fields, so it is tested before the segments
+			final MappedLineReader headerReader = new MappedLineReader(channel, 0, Math.min(size, HEADER_MAX_SIZE));
+			final String header = headerReader.readLine();
+			if (header == null) {
+				return 0;
+			}
+			lineStructure.addLine(header, headerReader.getTerminator());
+			new LineTester(fileName, schemaFactory, tableSchema, testReport, startTime, releaseInputFile).testLine(header, 1);
+
+			final List<Long> boundaries = MappedLineReader.split(channel, headerReader.getPosition(), size,
+					Runtime.getRuntime().availableProcessors(), MAX_SEGMENT_SIZE);
+			final List<Future<Long>> lineCounts = new ArrayList<>();
+			for (int i = 0; i + 1 < boundaries.size(); i++) {
+				final long start = boundaries.get(i);
+				final long end = boundaries.get(i + 1);
+				lineCounts.add(segmentExecutor.submit(new Callable<Long>() {
+					@Override
+					public Long call() throws IOException {
+						return new MappedLineReader(channel, start, end).countLines();
+					}
+				}));
+			}
+			final List<Future<SegmentReport>> segments = new ArrayList<>();
+			final List<LineStructure> segmentStructures = new ArrayList<>();
+			long nextLineNumber = 2;
+			try {
+				for (int i = 0; i + 1 < boundaries.size(); i++) {
+					final long start = boundaries.get(i);
+					final long end = boundaries.get(i + 1);
+					final long firstLineNumber = nextLineNumber;
+					final LineStructure segmentStructure = new LineStructure();
+					segmentStructures.add(segmentStructure);
+					segments.add(segmentExecutor.submit(new Callable<SegmentReport>() {
+						@Override
+						public SegmentReport call() throws IOException {
+							final SegmentReport report = new SegmentReport(testReport);
+							final LineTester lineTester = new LineTester(fileName, schemaFactory, tableSchema, report, startTime, releaseInputFile);
+							final MappedLineReader reader = new MappedLineReader(channel, start, end);
+							long lineNumber = firstLineNumber;
+							String line;
+							while ((line = reader.readLine()) != null) {
+								segmentStructure.addLine(line, reader.getTerminator());
+								lineTester.testLine(line, lineNumber++);
+							}
+							return report;
+						}
+					}));
+					nextLineNumber += lineCounts.get(i).get();
+				}
+				for (int i = 0; i < segments.size(); i++) {
+					segments.get(i).get().reportErrors();
+					lineStructure.append(segmentStructures.get(i));
+				}
+			} finally {
+				for (final Future<SegmentReport> segment : segments) {
+					segment.cancel(true);
+				}
+			}
+			return nextLineNumber - 1;
+		}
+	}
+
+	/**
+	 * Tests the lines of a file, or of a segment of it, on a single thread. It has its own column tests, which keep the
+	 * arguments of their last error.
+	 */
+	private class LineTester {
+
+		private final String fileName;
+		private final SchemaFactory schemaFactory;
+		private final TableSchema tableSchema;
+		private final TestReportable report;
+		private final Date startTime;
+		private final boolean releaseInputFile;
+		private final int configColumnCount;
+		// the columns are checked in place, without splitting the line into strings
+		private final Rf2ColumnValidator columnData = new Rf2ColumnValidator();
+		private final Map<ColumnType, PatternTest> columnTests = assembleColumnTests();
+
+		private LineTester(final String fileName, final SchemaFactory schemaFactory, final TableSchema tableSchema, final TestReportable report,
+				final Date startTime, final boolean releaseInputFile) {
+			this.fileName = fileName;
+			this.schemaFactory = schemaFactory;
+			this.tableSchema = tableSchema;
+			this.report = report;
+			this.startTime = startTime;
+			this.releaseInputFile = releaseInputFile;
+			configColumnCount = tableSchema.getFields().size();
+		}
+
+		private void testLine(final String line, final long lineNumber) {
+			int columnIndex = 0;
+			final int dataColumnCount = columnData.scan(line);
+
+			if (!(validateRow(report, startTime, fileName, line, lineNumber, configColumnCount, dataColumnCount))) {
+				return;
+			}
+			//check whether header fields not containing null values due to specific additional fields
+			if ( (lineNumber == 1) && havingAdditionalFields(tableSchema)) {
+				schemaFactory.populateExtendedRefsetAdditionalFieldNames(tableSchema, line);
+			}
+			for (final Field column : tableSchema.getFields()) {
+				if (lineNumber == 1) {
+					// Test header value
+					testHeaderValue(report, columnData.getValue(columnIndex), column, startTime, fileName, columnIndex);
+				} else {
+					testDataValue(report, columnTests, lineNumber, columnIndex, line, columnData.getStart(columnIndex),
+							columnData.getEnd(columnIndex), column, startTime, fileName, releaseInputFile);
+				}
+				columnIndex++;
+			}
+		}
+	}
+
 	private boolean havingAdditionalFields(final TableSchema tableSchema) {
 		for (final Field field : tableSchema.getFields()) {
 			if (field.getName() == null) {
@@ -183,14 +316,19 @@ public class ColumnPatternTester {
 	}
 
 	public boolean validateRow(final Date startTime, final String fileName, final String line, final long lineNumber, final int configColumnCount, final int dataColumnCount) {
+		return validateRow(testReport, startTime, fileName, line, lineNumber, configColumnCount, dataColumnCount);
+	}
+
+	private boolean validateRow(final TestReportable report, final Date startTime, final String fileName, final String line, final long lineNumber,
+			final int configColumnCount, final int dataColumnCount) {
 		if (StringUtils.isEmpty(line)) {
 			validationLog.assertionError("Empty line at line {}", lineNumber);
-			testReport.addError(lineNumber + "-0", startTime, fileName, resourceManager.getFilePath(), "Empty Row", EMPTY_ROW_TEST, "", line, "expected data");
+			report.addError(lineNumber + "-0", startTime, fileName, resourceManager.getFilePath(), "Empty Row", EMPTY_ROW_TEST, "", line, "expected data");
 			return false;
 		}
 		if (dataColumnCount != configColumnCount) {
 			validationLog.assertionError("Column count on line {} does not match expectation: expected {}, actual {}", lineNumber, configColumnCount, dataColumnCount);
-			testReport.addError(lineNumber + "-0", startTime, fileName, resourceManager.getFilePath(), "Column Count Mismatch", COLUMN_COUNT_TEST_TYPE, "", String.valueOf(dataColumnCount), String.valueOf(configColumnCount));
+			report.addError(lineNumber + "-0", startTime, fileName, resourceManager.getFilePath(), "Column Count Mismatch", COLUMN_COUNT_TEST_TYPE, "", String.valueOf(dataColumnCount), String.valueOf(configColumnCount));
 			// cannot continue at this point as any validation will be off
 			return false;
 		}
@@ -199,7 +337,7 @@ public class ColumnPatternTester {
 		if (line.endsWith("\t") || line.endsWith(" ")) {
 			// extra spaces lets see if it is at the end, can still continue testing
 			validationLog.assertionError("Extra space at the end of line {}, expected {}, actual {}", lineNumber, line.trim(), line);
-			testReport.addError(lineNumber + "-" + dataColumnCount + 1, startTime, fileName, resourceManager.getFilePath(), "End of Row Space", ROW_SPACE_TEST_TYPE, "", line, line.trim());
+			report.addError(lineNumber + "-" + dataColumnCount + 1, startTime, fileName, resourceManager.getFilePath(), "End of Row Space", ROW_SPACE_TEST_TYPE, "", line, line.trim());
 			// continue testing
 			return true;
 		}
@@ -207,27 +345,33 @@ public class ColumnPatternTester {
 		return true;
 	}
 
-	private void testDataValue(final String id, final long lineNumber, final String value, final Field column, final Date startTime, final String fileName, final boolean isReleaseInputFile) {
+	/**
+	 * Tests a single value, building the id of the value out of its line number and column index only when an error or
+	 * a success is written with it.
+	 */
+	private void testDataValue(final TestReportable report, final Map<ColumnType, PatternTest> columnTests, final long lineNumber, final int columnIndex,
+			final String line, final int start, final int end, final Field column, final Date startTime, final String fileName, final boolean isReleaseInputFile) {
 
 		final ColumnType columnType = getColumnType(column);
 
 		final PatternTest columnTest = columnTests.get(columnType);
 
 		if (columnTest != null) {
-			if (canBeBlank(value, column) || columnTest.validate(column, lineNumber, value)) {
-				testReport.addSuccess(id, startTime, fileName, resourceManager.getFilePath(), column.getName(),
+			if (canBeBlank(start, end, column) || columnTest.validate(column, lineNumber, line, start, end)) {
+				report.addSuccess(report.isWriteSuccesses() ? lineNumber + "-" + columnIndex : null, startTime, fileName, resourceManager.getFilePath(), column.getName(),
 						columnTest.getTestType(), columnTest.getPatternString());
 			} else {
+				final String value = line.substring(start, end);
 				final String testedValue = StringUtils.isNoneEmpty(value) ? value : "No Value";
 				validationLog.assertionError(columnTest.getMessage(), columnTest.getErrorArgs());
-				testReport.addError(id, startTime, fileName, resourceManager.getFilePath(), column.getName(),
+				report.addError(lineNumber + "-" + columnIndex, startTime, fileName, resourceManager.getFilePath(), column.getName(),
 						columnTest.getTestType(), columnTest.getPatternString(), testedValue, columnTest.getExpectedValue());
 			}
 		}
 	}
 
-	private boolean canBeBlank(final String value, final Field column) {
-		return !column.isMandatory() && isBlank(value);
+	private boolean canBeBlank(final int start, final int end, final Field column) {
+		return !column.isMandatory() && Rf2ColumnValidator.isBlank(start, end);
 	}
 
 	private ColumnType getColumnType(final Field field) {
@@ -250,76 +394,241 @@ public class ColumnPatternTester {
 		return null;
 	}
 
-	private void testHeaderValue(final String value, final Field column, final Date startTime, final String fileName, final int colIndex) {
+	private void testHeaderValue(final TestReportable report, final String value, final Field column, final Date startTime, final String fileName, final int colIndex) {
 		final String expectedColumnName = column.getName();
 		if (expectedColumnName == null) {
 			validationLog.info("Column name in the {} file is expected to be null actual '{}' at column {}", fileName, value, colIndex+1);
 			column.setName(value);
 		} else if (!expectedColumnName.equalsIgnoreCase(value)) {
 			validationLog.assertionError("Column name does not match expected value: expected '{}', actual '{}'", expectedColumnName, value);
-			testReport.addError("1-" + colIndex, startTime, fileName, resourceManager.getFilePath(), expectedColumnName, COLUMN_HEADING_TEST, "", value, expectedColumnName);
+			report.addError("1-" + colIndex, startTime, fileName, resourceManager.getFilePath(), expectedColumnName, COLUMN_HEADING_TEST, "", value, expectedColumnName);
 		} else {
-			testReport.addSuccess("1-" + colIndex, startTime, fileName, resourceManager.getFilePath(), expectedColumnName, COLUMN_HEADING_TEST, "");
+			report.addSuccess("1-" + colIndex, startTime, fileName, resourceManager.getFilePath(), expectedColumnName, COLUMN_HEADING_TEST, "");
 		}
 	}
 
 	private Map<ColumnType, PatternTest> assembleColumnTests() {
-		columnTests = new HashMap<>();
+		final Map<ColumnType, PatternTest> columnTests = new HashMap<>();
 
 		columnTests.put(ColumnType.SCTID, new PatternTest("sctid", "Value does not match SCTID pattern on line {}, column name '{}': value '{}'",
-				SCTID_PATTERN));
+				ValueFormat.SCTID));
 		columnTests.put(ColumnType.REL_SCTID, new PatternTest("sctid", "Value does not match SCTID or UUID pattern on line {}, column name '{}': value '{}'",
-				SCTID_PATTERN, UUID_PATTERN));
+				ValueFormat.SCTID, ValueFormat.UUID));
 
 		columnTests.put(ColumnType.UUID, new PatternTest("uuid", "Value does not match UUID pattern on line {}, column name '{}': value '{}'",
-				UUID_PATTERN));
+				ValueFormat.UUID));
 		columnTests.put(ColumnType.REL_UUID, new PatternTest("uuid", "Value does not match UUID or Blank patterns on line {}, column name '{}': value '{}'",
-				UUID_PATTERN, BLANK));
+				ValueFormat.UUID, ValueFormat.BLANK));
 
 		columnTests.put(ColumnType.TIME, new DateTimeTest("dateStamp", "Value does not match Time pattern on line {}, column name '{}': value '{}'"));
 		columnTests.put(ColumnType.REL_TIME, new RelDateTimeTest("dateStamp", "Value does not match Time or Blank pattern on line {}, column name '{}': value '{}'"));
 
 		columnTests.put(ColumnType.BOOLEAN, new BooleanPatternTest("boolean", "Value does not match Boolean pattern on line {}, column name '{}': value '{}'",
-				"1 or 0", BOOLEAN_PATTERN));
+				"1 or 0", ValueFormat.BOOLEAN));
 
-		columnTests.put(ColumnType.INTEGER, new PatternTest("integer", "Value does not match the required pattern of numbers only on line {}, column name '{}': value '{}'", INTEGER_PATTERN));
+		columnTests.put(ColumnType.INTEGER, new PatternTest("integer", "Value does not match the required pattern of numbers only on line {}, column name '{}': value '{}'", ValueFormat.INTEGER));
 
 		// TODO: I think the only thing we can really test here is the length of the string. KK
-		columnTests.put(ColumnType.STRING, new PatternTest("string", "Value does not match expected on line {}, expected '{}': actual '{}'", NOT_BLANK, BLANK));
+		columnTests.put(ColumnType.STRING, new PatternTest("string", "Value does not match expected on line {}, expected '{}': actual '{}'", ValueFormat.NOT_BLANK, ValueFormat.BLANK));
 
 		return columnTests;
 	}
 
 	public boolean isBlank(final String value) {
-		return BLANK.matcher(value).matches();
+		return value.isEmpty();
+	}
+
+	/**
+	 * @param parallelScanMinFileSize the size in bytes from which a file is tested in segments at the same time, or 0
+	 * to test every file on a single thread
+	 */
+	public void setParallelScanMinFileSize(final long parallelScanMinFileSize) {
+		this.parallelScanMinFileSize = parallelScanMinFileSize;
+	}
+
+	/**
+	 * @param fileStructureTester the tester to check the line terminators of each .txt file with, using the lines read
+	 * for the column tests rather than reading the file again
+	 */
+	public void setFileStructureTester(final RF2FileStructureTester fileStructureTester) {
+		this.fileStructureTester = fileStructureTester;
+	}
+
+	/**
+	 * Holds back the errors of a segment of a file until the segments before it have been reported. The report only
+	 * keeps the first few errors of each test type and column and counts the others, so the segment does the same and
+	 * passes on the number of errors it only counted. Successes are not held back.
+	 */
+	private static class SegmentReport implements TestReportable {
+
+		private final TestReportable report;
+		private final int failureExampleMax;
+		private final Map<String, Map<String, HeldErrors>> errors = new LinkedHashMap<>();
+
+		private SegmentReport(final TestReportable report) {
+			this.report = report;
+			failureExampleMax = report.getFailureExampleMax();
+		}
+
+		@Override
+		public void addError(final String executionId, final Date testTime, final String fileName, final String filePath, final String columnName,
+				final String testType, final String testPattern, final String actualValue, final String expectedValue) {
+			Map<String, HeldErrors> columnErrors = errors.get(testType);
+			if (columnErrors == null) {
+				columnErrors = new LinkedHashMap<>();
+				errors.put(testType, columnErrors);
+			}
+			HeldErrors heldErrors = columnErrors.get(columnName);
+			if (heldErrors == null) {
+				heldErrors = new HeldErrors();
+				columnErrors.put(columnName, heldErrors);
+			}
+			if (heldErrors.errors.size() < failureExampleMax) {
+				heldErrors.errors.add(new HeldError(executionId, testTime, fileName, filePath, columnName, testType, testPattern, actualValue, expectedValue));
+			} else {
+				heldErrors.countedOnly++;
+			}
+		}
+
+		@Override
+		public void addSuccess(final String executionId, final Date testTime, final String fileName, final String filePath, final String columnName,
+				final String testType, final String testPattern) {
+			report.addSuccess(executionId, testTime, fileName, filePath, columnName, testType, testPattern);
+		}
+
+		@Override
+		public boolean isWriteSuccesses() {
+			return report.isWriteSuccesses();
+		}
+
+		private void reportErrors() {
+			for (final Map<String, HeldErrors> columnErrors : errors.values()) {
+				for (final HeldErrors heldErrors : columnErrors.values()) {
+					for (final HeldError error : heldErrors.errors) {
+						reportError(error);
+					}
+					if (heldErrors.countedOnly > 0) {
+						final HeldError lastError = heldErrors.errors.get(heldErrors.errors.size() - 1);
+						report.addErrorCount(lastError.testType, lastError.columnName, heldErrors.countedOnly);
+					}
+				}
+			}
+			errors.clear();
+		}
+
+		private void reportError(final HeldError error) {
+			report.addError(error.executionId, error.testTime, error.fileName, error.filePath, error.columnName, error.testType,
+					error.testPattern, error.actualValue, error.expectedValue);
+		}
+
+		@Override
+		public void addErrorCount(final String testType, final String columnName, final int count) {
+			// counts do not decide which errors are listed, so they need not wait for the segments before
+			report.addErrorCount(testType, columnName, count);
+		}
+
+		@Override
+		public String getResult() {
+			return report.getResult();
+		}
+
+		@Override
+		public int getNumErrors() {
+			return report.getNumErrors();
+		}
+
+		@Override
+		public int getNumSuccesses() {
+			return report.getNumSuccesses();
+		}
+
+		@Override
+		public int getNumTestRuns() {
+			return report.getNumTestRuns();
+		}
+
+		@Override
+		public int getNumberRecordedErrors() {
+			return report.getNumberRecordedErrors();
+		}
+
+		@Override
+		public int getFailureExampleMax() {
+			return failureExampleMax;
+		}
+
+		@Override
+		public String writeSummary() {
+			return report.writeSummary();
+		}
+
+		@Override
+		public void addNewLine() {
+			report.addNewLine();
+		}
+	}
+
+	private static class HeldErrors {
+
+		private final List<HeldError> errors = new ArrayList<>();
+		private int countedOnly;
+	}
+
+	private static class HeldError {
+
+		private final String executionId;
+		private final Date testTime;
+		private final String fileName;
+		private final String filePath;
+		private final String columnName;
+		private final String testType;
+		private final String testPattern;
+		private final String actualValue;
+		private final String expectedValue;
+
+		private HeldError(final String executionId, final Date testTime, final String fileName, final String filePath, final String columnName,
+				final String testType, final String testPattern, final String actualValue, final String expectedValue) {
+			this.executionId = executionId;
+			this.testTime = testTime;
+			this.fileName = fileName;
+			this.filePath = filePath;
+			this.columnName = columnName;
+			this.testType = testType;
+			this.testPattern = testPattern;
+			this.actualValue = actualValue;
+			this.expectedValue = expectedValue;
+		}
 	}
 
 	private class PatternTest {
 
-		protected final Pattern[] patterns;
+		protected final ValueFormat[] formats;
 		protected final String methodName;
 		protected String errorMessage;
 		protected Object[] errorArgs;
 		private String expectedValue;
 
-		public PatternTest(final String methodName, final String errorMessage, final Pattern... patterns) {
+		public PatternTest(final String methodName, final String errorMessage, final ValueFormat... formats) {
 			this.methodName = methodName;
-			this.patterns = patterns;
+			this.formats = formats;
 			this.errorMessage = errorMessage;
 			this.expectedValue = getPatternString();
 		}
 
-		public boolean validate(final Field column, final long lineNumber, final String value) {
-			errorArgs = new String[]{lineNumber + "", column.getName(), value};
-
+		/**
+		 * Checks the value from start to end, exclusive, in the line, only copying it out when it does not match.
+		 */
+		public boolean validate(final Field column, final long lineNumber, final String line, final int start, final int end) {
 			// ignore a null value if this is the case
-			if ((column.getType() == DataType.SCTID_OR_UUID) && isBlank(value)) return true;
+			if ((column.getType() == DataType.SCTID_OR_UUID) && Rf2ColumnValidator.isBlank(start, end)) return true;
 
-			for (final Pattern pattern : patterns) {
-				if (pattern.matcher(value).matches()) {
+			for (final ValueFormat format : formats) {
+				if (format.matches(line, start, end)) {
 					return true;
 				}
 			}
+			final String value = line.substring(start, end);
+			errorArgs = new String[]{lineNumber + "", column.getName(), value};
 			validationLog.assertionError(errorMessage, lineNumber, column.getName(), value);
 			return false;
 		}
@@ -346,12 +655,12 @@ public class ColumnPatternTester {
 
 		public String getPatternString() {
 			final StringBuilder builder = new StringBuilder();
-			builder.append(patterns[0].toString());
-			if (patterns.length > 1) {
-				for (int i = 1; i < patterns.length; i++) {
-					final Pattern pattern = patterns[i];
+			builder.append(formats[0].getPattern());
+			if (formats.length > 1) {
+				for (int i = 1; i < formats.length; i++) {
+					final ValueFormat format = formats[i];
 					builder.append(" or ");
-					builder.append(pattern.toString());
+					builder.append(format.getPattern());
 				}
 			}
 			return builder.toString();
@@ -360,20 +669,20 @@ public class ColumnPatternTester {
 
 	private class BooleanPatternTest extends PatternTest {
 
-		public BooleanPatternTest(final String methodName, final String errorMessage, final String expectedValue, final Pattern pattern) {
-			super(methodName, errorMessage, pattern);
+		public BooleanPatternTest(final String methodName, final String errorMessage, final String expectedValue, final ValueFormat format) {
+			super(methodName, errorMessage, format);
 			setExpectedValue(expectedValue);
 		}
 
 		@Override
-		public boolean validate(final Field column, final long lineNumber, final String value) {
-			errorArgs = new String[]{lineNumber + "", "1 or 2", value};
-
-			for (final Pattern pattern : patterns) {
-				if (pattern.matcher(value).matches()) {
+		public boolean validate(final Field column, final long lineNumber, final String line, final int start, final int end) {
+			for (final ValueFormat format : formats) {
+				if (format.matches(line, start, end)) {
 					return true;
 				}
 			}
+			final String value = line.substring(start, end);
+			errorArgs = new String[]{lineNumber + "", "1 or 2", value};
 			validationLog.assertionError(errorMessage, lineNumber, "1 or 2", value);
 			return false;
 		}
@@ -387,14 +696,14 @@ public class ColumnPatternTester {
 	private class DateTimeTest extends PatternTest {
 
 		public DateTimeTest(final String methodName, final String errorMessage) {
-			super(methodName, errorMessage, DATE_PATTERN);
+			super(methodName, errorMessage, ValueFormat.DATE);
 		}
 
 		@Override
-		public boolean validate(final Field column, final long lineNumber, final String value) {
+		public boolean validate(final Field column, final long lineNumber, final String line, final int start, final int end) {
 			// Date Stamp
-			if (!DATE_PATTERN.matcher(value).matches()) {
-				errorArgs = new String[]{lineNumber + "", column.getName(), value};
+			if (!Rf2ColumnValidator.isDate(line, start, end)) {
+				errorArgs = new String[]{lineNumber + "", column.getName(), line.substring(start, end)};
 				return false;
 			}
 			return true;
@@ -413,8 +722,8 @@ public class ColumnPatternTester {
 		}
 
 		@Override
-		public boolean validate(final Field column, final long lineNumber, final String value) {
-			return value.isEmpty() || super.validate(column, lineNumber, value);
+		public boolean validate(final Field column, final long lineNumber, final String line, final int start, final int end) {
+			return Rf2ColumnValidator.isBlank(start, end) || super.validate(column, lineNumber, line, start, end);
 		}
 
 	}
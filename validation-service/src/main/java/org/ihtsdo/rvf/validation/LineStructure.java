@@ -0,0 +1,86 @@
+package org.ihtsdo.rvf.validation;
+
+/**
+ * What the line terminator checks of an RF2 file need to know about its lines, collected while the lines are read
+ * for the column tests so that the file does not have to be read again. The lines of a file read in segments are
+ * collected per segment and appended in order.
+ */
+public class LineStructure {
+
+	/**
+	 * The characters a line ends with.
+	 */
+	public enum Terminator {
+		CRLF("CRLF"), LF("LF"), CR("CR"), NONE("");
+
+		private final String description;
+
+		private Terminator(final String description) {
+			this.description = description;
+		}
+
+		/**
+		 * @return the terminator with CR for a carriage return and LF for a line feed
+		 */
+		public String getDescription() {
+			return description;
+		}
+	}
+
+	private long lineCount;
+	private long crlfCount;
+	private boolean startsWithCrlf;
+	private Terminator lastTerminator = Terminator.NONE;
+
+	public void addLine(final String line, final Terminator terminator) {
+		if (lineCount == 0) {
+			startsWithCrlf = line.isEmpty() && terminator == Terminator.CRLF;
+		}
+		lineCount++;
+		if (terminator == Terminator.CRLF) {
+			crlfCount++;
+		}
+		lastTerminator = terminator;
+	}
+
+	/**
+	 * Adds the lines of the segment that follows the lines collected so far.
+	 */
+	public void append(final LineStructure next) {
+		if (next.lineCount == 0) {
+			return;
+		}
+		if (lineCount == 0) {
+			startsWithCrlf = next.startsWithCrlf;
+		}
+		lineCount += next.lineCount;
+		crlfCount += next.crlfCount;
+		lastTerminator = next.lastTerminator;
+	}
+
+	public long getLineCount() {
+		return lineCount;
+	}
+
+	/**
+	 * @return the number of lines found when the file is split at each CR+LF, not counting a CR+LF at the start or the
+	 * end of the file, i.e. all lines when every line but possibly the last ends with a CR+LF
+	 */
+	public long getCrlfLineCount() {
+		if (lineCount == 0) {
+			return 0;
+		}
+		long count = crlfCount + 1;
+		if (startsWithCrlf) {
+			count--;
+		}
+		if (lastTerminator == Terminator.CRLF) {
+			count--;
+		}
+		return count;
+	}
+
+	public Terminator getLastTerminator() {
+		return lastTerminator;
+	}
+}
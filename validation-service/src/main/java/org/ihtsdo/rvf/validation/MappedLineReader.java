@@ -0,0 +1,147 @@
+package org.ihtsdo.rvf.validation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads the UTF-8 lines of a part of a file through a memory mapping. Lines end the way they do for a
+ * {@link java.io.BufferedReader}, at a line feed, a carriage return or a carriage return followed by a line feed, so
+ * that a file read in parts has the same lines as when it is read as a whole.
+ */
+public class MappedLineReader {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final byte LF = '\n';
+	private static final byte CR = '\r';
+	private static final int BOUNDARY_SEARCH_SIZE = 8192;
+
+	private final MappedByteBuffer buffer;
+	private final long start;
+	private byte[] line = new byte[1024];
+	private LineStructure.Terminator terminator = LineStructure.Terminator.NONE;
+
+	/**
+	 * Maps the bytes from start to end, exclusive, which can not be more than {@link Integer#MAX_VALUE} of them.
+	 */
+	public MappedLineReader(final FileChannel channel, final long start, final long end) throws IOException {
+		this.start = start;
+		buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+	}
+
+	/**
+	 * @return the next line without its terminator or null at the end of the part
+	 */
+	public String readLine() {
+		if (!buffer.hasRemaining()) {
+			return null;
+		}
+		int length = 0;
+		terminator = LineStructure.Terminator.NONE;
+		while (buffer.hasRemaining()) {
+			final byte b = buffer.get();
+			if (b == LF) {
+				terminator = LineStructure.Terminator.LF;
+				break;
+			}
+			if (b == CR) {
+				terminator = skipLineFeed() ? LineStructure.Terminator.CRLF : LineStructure.Terminator.CR;
+				break;
+			}
+			if (length == line.length) {
+				line = Arrays.copyOf(line, length * 2);
+			}
+			line[length++] = b;
+		}
+		return new String(line, 0, length, UTF_8);
+	}
+
+	/**
+	 * @return how the line last read ended
+	 */
+	public LineStructure.Terminator getTerminator() {
+		return terminator;
+	}
+
+	/**
+	 * Counts the lines left in the part without decoding them.
+	 */
+	public long countLines() {
+		long count = 0;
+		while (buffer.hasRemaining()) {
+			count++;
+			while (buffer.hasRemaining()) {
+				final byte b = buffer.get();
+				if (b == LF) {
+					break;
+				}
+				if (b == CR) {
+					skipLineFeed();
+					break;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return the position in the file of the next line
+	 */
+	public long getPosition() {
+		return start + buffer.position();
+	}
+
+	private boolean skipLineFeed() {
+		if (buffer.hasRemaining() && buffer.get(buffer.position()) == LF) {
+			buffer.get();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Splits the bytes from start to end into about the given number of parts, each of which ends with a line feed or
+	 * at the end. No part is longer than maxSegmentSize unless a single line is.
+	 * @return the positions at which the parts start followed by the end
+	 */
+	public static List<Long> split(final FileChannel channel, final long start, final long end, final int segments, final long maxSegmentSize) throws IOException {
+		final int count = (int) Math.max(segments, (end - start + maxSegmentSize - 1) / maxSegmentSize);
+		final List<Long> boundaries = new ArrayList<>();
+		boundaries.add(start);
+		for (int i = 1; i < count; i++) {
+			final long boundary = nextLineStart(channel, Math.max(start + (end - start) * i / count, boundaries.get(boundaries.size() - 1)), end);
+			if (boundary > boundaries.get(boundaries.size() - 1) && boundary < end) {
+				boundaries.add(boundary);
+			}
+		}
+		boundaries.add(end);
+		return boundaries;
+	}
+
+	/**
+	 * @return the position after the first line feed at or after the position, or the end
+	 */
+	private static long nextLineStart(final FileChannel channel, final long position, final long end) throws IOException {
+		final ByteBuffer window = ByteBuffer.allocate(BOUNDARY_SEARCH_SIZE);
+		long offset = position;
+		while (offset < end) {
+			window.clear();
+			final int read = channel.read(window, offset);
+			if (read <= 0) {
+				break;
+			}
+			for (int i = 0; i < read && offset + i < end; i++) {
+				if (window.get(i) == LF) {
+					return offset + i + 1;
+				}
+			}
+			offset += read;
+		}
+		return end;
+	}
+}
@@ -1,18 +1,15 @@
 package org.ihtsdo.rvf.validation;
 
-import java.io.BufferedReader;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
-import java.util.Scanner;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
-import org.ihtsdo.rvf.validation.impl.StreamTestReport;
 import org.ihtsdo.rvf.validation.log.ValidationLog;
 import org.ihtsdo.rvf.validation.resource.ResourceProvider;
 import org.slf4j.Logger;
@@ -41,7 +38,7 @@ public class RF2FileStructureTester {
 	 * @param resourceManager
 	 * @param testReport
 	 */
-	public RF2FileStructureTester(final ValidationLog validationLog, final ResourceProvider resourceManager, StreamTestReport testReport) {
+	public RF2FileStructureTester(final ValidationLog validationLog, final ResourceProvider resourceManager, TestReportable testReport) {
 		
 		this.validationLog = validationLog;
 		this.resourceManager = resourceManager;
@@ -77,58 +74,48 @@ public class RF2FileStructureTester {
 	}
 	
 	private boolean runTestForFile(String fileName) {
-		//check total line numbers match or not
-		int totalLine = 0;
-		int totalLineScanned = 0;
-		try (BufferedReader reader = resourceManager.getReader(fileName, Charset.forName(UTF_8));
-			Scanner scanner = new Scanner(resourceManager.getReader(fileName, Charset.forName(UTF_8)))) {
-			scanner.useDelimiter(RF2_LINE_SEPARATOR);
-			String line = null;
+		testFile(fileName, startTime);
+		return true;
+	}
+
+	/**
+	 * Reads the file once to test the terminators of its lines. The column pattern tester tests the lines it reads
+	 * with {@link #testLineStructure(String, LineStructure, Date)} instead.
+	 */
+	public void testFile(final String fileName, final Date startTime) {
+		final LineStructure lineStructure = new LineStructure();
+		try (TerminatedLineReader reader = new TerminatedLineReader(resourceManager.getReader(fileName, Charset.forName(UTF_8)))) {
+			String line;
 			while ((line = reader.readLine()) != null) {
-				totalLine++;
+				lineStructure.addLine(line, reader.getTerminator());
 			}
-			if (totalLine == 0) {
-				testReport.addError("0-0", startTime, fileName, resourceManager.getFilePath(), fileName + EMPTY_FILE_CHECKING, EMPTY_FILE_CHECKING, null,"total line is :" + totalLine, " RF2 file can't be empty and should at least have a header line");
-			}
-			while (scanner.hasNext()) {
-				scanner.next();
-				totalLineScanned++;
-			}
-			if (totalLineScanned < totalLine) {
-				testReport.addError("0-0", startTime, fileName, resourceManager.getFilePath(), fileName + " line terminator", TEST_TYPE, null, "total line is terminated with CR+LF:" + totalLineScanned , 
-						 "total line is terminated with CR+LF:" + totalLine);
-			} 
 		} catch (Exception e) {
 			validationLog.executionError("Error", "Failed to read file:" + fileName);
+			return;
 		}
-		
-		try (BufferedReader lineReader = new BufferedReader(resourceManager.getReader(fileName, Charset.forName(UTF_8)))) {
-			for (int i = 1;i <= totalLine; i++) {
-				lineReader.readLine();
-				if (i == (totalLine - 1)) {
-					int read = -1;
-					StringBuilder builder = new StringBuilder();
-					while ((read = lineReader.read()) != -1) {
-						char charRead = (char)read;
-						if ((charRead == '\r') || (charRead == '\n')) {
-							builder.append(charRead);
-						}
-					}
-					if (!RF2_LINE_SEPARATOR.equals(builder.toString())) {
-						StringBuilder actualResult = new StringBuilder();
-						String actualLineSeparator = builder.toString().replace("\n", "LF").replace("\r", "CR");
-						actualResult.append("the last line is terminated with[");
-						actualResult.append(actualLineSeparator);
-						actualResult.append("]");
-						testReport.addError(totalLine + "-0", startTime, fileName, resourceManager.getFilePath(), fileName + " ast line terminator",TEST_TYPE, null,
-								actualResult.toString(), "the last line is terminated with CR+LF");
-					}
-					break;
-				}
-			}
-		} catch (Exception e) {
-			validationLog.executionError("Error", "Failed to read file:" + fileName);
+		testLineStructure(fileName, lineStructure, startTime);
+	}
+
+	/**
+	 * Checks that the file is not empty and that each of its lines, including the last one, ends with CR+LF.
+	 */
+	public void testLineStructure(final String fileName, final LineStructure lineStructure, final Date startTime) {
+		final long totalLine = lineStructure.getLineCount();
+		if (totalLine == 0) {
+			testReport.addError("0-0", startTime, fileName, resourceManager.getFilePath(), fileName + EMPTY_FILE_CHECKING, EMPTY_FILE_CHECKING, null,"total line is :" + totalLine, " RF2 file can't be empty and should at least have a header line");
+		}
+		final long totalLineScanned = lineStructure.getCrlfLineCount();
+		if (totalLineScanned < totalLine) {
+			testReport.addError("0-0", startTime, fileName, resourceManager.getFilePath(), fileName + " line terminator", TEST_TYPE, null, "total line is terminated with CR+LF:" + totalLineScanned , 
+					 "total line is terminated with CR+LF:" + totalLine);
+		}
+		if (totalLine > 1 && lineStructure.getLastTerminator() != LineStructure.Terminator.CRLF) {
+			StringBuilder actualResult = new StringBuilder();
+			actualResult.append("the last line is terminated with[");
+			actualResult.append(lineStructure.getLastTerminator().getDescription());
+			actualResult.append("]");
+			testReport.addError(totalLine + "-0", startTime, fileName, resourceManager.getFilePath(), fileName + " ast line terminator",TEST_TYPE, null,
+					actualResult.toString(), "the last line is terminated with CR+LF");
 		}
-		return true;
 	}
 }
@@ -0,0 +1,209 @@
+package org.ihtsdo.rvf.validation;
+
+/**
+ * Splits RF2 lines into columns and checks the format of column values without creating any objects. The columns
+ * are kept as offsets into the line, which is only copied when a value has to be reported, and each format is
+ * checked by a scan of its characters that accepts exactly what the corresponding regular expression does.
+ */
+public class Rf2ColumnValidator {
+
+	private static final char TAB = '\t';
+
+	private int[] starts = new int[16];
+	private int[] ends = new int[16];
+	private int columnCount;
+	private String line;
+
+	/**
+	 * The formats of the RF2 column values with the patterns they used to be matched with, which are reported as the
+	 * expected values.
+	 */
+	public enum ValueFormat {
+
+		SCTID("^\\d{6,18}$") {
+			@Override
+			public boolean matches(final CharSequence value, final int start, final int end) {
+				return isSctid(value, start, end);
+			}
+		},
+		UUID("^[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}$") {
+			@Override
+			public boolean matches(final CharSequence value, final int start, final int end) {
+				return isUuid(value, start, end);
+			}
+		},
+		DATE("^\\d{8}$") {
+			@Override
+			public boolean matches(final CharSequence value, final int start, final int end) {
+				return isDate(value, start, end);
+			}
+		},
+		BOOLEAN("[0-1]") {
+			@Override
+			public boolean matches(final CharSequence value, final int start, final int end) {
+				return isBoolean(value, start, end);
+			}
+		},
+		INTEGER("\\d+") {
+			@Override
+			public boolean matches(final CharSequence value, final int start, final int end) {
+				return isInteger(value, start, end);
+			}
+		},
+		BLANK("^$") {
+			@Override
+			public boolean matches(final CharSequence value, final int start, final int end) {
+				return isBlank(start, end);
+			}
+		},
+		NOT_BLANK("^(?=\\s*\\S).*$") {
+			@Override
+			public boolean matches(final CharSequence value, final int start, final int end) {
+				return isNotBlank(value, start, end);
+			}
+		};
+
+		private final String pattern;
+
+		private ValueFormat(final String pattern) {
+			this.pattern = pattern;
+		}
+
+		/**
+		 * @return true when the characters from start to end, exclusive, have this format
+		 */
+		public abstract boolean matches(CharSequence value, int start, int end);
+
+		public String getPattern() {
+			return pattern;
+		}
+	}
+
+	/**
+	 * Finds the columns of the line, counting them the way {@link String#split(String)} on a tab does: trailing empty
+	 * columns are dropped unless the line has no tab at all.
+	 * @return the number of columns
+	 */
+	public int scan(final String line) {
+		this.line = line;
+		columnCount = 0;
+		int start = 0;
+		int nonEmptyCount = 0;
+		final int length = line.length();
+		for (int i = 0; i <= length; i++) {
+			if (i == length || line.charAt(i) == TAB) {
+				if (columnCount == starts.length) {
+					starts = grow(starts);
+					ends = grow(ends);
+				}
+				starts[columnCount] = start;
+				ends[columnCount] = i;
+				columnCount++;
+				if (i > start) {
+					nonEmptyCount = columnCount;
+				}
+				start = i + 1;
+			}
+		}
+		if (columnCount > 1) {
+			columnCount = nonEmptyCount;
+		}
+		return columnCount;
+	}
+
+	public String getLine() {
+		return line;
+	}
+
+	public int getColumnCount() {
+		return columnCount;
+	}
+
+	public int getStart(final int column) {
+		return starts[column];
+	}
+
+	public int getEnd(final int column) {
+		return ends[column];
+	}
+
+	/**
+	 * @return a copy of the value of the column, for reporting
+	 */
+	public String getValue(final int column) {
+		return line.substring(starts[column], ends[column]);
+	}
+
+	public static boolean isSctid(final CharSequence value, final int start, final int end) {
+		final int length = end - start;
+		return length >= 6 && length <= 18 && isDigits(value, start, end);
+	}
+
+	public static boolean isUuid(final CharSequence value, final int start, final int end) {
+		if (end - start != 36) {
+			return false;
+		}
+		for (int i = start; i < end; i++) {
+			final int position = i - start;
+			final char c = value.charAt(i);
+			if (position == 8 || position == 13 || position == 18 || position == 23) {
+				if (c != '-') {
+					return false;
+				}
+			} else if (!(c >= '0' && c <= '9' || c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F')) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public static boolean isDate(final CharSequence value, final int start, final int end) {
+		return end - start == 8 && isDigits(value, start, end);
+	}
+
+	public static boolean isBoolean(final CharSequence value, final int start, final int end) {
+		return end - start == 1 && (value.charAt(start) == '0' || value.charAt(start) == '1');
+	}
+
+	public static boolean isInteger(final CharSequence value, final int start, final int end) {
+		return end > start && isDigits(value, start, end);
+	}
+
+	public static boolean isBlank(final int start, final int end) {
+		return end == start;
+	}
+
+	/**
+	 * @return true when the value has a character other than white space and, like a regular expression dot, no line
+	 * terminator
+	 */
+	public static boolean isNotBlank(final CharSequence value, final int start, final int end) {
+		boolean blank = true;
+		for (int i = start; i < end; i++) {
+			final char c = value.charAt(i);
+			if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+				return false;
+			}
+			if (blank && !(c == ' ' || c == '\t' || c == '\u000B' || c == '\f')) {
+				blank = false;
+			}
+		}
+		return !blank;
+	}
+
+	private static boolean isDigits(final CharSequence value, final int start, final int end) {
+		for (int i = start; i < end; i++) {
+			final char c = value.charAt(i);
+			if (c < '0' || c > '9') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int[] grow(final int[] offsets) {
+		final int[] grown = new int[offsets.length * 2];
+		System.arraycopy(offsets, 0, grown, 0, offsets.length);
+		return grown;
+	}
+}
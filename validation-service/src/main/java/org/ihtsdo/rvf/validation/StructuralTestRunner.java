@@ -28,6 +28,8 @@ public class StructuralTestRunner implements InitializingBean{
 	protected String reportFolderLocation;
 	protected File reportDataFolder;
 	protected int failureThreshold;
+	private int parallelScanMinFileSizeInMb = 64;
+	private int failureExampleMax = StreamTestReport.DEFAULT_FAILURE_EXAMPLE_MAX;
 	private String structureTestReportPath;
 
 	@Autowired
@@ -36,9 +38,19 @@ public class StructuralTestRunner implements InitializingBean{
 
 	public TestReportable execute(final ResourceProvider resourceManager, final PrintWriter writer, final boolean writeSuccesses,
 			final ManifestFile manifest) {
+		return execute(resourceManager, writer, writeSuccesses, manifest, failureExampleMax);
+	}
+
+	/**
+	 * @param failureExampleMax the number of failures of each test type and column to report the details of, the
+	 * others are only counted
+	 */
+	public TestReportable execute(final ResourceProvider resourceManager, final PrintWriter writer, final boolean writeSuccesses,
+			final ManifestFile manifest, final int failureExampleMax) {
 		// the information for the manifest testing
 		long start = System.currentTimeMillis();
 		final StreamTestReport testReport = new StreamTestReport(new CsvMetadataResultFormatter(), writer, writeSuccesses);
+		testReport.setFailureExampleMax(failureExampleMax);
 		final ValidationLog validationLog = validationLogFactory.getValidationLog(ColumnPatternTester.class);
 		// run manifest tests
 		if ( manifest != null) {
@@ -46,7 +58,6 @@ public class StructuralTestRunner implements InitializingBean{
 			testReport.addNewLine();
 		}
 		runColumnTests(resourceManager, testReport, validationLog);
-		runLineFeedTests(resourceManager, testReport);
 		
 		testReport.getResult();
 		final String summary = testReport.writeSummary();
@@ -55,14 +66,6 @@ public class StructuralTestRunner implements InitializingBean{
 		return testReport;
 	}
 
-	private void runLineFeedTests(ResourceProvider resourceManager, StreamTestReport testReport) {
-		
-		final RF2FileStructureTester lineFeedPatternTest = new RF2FileStructureTester(validationLogFactory.getValidationLog(RF2FileStructureTester.class), 
-				resourceManager, testReport);
-		lineFeedPatternTest.runTests();
-		
-	}
-
 	public TestReportable execute(final ResourceProvider resourceManager, final PrintWriter writer, final boolean writeSuccesses) {
 		return execute(resourceManager, writer, writeSuccesses, null);
 	}
@@ -76,11 +79,19 @@ public class StructuralTestRunner implements InitializingBean{
 	private void runColumnTests(final ResourceProvider resourceManager, final TestReportable report, final ValidationLog validationLog) {
 
 		final ColumnPatternTester columnPatternTest = new ColumnPatternTester(validationLog, resourceManager, report);
+		columnPatternTest.setParallelScanMinFileSize(parallelScanMinFileSizeInMb * 1024L * 1024L);
+		// the line terminators are checked in the same pass over each file as the columns
+		columnPatternTest.setFileStructureTester(new RF2FileStructureTester(validationLogFactory.getValidationLog(RF2FileStructureTester.class),
+				resourceManager, report));
 		columnPatternTest.runTests();
 	}
 	
+	/**
+	 * @param failureExampleMax the number of failures of each test type and column to report the details of, or null to
+	 * use the configured number
+	 */
 	public boolean verifyZipFileStructure(final Map<String, Object> responseMap, final File tempFile, final Long runId, final File manifestFile, 
-			final boolean writeSucceses, final String urlPrefix, String storageLocation ) throws IOException {
+			final boolean writeSucceses, final String urlPrefix, String storageLocation, final Integer failureExampleMax) throws IOException {
 		 boolean isFailed = false;
 		 final long timeStart = System.currentTimeMillis();
 		 if (tempFile != null) {
@@ -92,18 +103,19 @@ public class StructuralTestRunner implements InitializingBean{
 		// set up the response in order to stream directly to the response
 		final File structureTestReport = new File(getReportDataFolder(), "structure_validation_"+ runId+".txt");
 		structureTestReportPath = structureTestReport.getAbsolutePath();
-		try (PrintWriter writer = new PrintWriter(structureTestReport)) {
-			final ResourceProvider resourceManager = new ZipFileResourceProvider(tempFile);
+		final int exampleMax = failureExampleMax != null && failureExampleMax > 0 ? failureExampleMax : this.failureExampleMax;
+		try (PrintWriter writer = new PrintWriter(structureTestReport);
+				ZipFileResourceProvider resourceManager = new ZipFileResourceProvider(tempFile)) {
 
 			TestReportable report;
 
 			if (manifestFile == null) {
-				report = execute(resourceManager, writer, writeSucceses,null);
+				report = execute(resourceManager, writer, writeSucceses, null, exampleMax);
 			} else {
 				File tempManifestFile  = null;
 				try {
 					final ManifestFile mf = new ManifestFile(manifestFile);
-					report = execute(resourceManager, writer, writeSucceses, mf);
+					report = execute(resourceManager, writer, writeSucceses, mf, exampleMax);
 				} finally {
 					FileUtils.deleteQuietly(tempManifestFile);
 				}
@@ -180,4 +192,28 @@ public class StructuralTestRunner implements InitializingBean{
 	public void setFailureThreshold(final int failureThreshold) {
 		this.failureThreshold = failureThreshold;
 	}
+
+	public int getParallelScanMinFileSizeInMb() {
+		return parallelScanMinFileSizeInMb;
+	}
+
+	/**
+	 * @param parallelScanMinFileSizeInMb the size from which a file is validated in segments at the same time, 0 to
+	 * validate each file on a single thread
+	 */
+	public void setParallelScanMinFileSizeInMb(final int parallelScanMinFileSizeInMb) {
+		this.parallelScanMinFileSizeInMb = parallelScanMinFileSizeInMb;
+	}
+
+	public int getFailureExampleMax() {
+		return failureExampleMax;
+	}
+
+	/**
+	 * @param failureExampleMax the number of failures of each test type and column to report the details of when a run
+	 * does not set it, at least 1
+	 */
+	public void setFailureExampleMax(final int failureExampleMax) {
+		this.failureExampleMax = failureExampleMax;
+	}
 }
@@ -0,0 +1,90 @@
+package org.ihtsdo.rvf.validation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads lines the way a {@link java.io.BufferedReader} does, ending them at a line feed, a carriage return or a
+ * carriage return followed by a line feed, and tells how each line ended so that the line terminators of a file can be
+ * checked in the same pass as its columns.
+ */
+public class TerminatedLineReader implements Closeable {
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private final Reader reader;
+	private final char[] buffer = new char[BUFFER_SIZE];
+	private final StringBuilder line = new StringBuilder();
+	private int position;
+	private int limit;
+	private LineStructure.Terminator terminator = LineStructure.Terminator.NONE;
+
+	public TerminatedLineReader(final Reader reader) {
+		this.reader = reader;
+	}
+
+	/**
+	 * @return the next line without its terminator or null at the end of the stream
+	 */
+	public String readLine() throws IOException {
+		line.setLength(0);
+		terminator = LineStructure.Terminator.NONE;
+		if (position == limit && !fill()) {
+			return null;
+		}
+		while (true) {
+			int end = position;
+			while (end < limit && buffer[end] != '\n' && buffer[end] != '\r') {
+				end++;
+			}
+			line.append(buffer, position, end - position);
+			if (end == limit) {
+				position = limit;
+				if (!fill()) {
+					return line.toString();
+				}
+				continue;
+			}
+			position = end + 1;
+			if (buffer[end] == '\n') {
+				terminator = LineStructure.Terminator.LF;
+			} else if ((position < limit || fill()) && buffer[position] == '\n') {
+				position++;
+				terminator = LineStructure.Terminator.CRLF;
+			} else {
+				terminator = LineStructure.Terminator.CR;
+			}
+			return line.toString();
+		}
+	}
+
+	/**
+	 * @return how the line last read ended
+	 */
+	public LineStructure.Terminator getTerminator() {
+		return terminator;
+	}
+
+	/**
+	 * Refills the buffer once all of it has been read.
+	 * @return false at the end of the stream
+	 */
+	private boolean fill() throws IOException {
+		int read;
+		do {
+			read = reader.read(buffer, 0, buffer.length);
+		} while (read == 0);
+		if (read < 0) {
+			return false;
+		}
+		position = 0;
+		limit = read;
+		return true;
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+}
@@ -8,6 +8,18 @@ public interface TestReportable {
 	
 	void addSuccess(String executionId, Date testTime, String fileName, String filePath, String columnName, String testType, String testPattern);
 
+	/**
+	 * @return true when the successes are written with their details, otherwise they are only counted and their
+	 * execution id may be null
+	 */
+	boolean isWriteSuccesses();
+
+	/**
+	 * Adds errors of the given test type and column that are counted without their details, as a report keeping only
+	 * the first few errors of each does for the others.
+	 */
+	void addErrorCount(String testType, String columnName, int count);
+
 	String getResult();
 
 	int getNumErrors();
@@ -16,47 +28,19 @@ public interface TestReportable {
 
 	int getNumTestRuns();
 
+	/**
+	 * @return the number of errors whose details are recorded, at most {@link #getFailureExampleMax()} for each test
+	 * type and column
+	 */
 	int getNumberRecordedErrors();
 
+	/**
+	 * @return the number of errors of each test type and column whose details are recorded, the others are only counted
+	 */
+	int getFailureExampleMax();
+
 	String writeSummary();
 
 	void addNewLine();
 
-	class TestRunItemCount {
-		private StructuralTestRunItem item;
-		private Integer count = 0;
-
-		public TestRunItemCount(StructuralTestRunItem item) {
-			this.item = item;
-			count = 1;
-		}
-
-		public void addError() {
-			count++;
-		}
-
-		public Integer getErrorCount() {
-			return count;
-		}
-
-		public StructuralTestRunItem getItem() {
-			return item;
-		}
-
-		@Override
-		public boolean equals(Object o) {
-			if (this == o) return true;
-			if (o == null || getClass() != o.getClass()) return false;
-			TestRunItemCount that = (TestRunItemCount) o;
-			return count.equals(that.count) && item.equals(that.item);
-		}
-
-		@Override
-		public int hashCode() {
-			int result = item.hashCode();
-			result = 31 * result + count.hashCode();
-			return result;
-		}
-	}
-
 }
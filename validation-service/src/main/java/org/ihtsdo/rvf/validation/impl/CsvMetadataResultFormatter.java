@@ -8,7 +8,7 @@ import java.util.List;
 public class CsvMetadataResultFormatter implements ResultFormatter {
 
 	// no spaces between the commas please as this breaks the , quote escaping
-	private static final String headers = "Result\tRow-Column\tFile Name\tTest Type\tFailure Details";
+	private static final String headers = "Result\tRow-Column\tFile Name\tTest Type\tFailure Details\tNumber of occurences";
 
 	@Override
 	public String formatResults(List<StructuralTestRunItem> testRuns) {
@@ -23,10 +23,10 @@ public class CsvMetadataResultFormatter implements ResultFormatter {
 	}
 
 	public String formatRow(StructuralTestRunItem ti, Integer itemErrorCount) {
-		return String.format("%s\t%s\t%s\t%s\t%s\n",
+		return String.format("%s\t%s\t%s\t%s\t%s\t%d\n",
 				ti.getFailureMessage(),
 				ti.getExecutionId(),
-				ti.getFileName(), ti.getTestType(), ti.getActualExpectedValue());
+				ti.getFileName(), ti.getTestType(), ti.getActualExpectedValue(), itemErrorCount);
 	}
 
 	public String getHeaders() {
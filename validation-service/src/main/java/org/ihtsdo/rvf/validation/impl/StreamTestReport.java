@@ -5,21 +5,32 @@ import java.io.PrintWriter;
 import java.util.Date;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.ihtsdo.rvf.validation.ResultFormatter;
 import org.ihtsdo.rvf.validation.StructuralTestRunItem;
 import org.ihtsdo.rvf.validation.TestReportable;
 
+/**
+ * Writes the successes as they are reported and counts the errors of each test type and column, keeping the details of
+ * only the first few so that a file with the same error on every line does not hold one item per line. Errors and
+ * successes can be reported from several threads at the same time.
+ */
 public class StreamTestReport implements TestReportable {
 
 	public static final String LINE_ENDING = "\r\n";
+	public static final int DEFAULT_FAILURE_EXAMPLE_MAX = 1;
 
 	private final PrintWriter writer;
 	private ResultFormatter formatter;
-	private int numFailures = 0;
-	private int numTestRuns = 0;
+	private final StripedCounter numFailures = new StripedCounter();
+	private final StripedCounter numTestRuns = new StripedCounter();
+	private final AtomicInteger numRecordedErrors = new AtomicInteger();
 	private boolean writeSuccesses;
-	private ConcurrentHashMap<String, TestRunItemCount> errorMap = new ConcurrentHashMap<>();
+	private int failureExampleMax = DEFAULT_FAILURE_EXAMPLE_MAX;
+	// errors by test type and then column name, so that counting an error does not build a key
+	private final ConcurrentHashMap<String, ConcurrentHashMap<String, ErrorCount>> errorMap = new ConcurrentHashMap<>();
 
 	public StreamTestReport(ResultFormatter formatter, OutputStream outputStream, boolean writeSuccesses) {
 		this.formatter = formatter;
@@ -39,9 +50,16 @@ public class StreamTestReport implements TestReportable {
 
 	@Override
 	public String getResult() {
-		for (Map.Entry<String, TestRunItemCount> entry : errorMap.entrySet()) {
-			TestRunItemCount value = entry.getValue();
-			writer.write(formatter.formatRow(value.getItem(), value.getErrorCount()));
+		for (Map<String, ErrorCount> columnErrors : errorMap.values()) {
+			for (ErrorCount errorCount : columnErrors.values()) {
+				// the first example carries the count of all the errors, the others are listed as single items
+				for (int i = 0; i < errorCount.examples.length(); i++) {
+					StructuralTestRunItem item = errorCount.examples.get(i);
+					if (item != null) {
+						writer.write(formatter.formatRow(item, i == 0 ? (int) errorCount.count.sum() : 0));
+					}
+				}
+			}
 		}
 		return writer.toString();
 	}
@@ -61,15 +79,45 @@ public class StreamTestReport implements TestReportable {
 
 	@Override
 	public void addError( String executionId, Date testTime, String fileName, String filePath, String columnName, String testType, String testPattern, String actualValue, String expectedValue) {
-		StructuralTestRunItem item = new StructuralTestRunItem (executionId, testTime, fileName, filePath, columnName, testType, testPattern, true, actualValue, expectedValue);
-		if (errorMap.containsKey(columnName)) {
-			TestRunItemCount errorCounter = errorMap.get(columnName);
-			errorCounter.addError();
-		} else {
-			errorMap.put(columnName, new TestRunItemCount(item));
+		ErrorCount errorCount = getErrorCount(testType, columnName);
+		errorCount.count.increment();
+		// once the examples are taken an error is only counted
+		if (errorCount.nextExample.get() < errorCount.examples.length()) {
+			int example = errorCount.nextExample.getAndIncrement();
+			if (example < errorCount.examples.length()) {
+				errorCount.examples.set(example, new StructuralTestRunItem(executionId, testTime, fileName, filePath, columnName, testType, testPattern, true, actualValue, expectedValue));
+				numRecordedErrors.incrementAndGet();
+			}
 		}
-		numFailures++;
-		numTestRuns++;
+		numFailures.increment();
+		numTestRuns.increment();
+	}
+
+	@Override
+	public void addErrorCount(String testType, String columnName, int count) {
+		getErrorCount(testType, columnName).count.add(count);
+		numFailures.add(count);
+		numTestRuns.add(count);
+	}
+
+	private ErrorCount getErrorCount(String testType, String columnName) {
+		ConcurrentHashMap<String, ErrorCount> columnErrors = errorMap.get(testType);
+		if (columnErrors == null) {
+			ConcurrentHashMap<String, ErrorCount> newColumnErrors = new ConcurrentHashMap<>();
+			columnErrors = errorMap.putIfAbsent(testType, newColumnErrors);
+			if (columnErrors == null) {
+				columnErrors = newColumnErrors;
+			}
+		}
+		ErrorCount errorCount = columnErrors.get(columnName);
+		if (errorCount == null) {
+			ErrorCount newErrorCount = new ErrorCount(failureExampleMax);
+			errorCount = columnErrors.putIfAbsent(columnName, newErrorCount);
+			if (errorCount == null) {
+				errorCount = newErrorCount;
+			}
+		}
+		return errorCount;
 	}
 
 	@Override
@@ -79,35 +127,66 @@ public class StreamTestReport implements TestReportable {
 			String row = formatter.formatRow(item, 0);
 			writer.write(row);
 		}
-		numTestRuns++;
+		numTestRuns.increment();
 	}
 
 	@Override
 	public int getNumErrors() {
-		return numFailures;
+		return (int) numFailures.sum();
 	}
 
 	@Override
 	public int getNumberRecordedErrors() {
-		return errorMap.size();
+		return numRecordedErrors.get();
 	}
 
 	@Override
 	public int getNumSuccesses() {
-		return numTestRuns - numFailures;
+		return (int) (numTestRuns.sum() - numFailures.sum());
 	}
 
 	@Override
 	public int getNumTestRuns() {
-		return numTestRuns;
+		return (int) numTestRuns.sum();
+	}
+
+	@Override
+	public int getFailureExampleMax() {
+		return failureExampleMax;
 	}
 
 	public void setFormatter(ResultFormatter formatter) {
 		this.formatter = formatter;
 	}
 
+	@Override
+	public boolean isWriteSuccesses() {
+		return writeSuccesses;
+	}
+
 	public void setWriteSuccesses(boolean writeSuccesses) {
 		this.writeSuccesses = writeSuccesses;
 	}
 
+	/**
+	 * @param failureExampleMax the number of errors of each test type and column to record the details of, at least 1.
+	 * It has to be set before any error is reported.
+	 */
+	public void setFailureExampleMax(int failureExampleMax) {
+		if (failureExampleMax < 1) {
+			throw new IllegalArgumentException("failureExampleMax must be at least 1 but was " + failureExampleMax);
+		}
+		this.failureExampleMax = failureExampleMax;
+	}
+
+	private static class ErrorCount {
+		private final StripedCounter count = new StripedCounter();
+		private final AtomicInteger nextExample = new AtomicInteger();
+		private final AtomicReferenceArray<StructuralTestRunItem> examples;
+
+		private ErrorCount(int failureExampleMax) {
+			examples = new AtomicReferenceArray<>(failureExampleMax);
+		}
+	}
+
 }
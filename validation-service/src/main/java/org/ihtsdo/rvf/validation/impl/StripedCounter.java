@@ -0,0 +1,46 @@
+package org.ihtsdo.rvf.validation.impl;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter with a cell for each stripe of threads, summed when read, so that threads counting at the same time do not
+ * contend for a single value. It does what java.util.concurrent.atomic.LongAdder does on Java 8, which the services
+ * cannot rely on as they run on Java 7.
+ */
+class StripedCounter {
+
+	private static final int STRIPES = stripeCount(Runtime.getRuntime().availableProcessors());
+	// a cell every 8 longs, so that the cells of different stripes are on different cache lines
+	private static final int CELL_SPACING = 8;
+
+	private final AtomicLongArray cells = new AtomicLongArray(STRIPES * CELL_SPACING);
+
+	void increment() {
+		add(1);
+	}
+
+	void add(long x) {
+		// thread ids are handed out in sequence, so the threads of a pool fall into different stripes
+		int stripe = (int) (Thread.currentThread().getId() & (STRIPES - 1));
+		cells.addAndGet(stripe * CELL_SPACING, x);
+	}
+
+	/**
+	 * @return the sum of the cells, which is only exact when no thread is counting at the same time
+	 */
+	long sum() {
+		long sum = 0;
+		for (int i = 0; i < cells.length(); i += CELL_SPACING) {
+			sum += cells.get(i);
+		}
+		return sum;
+	}
+
+	private static int stripeCount(int processors) {
+		int stripes = 1;
+		while (stripes < processors) {
+			stripes <<= 1;
+		}
+		return stripes;
+	}
+}
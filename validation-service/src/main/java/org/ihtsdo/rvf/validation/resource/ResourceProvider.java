@@ -1,6 +1,7 @@
 package org.ihtsdo.rvf.validation.resource;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.List;
@@ -15,4 +16,14 @@ public interface ResourceProvider {
 
 	boolean match(String name);
 
+	/**
+	 * @return the size of the named resource in bytes or -1 when it is not known
+	 */
+	long getSize(String name);
+
+	/**
+	 * @return a local file with the content of the named resource, which is only extracted the first time it is asked for
+	 */
+	File getFile(String name) throws IOException;
+
 }
@@ -42,4 +42,14 @@ public class TextFileResourceProvider implements ResourceProvider {
 		return false;
 	}
 
+	@Override
+	public long getSize(String name) {
+		return file.length();
+	}
+
+	@Override
+	public File getFile(String name) {
+		return file;
+	}
+
 }
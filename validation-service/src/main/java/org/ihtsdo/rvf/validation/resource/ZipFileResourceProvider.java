@@ -1,19 +1,28 @@
 package org.ihtsdo.rvf.validation.resource;
 
 import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
-public class ZipFileResourceProvider implements ResourceProvider {
+import org.apache.commons.io.FileUtils;
+
+public class ZipFileResourceProvider implements ResourceProvider, Closeable {
 
 	private ZipFile zipFile;
 	private String filePath;
 	private Map<String, ZipEntry> filenames = new LinkedHashMap<>();
+	private Map<String, File> extractedFiles = new ConcurrentHashMap<>();
+	private File extractDirectory;
 
 	public ZipFileResourceProvider(File file) throws IOException {
 		this.zipFile = new ZipFile(file);
@@ -54,6 +63,52 @@ public class ZipFileResourceProvider implements ResourceProvider {
 		return filenames.get(name);
 	}
 
+	@Override
+	public long getSize(String name) {
+		ZipEntry entry = getEntry(name);
+		return entry == null ? -1 : entry.getSize();
+	}
+
+	@Override
+	public File getFile(String name) throws IOException {
+		ZipEntry entry = getEntry(name);
+		if (entry == null) {
+			throw new IOException("No file " + name + " in " + filePath);
+		}
+		// entries are extracted one at a time each, but several of them at the same time
+		synchronized (entry) {
+			File file = extractedFiles.get(name);
+			if (file == null) {
+				file = new File(getExtractDirectory(), name);
+				try (InputStream inputStream = zipFile.getInputStream(entry)) {
+					Files.copy(inputStream, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				}
+				extractedFiles.put(name, file);
+			}
+			return file;
+		}
+	}
+
+	/**
+	 * Closes the zip file and deletes the files extracted from it.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (extractDirectory != null) {
+			FileUtils.deleteQuietly(extractDirectory);
+			extractDirectory = null;
+			extractedFiles.clear();
+		}
+		zipFile.close();
+	}
+
+	private synchronized File getExtractDirectory() throws IOException {
+		if (extractDirectory == null) {
+			extractDirectory = Files.createTempDirectory("rvf_extracted").toFile();
+		}
+		return extractDirectory;
+	}
+
 	private void assignFileNames(ZipEntry zipEntry) {
 		if (!zipEntry.isDirectory()) {
 			String key = new File(zipEntry.getName()).getName();
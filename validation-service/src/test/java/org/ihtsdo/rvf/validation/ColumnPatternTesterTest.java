@@ -151,6 +151,19 @@ public class ColumnPatternTesterTest {
 		assertEquals("1 row contains a tab a the end + 1 row contains 2 spaces at end + the last column of the row with spaces will fail column pattern test ", 3, testReport.getNumErrors());
 	}
 
+	@Test
+	public void testMixedErrorsInSegments() throws Exception {
+		final String filename = "/der2_cRefset_LanguageSnapshot-en_INT_20140731.txt";
+		executeRun(filename, false);
+		final int successes = testReport.getNumSuccesses();
+		final int recordedErrors = testReport.getNumberRecordedErrors();
+
+		executeRun(filename, false, 1);
+		assertEquals("the same errors as when the file is tested on a single thread", 32, testReport.getNumErrors());
+		assertEquals(successes, testReport.getNumSuccesses());
+		assertEquals(recordedErrors, testReport.getNumberRecordedErrors());
+	}
+
 	@Test
 	public void testBlankRow() throws Exception {
 		final String filename = "/rel2_Refset_SimpleDelta_INT_20130422.txt";
@@ -160,6 +173,10 @@ public class ColumnPatternTesterTest {
 	}
 
 	public void executeRun(final String filename, final boolean writeSucceses) throws URISyntaxException {
+		executeRun(filename, writeSucceses, 0);
+	}
+
+	public void executeRun(final String filename, final boolean writeSucceses, final long parallelScanMinFileSize) throws URISyntaxException {
 		final File f = new File(getClass().getResource(filename).toURI());
 
 		final ResourceProvider resourceManager = new TestFileResourceProvider(f);
@@ -167,6 +184,7 @@ public class ColumnPatternTesterTest {
 
 		testReport = new StreamTestReport(new CsvResultFormatter(), new TestWriterDelegate(new StringWriter()), writeSucceses);
 		tester = new ColumnPatternTester(new TestValidationLogImpl(ColumnPatternTester.class), resourceManager, testReport);
+		tester.setParallelScanMinFileSize(parallelScanMinFileSize);
 
 		tester.runTests();
 	}
@@ -200,6 +218,16 @@ public class ColumnPatternTesterTest {
 		public boolean match(final String name) {
 			return false;
 		}
+
+		@Override
+		public long getSize(final String name) {
+			return file.length();
+		}
+
+		@Override
+		public File getFile(final String name) {
+			return file;
+		}
 	}
 
 }
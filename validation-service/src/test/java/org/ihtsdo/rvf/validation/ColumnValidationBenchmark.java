@@ -0,0 +1,142 @@
+package org.ihtsdo.rvf.validation;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.ihtsdo.rvf.validation.Rf2ColumnValidator.ValueFormat;
+import org.ihtsdo.rvf.validation.resource.ZipFileResourceProvider;
+import org.ihtsdo.snomed.util.rf2.schema.Field;
+import org.ihtsdo.snomed.util.rf2.schema.SchemaFactory;
+import org.ihtsdo.snomed.util.rf2.schema.TableSchema;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares splitting the data lines of the sample release and matching each value with a regular expression, as the
+ * column pattern tester used to, with checking the values in place with {@link Rf2ColumnValidator}. Run it from the
+ * test classpath after test-compile, e.g.
+ * <pre>mvn -pl validation-service test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.ihtsdo.rvf.validation.ColumnValidationBenchmark</pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ColumnValidationBenchmark {
+
+	private static final String SAMPLE_RELEASE = "/SnomedCT_Release_INT_20140131.zip";
+
+	private final List<String> lines = new ArrayList<>();
+	private final List<ValueFormat[][]> lineFormats = new ArrayList<>();
+	private final List<Pattern[][]> linePatterns = new ArrayList<>();
+	private final Rf2ColumnValidator validator = new Rf2ColumnValidator();
+
+	@Setup
+	public void loadSampleRelease() throws Exception {
+		final ZipFileResourceProvider resourceProvider = new ZipFileResourceProvider(new File(getClass().getResource(SAMPLE_RELEASE).toURI()));
+		final SchemaFactory schemaFactory = new SchemaFactory();
+		for (final String fileName : resourceProvider.getFileNames()) {
+			final TableSchema tableSchema = schemaFactory.createSchemaBean(fileName);
+			if (tableSchema == null || tableSchema.getFields() == null) {
+				continue;
+			}
+			final List<Field> fields = tableSchema.getFields();
+			final ValueFormat[][] formats = new ValueFormat[fields.size()][];
+			final Pattern[][] patterns = new Pattern[fields.size()][];
+			for (int i = 0; i < fields.size(); i++) {
+				formats[i] = getFormats(fields.get(i));
+				patterns[i] = new Pattern[formats[i].length];
+				for (int j = 0; j < formats[i].length; j++) {
+					patterns[i][j] = Pattern.compile(formats[i][j].getPattern());
+				}
+			}
+			try (BufferedReader reader = resourceProvider.getReader(fileName, Charset.forName("UTF-8"))) {
+				// skip the header
+				reader.readLine();
+				String line;
+				while ((line = reader.readLine()) != null) {
+					lines.add(line);
+					lineFormats.add(formats);
+					linePatterns.add(patterns);
+				}
+			}
+		}
+	}
+
+	@Benchmark
+	public int splitAndMatch() {
+		int valid = 0;
+		for (int i = 0; i < lines.size(); i++) {
+			final String[] values = lines.get(i).split("\t");
+			final Pattern[][] patterns = linePatterns.get(i);
+			for (int column = 0; column < values.length && column < patterns.length; column++) {
+				for (final Pattern pattern : patterns[column]) {
+					if (pattern.matcher(values[column]).matches()) {
+						valid++;
+						break;
+					}
+				}
+			}
+		}
+		return valid;
+	}
+
+	@Benchmark
+	public int scanInPlace() {
+		int valid = 0;
+		for (int i = 0; i < lines.size(); i++) {
+			final String line = lines.get(i);
+			final int columnCount = validator.scan(line);
+			final ValueFormat[][] formats = lineFormats.get(i);
+			for (int column = 0; column < columnCount && column < formats.length; column++) {
+				for (final ValueFormat format : formats[column]) {
+					if (format.matches(line, validator.getStart(column), validator.getEnd(column))) {
+						valid++;
+						break;
+					}
+				}
+			}
+		}
+		return valid;
+	}
+
+	private static ValueFormat[] getFormats(final Field field) {
+		switch (field.getType()) {
+			case SCTID:
+				return new ValueFormat[] {ValueFormat.SCTID};
+			case SCTID_OR_UUID:
+				return new ValueFormat[] {ValueFormat.SCTID, ValueFormat.UUID, ValueFormat.BLANK};
+			case UUID:
+				return new ValueFormat[] {ValueFormat.UUID};
+			case TIME:
+				return new ValueFormat[] {ValueFormat.DATE};
+			case BOOLEAN:
+				return new ValueFormat[] {ValueFormat.BOOLEAN};
+			case INTEGER:
+				return new ValueFormat[] {ValueFormat.INTEGER};
+			default:
+				return new ValueFormat[] {ValueFormat.NOT_BLANK, ValueFormat.BLANK};
+		}
+	}
+
+	public static void main(final String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(ColumnValidationBenchmark.class.getSimpleName()).build()).run();
+	}
+}
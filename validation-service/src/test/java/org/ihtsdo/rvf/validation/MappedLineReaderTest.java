@@ -0,0 +1,64 @@
+package org.ihtsdo.rvf.validation;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MappedLineReaderTest {
+
+	private static final String CONTENT = "id\teffectiveTime\r\n100005\t20140131\r\n\r\n100013\t2014\u00e9\n100021\r200000\t\n\nlast";
+
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("mapped_line_reader", ".txt");
+		Files.write(file.toPath(), CONTENT.getBytes(Charset.forName("UTF-8")));
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	@Test
+	public void testSegmentsHaveTheLinesOfABufferedReader() throws IOException {
+		final List<String> expected = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader(new StringReader(CONTENT))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				expected.add(line);
+			}
+		}
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			for (int segments = 1; segments < 12; segments++) {
+				final List<Long> boundaries = MappedLineReader.split(channel, 0, channel.size(), segments, 1024);
+				final List<String> lines = new ArrayList<>();
+				long lineCount = 0;
+				for (int i = 0; i + 1 < boundaries.size(); i++) {
+					lineCount += new MappedLineReader(channel, boundaries.get(i), boundaries.get(i + 1)).countLines();
+					final MappedLineReader reader = new MappedLineReader(channel, boundaries.get(i), boundaries.get(i + 1));
+					String line;
+					while ((line = reader.readLine()) != null) {
+						lines.add(line);
+					}
+				}
+				assertEquals(expected, lines);
+				assertEquals(expected.size(), lineCount);
+			}
+		}
+	}
+}
@@ -48,7 +48,21 @@ public class RF2FileStructureTesterTest {
 		executeRun("/rel2_Refset_SimpleDelta_INT_20140131_Empty.txt", false);
 		assertEquals("Total errors not matching", 1, testReport.getNumErrors());
 	}
-	
+
+	@Test
+	public void testLineTerminatorsCheckedWithTheColumns() throws URISyntaxException {
+		final File f = new File(getClass().getResource("/der2_sRefset_SimpleMapDelta_INT_20140131.txt").toURI());
+		final ResourceProvider resourceManager = new TestFileResourceProvider(f);
+		// on a single thread and in segments
+		for (final long parallelScanMinFileSize : new long[] {0, 1}) {
+			testReport = new StreamTestReport(new CsvMetadataResultFormatter(), new TestWriterDelegate(new StringWriter()), false);
+			final ColumnPatternTester columnPatternTester = new ColumnPatternTester(new TestValidationLogImpl(ColumnPatternTester.class), resourceManager, testReport);
+			columnPatternTester.setParallelScanMinFileSize(parallelScanMinFileSize);
+			columnPatternTester.setFileStructureTester(new RF2FileStructureTester(new TestValidationLogImpl(RF2FileStructureTester.class), resourceManager, testReport));
+			columnPatternTester.runTests();
+			assertEquals("the 2 invalid ids and the 2 line terminator errors", 4, testReport.getNumErrors());
+		}
+	}
 	
 	private void executeRun(final String filename, final boolean writeSucceses) throws URISyntaxException {
 		final File f = new File(getClass().getResource(filename).toURI());
@@ -87,5 +101,15 @@ public class RF2FileStructureTesterTest {
 		public boolean match(String name) {
 			return false;
 		}
+
+		@Override
+		public long getSize(final String name) {
+			return file.length();
+		}
+
+		@Override
+		public File getFile(final String name) {
+			return file;
+		}
 	}
 }
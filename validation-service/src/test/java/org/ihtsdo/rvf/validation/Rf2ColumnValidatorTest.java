@@ -0,0 +1,39 @@
+package org.ihtsdo.rvf.validation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.ihtsdo.rvf.validation.Rf2ColumnValidator.ValueFormat;
+import org.junit.Test;
+
+public class Rf2ColumnValidatorTest {
+
+	@Test
+	public void testScanCountsColumnsLikeSplit() {
+		final Rf2ColumnValidator validator = new Rf2ColumnValidator();
+		assertEquals(3, validator.scan("a\t\tb"));
+		assertEquals("", validator.getValue(1));
+		assertEquals("b", validator.getValue(2));
+		// trailing empty columns are dropped
+		assertEquals(2, validator.scan("a\tb\t\t"));
+		assertEquals(0, validator.scan("\t\t"));
+		assertEquals(1, validator.scan(""));
+	}
+
+	@Test
+	public void testFormats() {
+		final String line = "100005\t20140131\t1\tb3f2d5b2-5fcf-4d27-9fd3-3eac2e8f3f0a\t \t1234567890123456789";
+		final Rf2ColumnValidator validator = new Rf2ColumnValidator();
+		assertEquals(6, validator.scan(line));
+		assertTrue(ValueFormat.SCTID.matches(line, validator.getStart(0), validator.getEnd(0)));
+		assertTrue(ValueFormat.DATE.matches(line, validator.getStart(1), validator.getEnd(1)));
+		assertFalse(ValueFormat.SCTID.matches(line, validator.getStart(1), validator.getEnd(1) - 3));
+		assertTrue(ValueFormat.BOOLEAN.matches(line, validator.getStart(2), validator.getEnd(2)));
+		assertTrue(ValueFormat.UUID.matches(line, validator.getStart(3), validator.getEnd(3)));
+		assertFalse(ValueFormat.UUID.matches(line, validator.getStart(3) + 1, validator.getEnd(3)));
+		assertFalse(ValueFormat.NOT_BLANK.matches(line, validator.getStart(4), validator.getEnd(4)));
+		assertFalse(ValueFormat.SCTID.matches(line, validator.getStart(5), validator.getEnd(5)));
+		assertTrue(ValueFormat.INTEGER.matches(line, validator.getStart(5), validator.getEnd(5)));
+	}
+}
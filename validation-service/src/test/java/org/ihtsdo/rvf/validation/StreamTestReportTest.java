@@ -0,0 +1,76 @@
+package org.ihtsdo.rvf.validation;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.lang3.StringUtils;
+import org.ihtsdo.rvf.validation.impl.CsvMetadataResultFormatter;
+import org.ihtsdo.rvf.validation.impl.CsvResultFormatter;
+import org.ihtsdo.rvf.validation.impl.StreamTestReport;
+import org.junit.Test;
+
+public class StreamTestReportTest {
+
+	private static final int THREADS = 8;
+	private static final int ERRORS_PER_THREAD = 10000;
+
+	@Test
+	public void testErrorsCountedFromSeveralThreads() throws Exception {
+		final StreamTestReport testReport = new StreamTestReport(new CsvResultFormatter(), new TestWriterDelegate(new StringWriter()), false);
+		testReport.setFailureExampleMax(3);
+		final Date startTime = new Date();
+		final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		final List<Future<Void>> tasks = new ArrayList<>();
+		for (int thread = 0; thread < THREADS; thread++) {
+			tasks.add(executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() {
+					for (int i = 0; i < ERRORS_PER_THREAD; i++) {
+						testReport.addError(i + "-1", startTime, "file.txt", "/tmp", "effectiveTime", "ColumnDateTest", "dateStamp", "2014013", "20140131");
+						testReport.addError(i + "-1", startTime, "file.txt", "/tmp", "effectiveTime", "ColumnValuesTest", "dateStamp", "", "20140131");
+						testReport.addSuccess(i + "-2", startTime, "file.txt", "/tmp", "active", "ColumnBooleanTest", "boolean");
+					}
+					return null;
+				}
+			}));
+		}
+		for (final Future<Void> task : tasks) {
+			task.get();
+		}
+		executor.shutdown();
+
+		assertEquals(2 * THREADS * ERRORS_PER_THREAD, testReport.getNumErrors());
+		assertEquals(THREADS * ERRORS_PER_THREAD, testReport.getNumSuccesses());
+		assertEquals(3 * THREADS * ERRORS_PER_THREAD, testReport.getNumTestRuns());
+		assertEquals("3 examples of each test type for the column", 6, testReport.getNumberRecordedErrors());
+		final String result = testReport.getResult();
+		assertEquals("the header and the examples", 7, result.split("\n").length);
+		assertEquals("each first example carries the count of its errors", 2, StringUtils.countMatches(result, "\t" + THREADS * ERRORS_PER_THREAD + "\n"));
+	}
+
+	@Test
+	public void testErrorCountAddedWithoutExamples() {
+		final StreamTestReport testReport = new StreamTestReport(new CsvMetadataResultFormatter(), new TestWriterDelegate(new StringWriter()), false);
+		testReport.addError("2-1", new Date(), "file.txt", "/tmp", "effectiveTime", "ColumnDateTest", "dateStamp", "2014013", "20140131");
+		testReport.addErrorCount("ColumnDateTest", "effectiveTime", 41);
+		assertEquals(42, testReport.getNumErrors());
+		assertEquals(42, testReport.getNumTestRuns());
+		assertEquals(1, testReport.getNumberRecordedErrors());
+		final String[] lines = testReport.getResult().split("\n");
+		assertEquals(2, lines.length);
+		assertEquals("the example carries the count of all the errors", "42", lines[1].substring(lines[1].lastIndexOf('\t') + 1));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNoExamples() {
+		new StreamTestReport(new CsvResultFormatter(), new TestWriterDelegate(new StringWriter()), false).setFailureExampleMax(0);
+	}
+}